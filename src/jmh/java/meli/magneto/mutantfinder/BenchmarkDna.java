@@ -0,0 +1,127 @@
+package meli.magneto.mutantfinder;
+
+import java.util.Random;
+
+/**
+ * Synthetic DNAs for the benchmarks
+ */
+final class BenchmarkDna {
+
+    private BenchmarkDna() {
+    }
+
+    /**
+     * @param size rows and columns
+     * @param runs <tt>none</tt> for a DNA without runs (worst case, every cell is visited),
+     *             <tt>first</tt> for a run on the first row (early hit),
+     *             <tt>last</tt> for a run ending on the last cell (late hit),
+     *             <tt>random</tt> for uniformly random bases (about one run every 64 cells)
+     */
+    static String[] generate(int size, String runs) {
+        switch (runs) {
+            case "none":
+                return noRuns(size);
+            case "first":
+                return withRun(noRuns(size), 0);
+            case "last":
+                return withRun(noRuns(size), size - 1);
+            case "random":
+                return random(size, new Random(size));
+            default:
+                throw new IllegalArgumentException(runs);
+        }
+    }
+
+    /**
+     * A different dna on every call, unlike {@link #generate(int, String)}, so verdicts are never cached
+     *
+     * @param mutant whether to add a horizontal run of four bases, which is enough for the default
+     *               <tt>minimum-sequences</tt>; without it there is no run in any direction
+     */
+    static String[] generate(int size, boolean mutant, Random random) {
+        String bases = "ACGT";
+        char[][] dna = new char[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int first = random.nextInt(bases.length());
+                char base = bases.charAt(first);
+                // the first base that does not end a run, a run only ends at the cell filled last
+                for (int i = 0; i < bases.length() && endsRun(dna, row, col, base); i++) {
+                    base = bases.charAt((first + i + 1) % bases.length());
+                }
+                dna[row][col] = base;
+            }
+        }
+        if (mutant && size >= 4) {
+            int row = random.nextInt(size);
+            int col = random.nextInt(size - 3);
+            char base = bases.charAt(random.nextInt(bases.length()));
+            for (int i = 0; i < 4; i++) {
+                dna[row][col + i] = base;
+            }
+        }
+        String[] rows = new String[size];
+        for (int row = 0; row < size; row++) {
+            rows[row] = new String(dna[row]);
+        }
+        return rows;
+    }
+
+    private static boolean endsRun(char[][] dna, int row, int col, char base) {
+        return endsRun(dna, row, col, 0, -1, base) || endsRun(dna, row, col, -1, 0, base)
+                || endsRun(dna, row, col, -1, -1, base) || endsRun(dna, row, col, -1, 1, base);
+    }
+
+    private static boolean endsRun(char[][] dna, int row, int col, int rowStep, int colStep, char base) {
+        for (int i = 1; i < 4; i++) {
+            int r = row + rowStep * i;
+            int c = col + colStep * i;
+            if (r < 0 || c < 0 || c >= dna.length || dna[r][c] != base) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rows built from "aacc"/"ggtt" shifted so no direction has more than two equal bases in a row
+     */
+    private static String[] noRuns(int size) {
+        String[] pattern = {"aacc", "ggtt"};
+        String[] dna = new String[size];
+        for (int row = 0; row < size; row++) {
+            char[] chars = new char[size];
+            String line = pattern[(row / 2) % 2];
+            for (int col = 0; col < size; col++) {
+                chars[col] = line.charAt((col + (row % 2) * 2) % 4);
+            }
+            dna[row] = new String(chars);
+        }
+        return dna;
+    }
+
+    private static String[] withRun(String[] dna, int row) {
+        int size = dna.length;
+        if (size >= 4) {
+            char[] chars = dna[row].toCharArray();
+            for (int col = size - 4; col < size; col++) {
+                chars[col] = 'T';
+            }
+            dna[row] = new String(chars);
+        }
+        return dna;
+    }
+
+    private static String[] random(int size, Random random) {
+        String bases = "ACGTacgt";
+        String[] dna = new String[size];
+        for (int row = 0; row < size; row++) {
+            char[] chars = new char[size];
+            for (int col = 0; col < size; col++) {
+                chars[col] = bases.charAt(random.nextInt(bases.length()));
+            }
+            dna[row] = new String(chars);
+        }
+        return dna;
+    }
+}
@@ -0,0 +1,151 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detection hot path. The verdict cache never hits and nothing is stored, so only CPU and allocation are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DetectionBenchmark {
+
+    @Param({"6", "100", "1000", "10000"})
+    private int size;
+
+    @Param({"none", "first", "last", "random"})
+    private String runs;
+
+    /**
+     * Only the default, pass <tt>-p minimumSequences=2</tt> to measure the rule of the original spec
+     */
+    @Param({"1"})
+    private int minimumSequences;
+
+    private String[] dna;
+    private DnaMatrix matrix;
+    private RunLengthDetector scanner;
+    private BitboardDetector bitboard;
+    private ParallelDetector parallelDetector;
+    private AdaptiveDetector adaptiveDetector;
+    private MutantFinderServiceImpl service;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        dna = BenchmarkDna.generate(size, runs);
+        matrix = DnaMatrix.of(dna);
+        scanner = new RunLengthDetector(4, minimumSequences);
+        bitboard = new BitboardDetector(4, minimumSequences);
+        parallelDetector = new ParallelDetector(4, minimumSequences, 256, 0);
+        adaptiveDetector = new AdaptiveDetector(4, minimumSequences, 64, 1000, 256, 0);
+        service = new MutantFinderServiceImpl();
+        inject(service, "detector", adaptiveDetector);
+        // without a sink nothing is published
+        inject(service, "verdictRecorder", new VerdictRecorder(new MissingVerdictCache(),
+                new ClassificationEventLog(null, 1, 1, "drop", 0L, 0L, new SimpleMeterRegistry()),
+                new DiscardingRecordWriter()));
+        inject(service, "detectionMetrics", new DetectionMetrics(new SimpleMeterRegistry()));
+        inject(service, "admissionControl", new AdmissionControl(10000, 0, 64, 1000L, 1000, 1, 2, 104857600L,
+                new SimpleMeterRegistry()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        parallelDetector.stop();
+        adaptiveDetector.stop();
+    }
+
+    @Benchmark
+    public boolean scan() {
+        return scanner.isMutant(matrix);
+    }
+
+    @Benchmark
+    public boolean bitboardScan() {
+        return bitboard.isMutant(matrix);
+    }
+
+    @Benchmark
+    public boolean parallelScan() {
+        return parallelDetector.isMutant(matrix);
+    }
+
+    @Benchmark
+    public boolean adaptiveScan() {
+        return adaptiveDetector.isMutant(matrix);
+    }
+
+    @Benchmark
+    public DnaMatrix pack() {
+        return DnaMatrix.of(dna);
+    }
+
+    @Benchmark
+    public DnaHash hash() {
+        return DnaHash.of(dna);
+    }
+
+    @Benchmark
+    public DnaHash hashPacked() {
+        return DnaHash.of(matrix);
+    }
+
+    @Benchmark
+    public boolean isMutant() {
+        return service.isMutant(dna);
+    }
+
+    private static void inject(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static class MissingVerdictCache extends VerdictCache {
+        MissingVerdictCache() {
+            super(null, null, 1L, 1L, false, new SimpleMeterRegistry());
+        }
+
+        @Override
+        public Boolean get(DnaHash hash) {
+            return null;
+        }
+
+        @Override
+        public void put(DnaHash hash, boolean isMutant) {
+        }
+    }
+
+    private static class DiscardingRecordWriter extends DnaRecordWriter {
+        DiscardingRecordWriter() {
+            super(null, null, null, 1L, 1, 1, new SimpleMeterRegistry());
+        }
+
+        @Override
+        public void record(DnaHash hash, boolean isMutant) {
+        }
+
+        @Override
+        public void recordAll(Map<DnaHash, Boolean> records) {
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package meli.magneto.mutantfinder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test: starts the application in a new JVM, without MongoDB, and sends requests to it at a fixed
+ * rate whatever its latency (an open model), then reports the latency of each endpoint with HdrHistogram. Latency
+ * is measured from the time a request was due, so requests held back by a slow server count their wait too.
+ * <pre>
+ * ./gradlew loadTest -PloadArgs='--rate=500 --duration=60 --sizes=6:90,100:10'
+ * </pre>
+ * Options: <tt>--rate</tt> (requests per second, 200), <tt>--duration</tt> (measured seconds, 30),
+ * <tt>--warm-up</tt> (seconds sent first and not measured, 10), <tt>--mix</tt> (weight of each endpoint,
+ * <tt>mutant:90,stats:10</tt>), <tt>--sizes</tt> (weight of each size of dna, <tt>6:90,100:9,1000:1</tt>),
+ * <tt>--mutant-ratio</tt> (0.4), <tt>--threads</tt> (client threads, 64), <tt>--url</tt> (of an instance already
+ * running, none is started then), <tt>--jvm-arg</tt> and <tt>--app-arg</tt> (repeatable; the application runs
+ * with <tt>--spring.profiles.active=fast --mutant-finder.stats.store=memory --mutant-finder.events.sink=none</tt>
+ * when none is given), <tt>--classpath</tt> (the one of this JVM) and <tt>--output</tt>
+ * (<tt>build/reports/load</tt>).
+ */
+public final class LoadTest {
+    private static final String MAIN_CLASS = "meli.magneto.mutantfinder.MutantFinderApplication";
+    private static final long STARTUP_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(3);
+    // requests are handed to a client thread this early, to build their dna before they are due
+    private static final long LEAD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = 200;
+        int duration = 30;
+        int warmUp = 10;
+        Map<String, Integer> mix = weights("mutant:90,stats:10");
+        Map<String, Integer> sizes = weights("6:90,100:9,1000:1");
+        double mutantRatio = 0.4d;
+        int threads = 64;
+        String url = null;
+        List<String> jvmArgs = new ArrayList<>();
+        List<String> appArgs = new ArrayList<>();
+        String classpath = System.getProperty("java.class.path");
+        Path output = Paths.get("build", "reports", "load");
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--rate=")) {
+                rate = Integer.parseInt(value);
+            } else if (arg.startsWith("--duration=")) {
+                duration = Integer.parseInt(value);
+            } else if (arg.startsWith("--warm-up=")) {
+                warmUp = Integer.parseInt(value);
+            } else if (arg.startsWith("--mix=")) {
+                mix = weights(value);
+            } else if (arg.startsWith("--sizes=")) {
+                sizes = weights(value);
+            } else if (arg.startsWith("--mutant-ratio=")) {
+                mutantRatio = Double.parseDouble(value);
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(value);
+            } else if (arg.startsWith("--url=")) {
+                url = value;
+            } else if (arg.startsWith("--jvm-arg=")) {
+                jvmArgs.add(value);
+            } else if (arg.startsWith("--app-arg=")) {
+                appArgs.add(value);
+            } else if (arg.startsWith("--classpath=")) {
+                classpath = value;
+            } else if (arg.startsWith("--output=")) {
+                output = Paths.get(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        for (String endpoint : mix.keySet()) {
+            if (!endpoint.equals("mutant") && !endpoint.equals("stats")) {
+                throw new IllegalArgumentException("Unknown endpoint " + endpoint + ", expected mutant or stats");
+            }
+        }
+        if (appArgs.isEmpty()) {
+            appArgs.add("--spring.profiles.active=fast");
+            appArgs.add("--mutant-finder.stats.store=memory");
+            appArgs.add("--mutant-finder.events.sink=none");
+        }
+        // one kept alive connection per client thread, the default keeps 5
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+
+        Process process = null;
+        try {
+            if (url == null) {
+                int port = freePort();
+                url = "http://localhost:" + port;
+                process = start(port, jvmArgs, appArgs, classpath);
+                awaitUp(new URL(url + "/stats"), process);
+            }
+            Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+            for (String name : mix.keySet()) {
+                endpoints.put(name, new Endpoint(name));
+            }
+            System.out.printf("Sending %d requests per second to %s for %d s, after %d s of warm-up%n", rate, url,
+                    duration, warmUp);
+            run(url, rate, warmUp, duration, threads, mix, sizes, mutantRatio, endpoints);
+            report(output, rate, duration, mix, sizes, mutantRatio, endpoints);
+        } finally {
+            if (process != null) {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    private static void run(String url, int rate, int warmUp, int duration, int threads, Map<String, Integer> mix,
+                            Map<String, Integer> sizes, double mutantRatio, Map<String, Endpoint> endpoints)
+            throws IOException, InterruptedException {
+        URL mutantUrl = new URL(url + "/mutant");
+        URL statsUrl = new URL(url + "/stats");
+        ExecutorService clients = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "load-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // the same sequence of requests on every run
+        Random random = new Random(42L);
+        long total = (long) rate * (warmUp + duration);
+        long measuredFrom = (long) rate * warmUp;
+        long start = System.nanoTime() + LEAD_NANOS;
+        for (long i = 0; i < total; i++) {
+            long due = start + i * TimeUnit.SECONDS.toNanos(1) / rate;
+            parkUntil(due - LEAD_NANOS);
+            Endpoint endpoint = endpoints.get(pick(mix, random));
+            boolean measured = i >= measuredFrom;
+            if (endpoint.name.equals("mutant")) {
+                int size = Integer.parseInt(pick(sizes, random));
+                boolean mutant = random.nextDouble() < mutantRatio;
+                clients.execute(() -> {
+                    String[] dna = BenchmarkDna.generate(size, mutant, ThreadLocalRandom.current());
+                    endpoint.send(mutantUrl, "POST", body(dna), due, measured);
+                });
+            } else {
+                clients.execute(() -> endpoint.send(statsUrl, "GET", null, due, measured));
+            }
+        }
+        clients.shutdown();
+        if (!clients.awaitTermination(2, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Requests still running two minutes after the last one was due");
+        }
+    }
+
+    private static void report(Path output, int rate, int duration, Map<String, Integer> mix,
+                               Map<String, Integer> sizes, double mutantRatio, Map<String, Endpoint> endpoints)
+            throws IOException {
+        Files.createDirectories(output);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"rate\":").append(rate).append(",\"duration\":").append(duration)
+                .append(",\"mix\":\"").append(mix).append("\",\"sizes\":\"").append(sizes)
+                .append("\",\"mutantRatio\":").append(mutantRatio).append(",\"endpoints\":{");
+        for (Endpoint endpoint : endpoints.values()) {
+            Histogram histogram = endpoint.histogram;
+            long requests = histogram.getTotalCount();
+            System.out.printf("%-6s %8d requests, %8.1f/s, p50 %8.2f ms, p90 %8.2f ms, p99 %8.2f ms, "
+                            + "p99.9 %8.2f ms, max %8.2f ms, statuses %s%n", endpoint.name, requests,
+                    (double) requests / duration, millis(histogram, 50d), millis(histogram, 90d),
+                    millis(histogram, 99d), millis(histogram, 99.9d), histogram.getMaxValue() / 1000d,
+                    endpoint.statuses());
+            try (PrintStream out = new PrintStream(output.resolve(endpoint.name + ".hgrm").toFile(), "UTF-8")) {
+                histogram.outputPercentileDistribution(out, 1000d);
+            }
+            if (json.charAt(json.length() - 1) != '{') {
+                json.append(',');
+            }
+            json.append('"').append(endpoint.name).append("\":{\"requests\":").append(requests)
+                    .append(",\"throughput\":").append((double) requests / duration)
+                    .append(",\"p50\":").append(millis(histogram, 50d))
+                    .append(",\"p90\":").append(millis(histogram, 90d))
+                    .append(",\"p99\":").append(millis(histogram, 99d))
+                    .append(",\"p999\":").append(millis(histogram, 99.9d))
+                    .append(",\"max\":").append(histogram.getMaxValue() / 1000d)
+                    .append(",\"statuses\":{");
+            String separator = "";
+            for (Map.Entry<Integer, Long> status : endpoint.statuses().entrySet()) {
+                json.append(separator).append('"').append(status.getKey()).append("\":").append(status.getValue());
+                separator = ",";
+            }
+            json.append("}}");
+        }
+        json.append("}}\n");
+        try (Writer writer = Files.newBufferedWriter(output.resolve("results.json"), StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+        System.out.println("Latency distributions (ms) written to " + output.toAbsolutePath());
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000d;
+    }
+
+    private static Process start(int port, List<String> jvmArgs, List<String> appArgs, String classpath)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(MAIN_CLASS);
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "load-test.log"))
+                .start();
+    }
+
+    private static void awaitUp(URL url, Process process) throws InterruptedException {
+        long start = System.nanoTime();
+        while (send(url, "GET", null) != 200) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application exited with " + process.exitValue()
+                        + ", see load-test.log in " + System.getProperty("java.io.tmpdir"));
+            }
+            if (System.nanoTime() - start > STARTUP_TIMEOUT_NANOS) {
+                throw new IllegalStateException("The application did not start in time");
+            }
+            Thread.sleep(100L);
+        }
+    }
+
+    /**
+     * @return the status, <tt>-1</tt> if there was no answer
+     */
+    private static int send(URL url, String method, byte[] body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("Content-Type", "application/json");
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+            int status = connection.getResponseCode();
+            // read to the end, so the connection is kept alive
+            try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                if (in != null) {
+                    byte[] buffer = new byte[4096];
+                    while (in.read(buffer) >= 0) {
+                        // discarded
+                    }
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] body(String[] dna) {
+        StringBuilder json = new StringBuilder(dna.length * (dna.length + 3) + 10).append("{\"dna\":[");
+        for (int row = 0; row < dna.length; row++) {
+            json.append(row > 0 ? ",\"" : "\"").append(dna[row]).append('"');
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void parkUntil(long nanoTime) {
+        long wait;
+        while ((wait = nanoTime - System.nanoTime()) > 0L) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * @param value weights like <tt>mutant:90,stats:10</tt>, in order
+     */
+    private static Map<String, Integer> weights(String value) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split(":");
+            weights.put(parts[0].trim(), parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1);
+        }
+        return weights;
+    }
+
+    private static String pick(Map<String, Integer> weights, Random random) {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        int point = random.nextInt(total);
+        for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+            point -= weight.getValue();
+            if (point < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException("Weights must be positive");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Latency in microseconds and answers by status of one endpoint, over the measured requests only
+     */
+    private static final class Endpoint {
+        private final String name;
+        private final Histogram histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        void send(URL url, String method, byte[] body, long due, boolean measured) {
+            parkUntil(due);
+            int status = LoadTest.send(url, method, body);
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due);
+            if (measured) {
+                histogram.recordValue(Math.min(micros, histogram.getHighestTrackableValue()));
+                statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+            }
+        }
+
+        Map<Integer, Long> statuses() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            statuses.forEach((status, count) -> counts.put(status, count.sum()));
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package meli.magneto.mutantfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request: starts the application in a new JVM, posts a dna to <tt>/mutant</tt> until it is
+ * answered and reports the time from the launch, over a few runs. It is not a JMH benchmark, each run is a cold
+ * start by definition.
+ * <pre>
+ * ./gradlew startupBenchmark -PstartupArgs='--runs=5 --jvm-arg=-Xshare:off'
+ * </pre>
+ * Options, each repeatable but <tt>runs</tt> and <tt>classpath</tt>:
+ * <tt>--runs</tt> (5), <tt>--jvm-arg</tt>, <tt>--app-arg</tt> (<tt>--spring.profiles.active=fast</tt> when
+ * none is given), <tt>--classpath</tt> (the one of this JVM) and <tt>--output</tt>
+ * (<tt>build/reports/startup/results.json</tt>).
+ */
+public final class StartupBenchmark {
+    private static final String MAIN_CLASS = "meli.magneto.mutantfinder.MutantFinderApplication";
+    private static final byte[] DNA = "{\"dna\":[\"ATGCGA\",\"CAGTGC\",\"TTATGT\",\"AGAAGG\",\"CCCCTA\",\"TCACTG\"]}"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(3);
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = 5;
+        List<String> jvmArgs = new ArrayList<>();
+        List<String> appArgs = new ArrayList<>();
+        String classpath = System.getProperty("java.class.path");
+        Path output = Paths.get("build", "reports", "startup", "results.json");
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(value);
+            } else if (arg.startsWith("--jvm-arg=")) {
+                jvmArgs.add(value);
+            } else if (arg.startsWith("--app-arg=")) {
+                appArgs.add(value);
+            } else if (arg.startsWith("--classpath=")) {
+                classpath = value;
+            } else if (arg.startsWith("--output=")) {
+                output = Paths.get(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (appArgs.isEmpty()) {
+            appArgs.add("--spring.profiles.active=fast");
+        }
+
+        long[] millis = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            millis[run] = timeToFirstRequest(jvmArgs, appArgs, classpath);
+            System.out.printf("Run %d: first request answered after %d ms%n", run + 1, millis[run]);
+        }
+        Arrays.sort(millis);
+        long median = millis[runs / 2];
+        System.out.printf("Time to first request over %d runs: min %d ms, median %d ms, max %d ms%n",
+                runs, millis[0], median, millis[runs - 1]);
+        write(output, jvmArgs, appArgs, millis, median);
+    }
+
+    private static long timeToFirstRequest(List<String> jvmArgs, List<String> appArgs, String classpath)
+            throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(MAIN_CLASS);
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(System.getProperty("java.io.tmpdir"), "startup-benchmark.log"))
+                .start();
+        try {
+            URL url = new URL("http://localhost:" + port + "/mutant");
+            while (!isAnswered(url)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("The application exited with " + process.exitValue()
+                            + ", see startup-benchmark.log in " + System.getProperty("java.io.tmpdir"));
+                }
+                if (System.nanoTime() - start > TIMEOUT_NANOS) {
+                    throw new IllegalStateException("The application did not answer in time");
+                }
+                Thread.sleep(10L);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean isAnswered(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(DNA);
+            }
+            int status = connection.getResponseCode();
+            connection.disconnect();
+            return status == 200 || status == 403;
+        } catch (IOException e) {
+            // not listening yet
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void write(Path output, List<String> jvmArgs, List<String> appArgs, long[] millis, long median)
+            throws IOException {
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("{\"jvmArgs\":" + toJson(jvmArgs) + ",\"appArgs\":" + toJson(appArgs)
+                    + ",\"millis\":" + Arrays.toString(millis) + ",\"min\":" + millis[0] + ",\"median\":" + median
+                    + ",\"max\":" + millis[millis.length - 1] + "}\n");
+        }
+    }
+
+    private static String toJson(List<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (String value : values) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,56 @@
+package meli.magneto.mutantfinder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input validation, which is fused with packing and has to go through every base of a well formed DNA
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ValidationBenchmark {
+
+    @Param({"6", "100", "1000", "10000"})
+    private int size;
+
+    private String[] dna;
+    private String[] invalidLastBase;
+
+    @Setup
+    public void setUp() {
+        dna = BenchmarkDna.generate(size, "random");
+        invalidLastBase = dna.clone();
+        String last = invalidLastBase[size - 1];
+        invalidLastBase[size - 1] = last.substring(0, size - 1) + 'x';
+    }
+
+    @Benchmark
+    public DnaMatrix validateAndPack() {
+        return DnaMatrix.of(dna);
+    }
+
+    @Benchmark
+    public String rejectLastBase() {
+        try {
+            DnaMatrix.of(invalidLastBase);
+            throw new IllegalStateException("invalid dna was accepted");
+        } catch (BadInputException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks an engine by the size of each matrix: the {@link RunLengthDetector} below <tt>bitboard-threshold</tt>,
+ * where setting up the bitboard costs more than the scan it saves, the {@link BitboardDetector} from there on
+ * and the {@link ParallelDetector} from <tt>parallel-threshold</tt> on. Sequences longer than the 64 columns a
+ * bitboard word holds skip the {@link BitboardDetector}.
+ * <p>
+ * The thresholds are configured, or measured while starting by the {@link DetectorWarmUp} when
+ * <tt>mutant-finder.detector.calibrate</tt> is set.
+ */
+@Component
+public class AdaptiveDetector implements DnaDetector {
+    private final RunLengthDetector scanner;
+    private final BitboardDetector bitboard;
+    private final ParallelDetector parallel;
+    private volatile int bitboardThreshold;
+    private volatile int parallelThreshold;
+
+    public AdaptiveDetector(@Value("${mutant-finder.detector.sequence-size:4}") int sequenceSize,
+                            @Value("${mutant-finder.detector.minimum-sequences:1}") int minimumSequences,
+                            @Value("${mutant-finder.detector.bitboard-threshold:64}") int bitboardThreshold,
+                            @Value("${mutant-finder.detector.parallel-threshold:1000}") int parallelThreshold,
+                            @Value("${mutant-finder.detector.band-size:256}") int bandSize,
+                            @Value("${mutant-finder.detector.parallelism:0}") int parallelism) {
+        this.scanner = new RunLengthDetector(sequenceSize, minimumSequences);
+        this.bitboard = sequenceSize <= Long.SIZE ? new BitboardDetector(sequenceSize, minimumSequences) : null;
+        this.parallel = new ParallelDetector(sequenceSize, minimumSequences, bandSize, parallelism);
+        this.bitboardThreshold = bitboardThreshold;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    @PreDestroy
+    public void stop() {
+        parallel.stop();
+    }
+
+    /**
+     * @return direction of the sequence that reached <tt>minimum-sequences</tt>, or <tt>null</tt> if there are
+     * not enough of them. From <tt>parallel-threshold</tt> on, which sequence that is depends on the order the
+     * bands ran.
+     */
+    @Override
+    public Direction find(DnaMatrix matrix) {
+        return engineFor(matrix.size()).find(matrix);
+    }
+
+    DnaDetector engineFor(int size) {
+        if (size >= parallelThreshold) {
+            return parallel;
+        }
+        return bitboard != null && size >= bitboardThreshold ? bitboard : scanner;
+    }
+
+    /**
+     * @return a scan of a dna fed one row at a time, run on the calling thread whatever the size of the dna
+     */
+    public DetectionSession newSession() {
+        return scanner.newSession();
+    }
+
+    /**
+     * @return every engine this detector picks from, from the one for the smallest matrices on
+     */
+    List<DnaDetector> engines() {
+        List<DnaDetector> engines = new ArrayList<>(3);
+        engines.add(scanner);
+        if (bitboard != null) {
+            engines.add(bitboard);
+        }
+        engines.add(parallel);
+        return engines;
+    }
+
+    RunLengthDetector getScanner() {
+        return scanner;
+    }
+
+    /**
+     * @return <tt>null</tt> for sequences longer than a bitboard word
+     */
+    BitboardDetector getBitboard() {
+        return bitboard;
+    }
+
+    ParallelDetector getParallel() {
+        return parallel;
+    }
+
+    void setThresholds(int bitboardThreshold, int parallelThreshold) {
+        this.bitboardThreshold = bitboardThreshold;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getBitboardThreshold() {
+        return bitboardThreshold;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    @Override
+    public int getSequenceSize() {
+        return scanner.getSequenceSize();
+    }
+
+    @Override
+    public int getMinimumSequences() {
+        return scanner.getMinimumSequences();
+    }
+}
@@ -0,0 +1,328 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many detections run at once. Matrices from <tt>large-size</tt> on go through a lane of their own,
+ * so a few huge ones can't hold the permits every normal request needs. A detection without a free permit waits
+ * in the queue of its lane up to <tt>queue-timeout-ms</tt>: when the queue is full the request is shed with a
+ * 429, and when the wait runs out with a 503. Permits are handed out in the order of the queue, a freed permit
+ * goes straight to the longest waiting detection.
+ * <p>
+ * The reactive service must not park the few threads of its detection scheduler, so its detections wait without a
+ * thread instead, in the same queue: the permit is handed over by whoever frees it and the detection runs on the
+ * scheduler then, with a single timer for the timeout.
+ * <p>
+ * The packed buffer of a dna is allocated from its first row or header, long before it reaches a lane, so the
+ * buffers of dna still being read are charged to a budget of <tt>max-buffered-bytes</tt> first and a dna that
+ * doesn't fit is rejected with a 503 before anything is allocated. Once read, a dna goes straight to its lane,
+ * where it is either admitted, queued or shed.
+ */
+@Component
+public class AdmissionControl {
+
+    private final int maxSize;
+    private final int largeSize;
+    private final Lane normal;
+    private final Lane large;
+    private final long maxBufferedBytes;
+    private final AtomicLong buffered = new AtomicLong();
+    private final Counter bufferFull;
+
+    public AdmissionControl(@Value("${mutant-finder.admission.max-size:10000}") int maxSize,
+                            @Value("${mutant-finder.admission.max-concurrent:0}") int maxConcurrent,
+                            @Value("${mutant-finder.admission.queue-size:64}") int queueSize,
+                            @Value("${mutant-finder.admission.queue-timeout-ms:1000}") long queueTimeoutMs,
+                            @Value("${mutant-finder.admission.large-size:1000}") int largeSize,
+                            @Value("${mutant-finder.admission.large-max-concurrent:1}") int largeMaxConcurrent,
+                            @Value("${mutant-finder.admission.large-queue-size:2}") int largeQueueSize,
+                            @Value("${mutant-finder.admission.max-buffered-bytes:104857600}") long maxBufferedBytes,
+                            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.largeSize = largeSize;
+        this.normal = new Lane("normal", maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors(),
+                queueSize, queueTimeoutMs, meterRegistry);
+        this.large = new Lane("large", largeMaxConcurrent, largeQueueSize, queueTimeoutMs, meterRegistry);
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.bufferFull = Lane.rejects(meterRegistry, "read", "buffer_full");
+    }
+
+    /**
+     * @throws PayloadTooLargeException if the dna is wider than <tt>max-size</tt>
+     */
+    public void checkSize(int size) {
+        if (size > maxSize) {
+            throw new PayloadTooLargeException("Dna cannot be larger than " + maxSize + " x " + maxSize);
+        }
+    }
+
+    /**
+     * Charges the packed buffer of a dna of the given size to the budget, before it is allocated. A buffer is let
+     * through whatever its size when nothing else is being read, so a budget under one <tt>max-size</tt> dna still
+     * reads them one at a time.
+     *
+     * @return bytes charged, to be given back with {@link #release(long)} once the dna is read or its reading fails
+     * @throws ResponseStatusException with 503 when the dna being read already hold the budget
+     */
+    public long reserve(int size) {
+        long bytes = (long) DnaMatrix.packedLength(size) * Long.BYTES;
+        for (;;) {
+            long used = buffered.get();
+            if (used > 0L && used + bytes > maxBufferedBytes) {
+                bufferFull.increment();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many dna being read, try again later");
+            }
+            if (buffered.compareAndSet(used, used + bytes)) {
+                return bytes;
+            }
+        }
+    }
+
+    public void release(long bytes) {
+        buffered.addAndGet(-bytes);
+    }
+
+    long getBufferedBytes() {
+        return buffered.get();
+    }
+
+    /**
+     * Runs the detection of a dna of the given size once its lane has a permit for it
+     *
+     * @throws ResponseStatusException with 429 when the queue of the lane is full, or 503 when no permit is freed
+     * in time
+     */
+    public <T> T detect(int size, Supplier<T> detection) {
+        Lane lane = size >= largeSize ? large : normal;
+        lane.acquire();
+        try {
+            return detection.get();
+        } finally {
+            lane.release();
+        }
+    }
+
+    /**
+     * Runs the detection on the scheduler once the lane of the dna has a permit for it, without blocking any thread
+     * while it waits
+     *
+     * @param detection must not return <tt>null</tt>
+     * @return the result of the detection, or an error with a {@link ResponseStatusException} as
+     * {@link #detect(int, Supplier)} throws
+     */
+    public <T> Mono<T> detect(int size, Supplier<T> detection, Scheduler scheduler) {
+        return acquire(size, scheduler).map(permit -> {
+            try {
+                return detection.get();
+            } finally {
+                permit.run();
+            }
+        });
+    }
+
+    /**
+     * Takes a permit of the lane of a dna of the given size, waiting for it without blocking any thread
+     *
+     * @return what gives the permit back, emitted on the scheduler, to run once the detection is over
+     */
+    Mono<Runnable> acquire(int size, Scheduler scheduler) {
+        Lane lane = size >= largeSize ? large : normal;
+        return Mono.<Runnable>create(sink -> lane.acquire(sink, scheduler)).subscribeOn(scheduler);
+    }
+
+    /**
+     * Free permits and the detections waiting for one, in order. A permit is only left free while nobody waits.
+     */
+    private static class Lane {
+        private final int queueSize;
+        private final long queueTimeoutMs;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        private int free;
+        private final Counter queueFull;
+        private final Counter timedOut;
+
+        Lane(String name, int maxConcurrent, int queueSize, long queueTimeoutMs, MeterRegistry meterRegistry) {
+            this.free = maxConcurrent;
+            this.queueSize = queueSize;
+            this.queueTimeoutMs = queueTimeoutMs;
+            this.queueFull = rejects(meterRegistry, name, "queue_full");
+            this.timedOut = rejects(meterRegistry, name, "timeout");
+        }
+
+        private static Counter rejects(MeterRegistry meterRegistry, String lane, String reason) {
+            return Counter.builder("dna.admission.rejects")
+                    .description("Detections shed because too many were running or waiting")
+                    .tag("lane", lane)
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Takes a permit, parking the thread in the queue until it is handed one
+         */
+        void acquire() {
+            CountDownLatch handed = new CountDownLatch(1);
+            Waiter waiter;
+            synchronized (this) {
+                if (tryTake()) {
+                    return;
+                }
+                waiter = enqueue(handed::countDown);
+            }
+            try {
+                if (handed.await(queueTimeoutMs, TimeUnit.MILLISECONDS) || !giveUp(waiter)) {
+                    return;
+                }
+                throw timedOut();
+            } catch (InterruptedException e) {
+                if (!giveUp(waiter)) {
+                    release();
+                }
+                Thread.currentThread().interrupt();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Detection was interrupted", e);
+            }
+        }
+
+        /**
+         * Takes a permit without blocking: the sink gets what gives it back right away when one is free, or on the
+         * scheduler once it is handed one
+         */
+        void acquire(MonoSink<Runnable> sink, Scheduler scheduler) {
+            Runnable permit = permit();
+            Disposable.Swap timeout = Disposables.swap();
+            Waiter waiter = null;
+            try {
+                synchronized (this) {
+                    if (!tryTake()) {
+                        waiter = enqueue(() -> {
+                            timeout.dispose();
+                            try {
+                                scheduler.schedule(() -> sink.success(permit));
+                            } catch (RejectedExecutionException e) {
+                                permit.run();
+                                sink.error(e);
+                            }
+                        });
+                    }
+                }
+            } catch (ResponseStatusException e) {
+                sink.error(e);
+                return;
+            }
+            if (waiter == null) {
+                // already on the scheduler, the detection runs outside of the lock
+                sink.success(permit);
+                return;
+            }
+            Waiter queued = waiter;
+            timeout.update(scheduler.schedule(() -> {
+                if (giveUp(queued)) {
+                    sink.error(timedOut());
+                }
+            }, queueTimeoutMs, TimeUnit.MILLISECONDS));
+            sink.onCancel(() -> {
+                timeout.dispose();
+                // handed a permit the subscriber will never see
+                if (!giveUp(queued)) {
+                    permit.run();
+                }
+            });
+        }
+
+        /**
+         * Gives a permit back, to the longest waiting detection if any
+         */
+        void release() {
+            Waiter next;
+            synchronized (this) {
+                do {
+                    next = waiters.poll();
+                    if (next == null) {
+                        free++;
+                        return;
+                    }
+                } while (!next.done.compareAndSet(false, true));
+            }
+            next.handed.run();
+        }
+
+        private boolean tryTake() {
+            if (free > 0 && waiters.isEmpty()) {
+                free--;
+                return true;
+            }
+            return false;
+        }
+
+        private Waiter enqueue(Runnable handed) {
+            if (waiters.size() >= queueSize) {
+                queueFull.increment();
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many dna waiting for detection");
+            }
+            Waiter waiter = new Waiter(handed);
+            waiters.add(waiter);
+            return waiter;
+        }
+
+        /**
+         * @return whether the waiter left the queue, <tt>false</tt> if it was handed a permit already
+         */
+        private boolean giveUp(Waiter waiter) {
+            if (!waiter.done.compareAndSet(false, true)) {
+                return false;
+            }
+            synchronized (this) {
+                waiters.remove(waiter);
+            }
+            return true;
+        }
+
+        /**
+         * @return what gives a permit back, only once however many times it is run
+         */
+        private Runnable permit() {
+            AtomicBoolean released = new AtomicBoolean();
+            return () -> {
+                if (released.compareAndSet(false, true)) {
+                    release();
+                }
+            };
+        }
+
+        private ResponseStatusException timedOut() {
+            timedOut.increment();
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Detection is busy, try again later");
+        }
+    }
+
+    /**
+     * A detection in the queue of a lane, done once it is either handed a permit or gives up
+     */
+    private static class Waiter {
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final Runnable handed;
+
+        Waiter(Runnable handed) {
+            this.handed = handed;
+        }
+    }
+}
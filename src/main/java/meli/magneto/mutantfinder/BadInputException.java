@@ -5,6 +5,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class BadInputException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
 
     public BadInputException() {
     }
@@ -0,0 +1,348 @@
+package meli.magneto.mutantfinder;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Word parallel variant of the {@link RunLengthDetector}, matching 64 cells at a time with shifts and ANDs.
+ * Every row is turned into two bitplanes, 64 columns per <tt>long</tt>, holding the low and the high bit of
+ * the code of each base. A cell equals its neighbour when both planes agree with the neighbour's planes, the
+ * row shifted by a column for the horizontal neighbour, the previous row shifted by -1, 0 or 1 column for
+ * the others. A run of <tt>sequenceSize</tt> ends at a cell when it and the <tt>sequenceSize - 2</tt> cells
+ * before it in the same direction all equal their neighbour.
+ * <p>
+ * Only the last <tt>sequenceSize</tt> rows of equal neighbours are kept. When more than one sequence is
+ * required, the cells already counted block the next <tt>sequenceSize - 1</tt> cells of their direction, so
+ * sequences are counted without overlapping exactly as the {@link RunLengthDetector} does.
+ */
+public class BitboardDetector implements DnaDetector {
+    private static final Direction[] COLUMN_DIRECTIONS = {
+            Direction.VERTICAL, Direction.DIAGONAL, Direction.ANTI_DIAGONAL};
+
+    private final int sequenceSize;
+    private final int minimumSequences;
+
+    /**
+     * @param sequenceSize number of equal bases of a sequence, up to the 64 columns of a word
+     * @param minimumSequences number of sequences that make a dna mutant
+     */
+    public BitboardDetector(int sequenceSize, int minimumSequences) {
+        if (sequenceSize < 2 || sequenceSize > Long.SIZE) {
+            throw new IllegalArgumentException("Sequence size must be from 2 to 64, was " + sequenceSize);
+        }
+        if (minimumSequences < 1) {
+            throw new IllegalArgumentException("Minimum sequences must be at least 1, was " + minimumSequences);
+        }
+        this.sequenceSize = sequenceSize;
+        this.minimumSequences = minimumSequences;
+    }
+
+    @Override
+    public int getSequenceSize() {
+        return sequenceSize;
+    }
+
+    @Override
+    public int getMinimumSequences() {
+        return minimumSequences;
+    }
+
+    /**
+     * @param matrix packed dna
+     * @return direction of the sequence that reached <tt>minimumSequences</tt>, or <tt>null</tt> if there are
+     * not enough of them. Sequences ending on the same row are counted horizontal first, then vertical,
+     * diagonal and anti-diagonal.
+     */
+    @Override
+    public Direction find(DnaMatrix matrix) {
+        int size = matrix.size();
+        if (size < sequenceSize) {
+            return null;
+        }
+        return new Scan(size).find(matrix, 0, size, new AtomicInteger());
+    }
+
+    /**
+     * Scans only a band of rows, counting the sequences that end in it. The rows just above the band are
+     * read again to pick up the runs crossing into it, so bands covering a matrix count exactly what a scan
+     * of the whole matrix would.
+     * @param rowFrom first row, inclusive
+     * @param rowTo last row, exclusive
+     * @param sequences sequences found so far, shared by every band of the matrix. Checked once per row, the
+     * scan gives up when another band already reached <tt>minimumSequences</tt>
+     * @return direction of the sequence that reached <tt>minimumSequences</tt>, or <tt>null</tt> if it was not
+     * reached in this band
+     */
+    public Direction find(DnaMatrix matrix, int rowFrom, int rowTo, AtomicInteger sequences) {
+        return new Scan(matrix.size()).find(matrix, rowFrom, rowTo, sequences);
+    }
+
+    /**
+     * State of one scan, sized for the matrix. Every array is flat, the planes one after the other, so a
+     * small matrix costs a few allocations. Each plane is preceded by a zero word, and the arrays end with one,
+     * so words can be shifted in from either neighbour without checking the row ends.
+     */
+    private class Scan {
+        private final int size;
+        private final int words;
+        /**
+         * Distance between two planes, one more than their words for the zero word in between
+         */
+        private final int stride;
+        /**
+         * Columns of the matrix in the last word of a row
+         */
+        private final long lastWord;
+        /**
+         * Low and high bitplanes of the current and the previous row, row <tt>r</tt> in slot <tt>r % 2</tt>
+         */
+        private final long[] rows;
+        /**
+         * Cells of the current row equal to their left neighbour
+         */
+        private final long[] horizontal;
+        /**
+         * Cells equal to their upper, upper left and upper right neighbour, one plane per direction, for the
+         * last <tt>sequenceSize</tt> rows, row <tt>r</tt> in slot <tt>r % sequenceSize</tt>
+         */
+        private final long[] neighbours;
+        /**
+         * Cells counted as the end of a vertical, diagonal or anti-diagonal sequence, in slots like the
+         * neighbours, only when several sequences are required
+         */
+        private final long[] counted;
+        /**
+         * Runs ending on the current row, one direction at a time
+         */
+        private final long[] ends;
+        /**
+         * Slot of the current row and of the rows before it, by distance back
+         */
+        private final int[] slots;
+        private AtomicInteger sequences;
+
+        Scan(int size) {
+            this.size = size;
+            this.words = (size + Long.SIZE - 1) >>> 6;
+            this.stride = words + 1;
+            this.lastWord = -1L >>> (words * Long.SIZE - size);
+            this.rows = new long[2 * 2 * stride + 1];
+            this.horizontal = new long[stride + 1];
+            this.neighbours = new long[sequenceSize * COLUMN_DIRECTIONS.length * stride + 1];
+            this.counted = minimumSequences > 1 ? new long[neighbours.length] : null;
+            this.ends = new long[words];
+            this.slots = new int[sequenceSize];
+        }
+
+        Direction find(DnaMatrix matrix, int rowFrom, int rowTo, AtomicInteger sequences) {
+            this.sequences = sequences;
+            // rows read again above the band: enough for the runs ending on its first row, and when several
+            // sequences are required, for the counted ends of the rows above it
+            int seedFrom = rowFrom - (sequenceSize - 1);
+            int first = Math.max(0, counted != null ? seedFrom - (sequenceSize - 1) : seedFrom);
+            for (int row = first; row < rowTo; row++) {
+                boolean counting = row >= rowFrom;
+                if (counting && sequences.get() >= minimumSequences) {
+                    return null;
+                }
+                for (int back = 0; back < sequenceSize && back <= row; back++) {
+                    slots[back] = (row - back) % sequenceSize;
+                }
+                int low = ((row & 1) * 2) * stride + 1;
+                int high = low + stride;
+                Arrays.fill(rows, low, high + words, 0L);
+                matrix.rowBitplanes(row, rows, low, stride);
+                if (counted != null) {
+                    int slot = plane(0, 0);
+                    Arrays.fill(counted, slot, slot + COLUMN_DIRECTIONS.length * stride - 1, 0L);
+                }
+
+                if (counting) {
+                    equal(horizontal, 1, low, high, low, high, 1);
+                    horizontal[1] &= ~1L;
+                    if (runEnds(horizontal, -1, 1) && count(Direction.HORIZONTAL, 1)) {
+                        return Direction.HORIZONTAL;
+                    }
+                }
+                if (row == first) {
+                    continue;
+                }
+                int previousLow = (((row - 1) & 1) * 2) * stride + 1;
+                int previousHigh = previousLow + stride;
+                boolean seeding = !counting && counted != null && row >= seedFrom;
+                for (int index = 0; index < COLUMN_DIRECTIONS.length; index++) {
+                    // column distance to the previous cell of the run, up a row
+                    int colStep = index == 0 ? 0 : index == 1 ? 1 : -1;
+                    int equal = plane(0, index);
+                    equal(neighbours, equal, low, high, previousLow, previousHigh, colStep);
+                    if (colStep == 1) {
+                        neighbours[equal] &= ~1L;
+                    } else if (colStep == -1) {
+                        neighbours[equal + words - 1] &= ~(1L << (size - 1));
+                    }
+                    if (row - first < sequenceSize - 1 || !(counting || seeding)
+                            || !runEnds(neighbours, index, colStep)) {
+                        continue;
+                    }
+                    if (seeding) {
+                        seedCounted(matrix, row, index, colStep);
+                    } else if (count(COLUMN_DIRECTIONS[index], colStep)) {
+                        return COLUMN_DIRECTIONS[index];
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Marks the runs in <tt>ends</tt> a scan from the top of the matrix would have counted on a row above
+         * the band: those whose length is a multiple of <tt>sequenceSize</tt>
+         */
+        private void seedCounted(DnaMatrix matrix, int row, int index, int colStep) {
+            int counts = plane(0, index);
+            for (int word = 0; word < words; word++) {
+                long end = ends[word];
+                while (end != 0L) {
+                    int bit = Long.numberOfTrailingZeros(end);
+                    end &= end - 1;
+                    int col = (word << 6) + bit;
+                    int base = matrix.get(row, col);
+                    int length = 1;
+                    for (int r = row - 1, c = col - colStep; r >= 0 && c >= 0 && c < size && matrix.get(r, c) == base;
+                         r--, c -= colStep) {
+                        length++;
+                    }
+                    if (length % sequenceSize == 0) {
+                        counted[counts + word] |= 1L << bit;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sets the cells whose bitplanes agree with the other ones shifted by <tt>shift</tt> columns
+         */
+        private void equal(long[] to, int plane, int low, int high, int otherLow, int otherHigh, int shift) {
+            for (int word = 0; word < words; word++) {
+                long differentLow = rows[low + word] ^ shifted(rows, otherLow + word, shift);
+                long differentHigh = rows[high + word] ^ shifted(rows, otherHigh + word, shift);
+                to[plane + word] = ~(differentLow | differentHigh);
+            }
+            // padding columns all look like A
+            to[plane + words - 1] &= lastWord;
+        }
+
+        /**
+         * ANDs the equal neighbours of the current row with those of the <tt>sequenceSize - 2</tt> cells
+         * before in the direction, a whole row at a time so the loops stay branch free
+         * @param index index of the direction in <tt>COLUMN_DIRECTIONS</tt>, or -1 for the horizontal one
+         * @param colStep column distance to the previous cell of the run, on the same row for the horizontal
+         * direction, up a row for the others
+         * @return whether a run ends on the current row, <tt>ends</tt> holding where
+         */
+        private boolean runEnds(long[] array, int index, int colStep) {
+            System.arraycopy(array, index < 0 ? 1 : plane(0, index), ends, 0, words);
+            for (int back = 1; back < sequenceSize - 1; back++) {
+                // a row only has its own horizontal neighbours
+                int from = index < 0 ? 1 : plane(back, index);
+                int shift = back * colStep;
+                if (shift > 0) {
+                    int carry = Long.SIZE - shift;
+                    for (int word = 0; word < words; word++) {
+                        ends[word] &= array[from + word] << shift | array[from + word - 1] >>> carry;
+                    }
+                } else if (shift < 0) {
+                    int carry = Long.SIZE + shift;
+                    for (int word = 0; word < words; word++) {
+                        ends[word] &= array[from + word] >>> -shift | array[from + word + 1] << carry;
+                    }
+                } else {
+                    for (int word = 0; word < words; word++) {
+                        ends[word] &= array[from + word];
+                    }
+                }
+            }
+            long any = 0L;
+            for (int word = 0; word < words; word++) {
+                any |= ends[word];
+            }
+            return any != 0L;
+        }
+
+        /**
+         * Adds the runs in <tt>ends</tt> to the sequences found
+         * @param colStep column distance to the previous cell of the run
+         * @return whether they made the count reach <tt>minimumSequences</tt>
+         */
+        private boolean count(Direction direction, int colStep) {
+            if (counted == null) {
+                // a single sequence is enough, no need to count the others of the row
+                return sequences.incrementAndGet() == minimumSequences;
+            }
+            if (direction == Direction.HORIZONTAL) {
+                return countHorizontal();
+            }
+            int index = direction.ordinal() - 1;
+            for (int word = 0; word < words; word++) {
+                long end = ends[word];
+                if (end != 0L) {
+                    // a run ending less than sequenceSize cells after a counted end belongs to the same run
+                    for (int back = 1; back < sequenceSize; back++) {
+                        end &= ~shifted(counted, plane(back, index) + word, back * colStep);
+                    }
+                    counted[plane(0, index) + word] = end;
+                    int found = Long.bitCount(end);
+                    int total = sequences.addAndGet(found);
+                    if (total >= minimumSequences && total - found < minimumSequences) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Runs of a row only block the next columns of the same row, taken in order
+         */
+        private boolean countHorizontal() {
+            int nextCol = 0;
+            for (int word = 0; word < words; word++) {
+                long end = ends[word];
+                while (end != 0L) {
+                    int col = (word << 6) + Long.numberOfTrailingZeros(end);
+                    end &= end - 1;
+                    if (col >= nextCol) {
+                        nextCol = col + sequenceSize;
+                        if (sequences.incrementAndGet() == minimumSequences) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param index index of the direction in <tt>COLUMN_DIRECTIONS</tt>
+         * @return offset of the first word of the plane of a direction, of the row <tt>back</tt> rows up
+         */
+        private int plane(int back, int index) {
+            return (slots[back] * COLUMN_DIRECTIONS.length + index) * stride + 1;
+        }
+
+        /**
+         * @param index index of the word in the array
+         * @param shift columns to move the plane right by, or left by when negative, less than 64 either way
+         * @return the word of the moved plane, bit <tt>c</tt> holding column <tt>c - shift</tt>
+         */
+        private long shifted(long[] array, int index, int shift) {
+            if (shift > 0) {
+                return array[index] << shift | array[index - 1] >>> (Long.SIZE - shift);
+            }
+            if (shift < 0) {
+                return array[index] >>> -shift | array[index + 1] << (Long.SIZE + shift);
+            }
+            return array[index];
+        }
+    }
+}
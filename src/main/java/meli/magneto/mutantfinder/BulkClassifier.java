@@ -0,0 +1,218 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.lang.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Classifies a file of dna in the {@link PackedDnaFormat}, one after the other, and writes one {@link DnaVerdict}
+ * per line in the order of the file, like <tt>/mutant/batch</tt> answers.
+ * <p>
+ * The file is memory-mapped in windows of up to <tt>window-bytes</tt>. The calling thread only walks the sizes
+ * of the dna to cut each window in chunks of about <tt>chunk-bytes</tt>, which the workers unpack and classify
+ * straight from the mapping. At most two chunks per worker are in flight, so memory stays bounded whatever
+ * the size of the file.
+ */
+public class BulkClassifier {
+    private static final int DEFAULT_WINDOW_BYTES = 1 << 30;
+    private static final int HEADER_BYTES = 4;
+
+    private final DnaDetector detector;
+    private final int threads;
+    private final int chunkBytes;
+    private final int maxSize;
+    private final long windowBytes;
+
+    public BulkClassifier(DnaDetector detector, int threads, int chunkBytes, int maxSize) {
+        this(detector, threads, chunkBytes, maxSize, DEFAULT_WINDOW_BYTES);
+    }
+
+    BulkClassifier(DnaDetector detector, int threads, int chunkBytes, int maxSize, int windowBytes) {
+        this.detector = detector;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.chunkBytes = chunkBytes;
+        this.maxSize = Math.min(maxSize, DnaMatrix.MAX_SIZE);
+        // the largest dna must fit a window
+        this.windowBytes = Math.max(windowBytes, HEADER_BYTES + frameBases(this.maxSize));
+    }
+
+    /**
+     * @return how many dna of the file are mutant and how many human
+     * @throws BadInputException if a dna has an invalid size or the file ends in the middle of one, the verdicts
+     * of the dna before it are written anyway
+     */
+    public Result classify(Path input, Path output) throws IOException, InterruptedException {
+        return classify(input, output, null);
+    }
+
+    /**
+     * @param records gets the hash and verdict of the distinct dna of each chunk, on the calling thread and in
+     *                the order of the file, right after their verdicts are written. <tt>null</tt> not to hash them.
+     * @see #classify(Path, Path)
+     */
+    public Result classify(Path input, Path output, @Nullable Consumer<List<Map.Entry<DnaHash, Boolean>>> records)
+            throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "bulk-classifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        Result result = new Result();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            long fileSize = channel.size();
+            long offset = 0L;
+            long index = 0L;
+            try {
+                while (offset < fileSize) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                            Math.min(windowBytes, fileSize - offset));
+                    int position = 0;
+                    // cut the window in chunks of whole dna, the last one in the window is left to the next
+                    while (position < window.limit()) {
+                        int start = position;
+                        long first = index;
+                        while (position < window.limit() && position - start < chunkBytes) {
+                            long end = frameEnd(window, position, offset);
+                            if (end > window.limit()) {
+                                break;
+                            }
+                            position = (int) end;
+                            index++;
+                        }
+                        if (position == start) {
+                            break;
+                        }
+                        ByteBuffer chunk = ((ByteBuffer) window.duplicate().position(start).limit(position)).slice();
+                        if (inFlight.size() >= threads * 2) {
+                            write(inFlight.poll(), out, result, records);
+                        }
+                        inFlight.add(workers.submit(() -> classify(chunk, first, records != null)));
+                    }
+                    if (position == 0) {
+                        throw new BadInputException("File ends in the middle of the dna at byte " + offset);
+                    }
+                    offset += position;
+                }
+            } finally {
+                while (!inFlight.isEmpty()) {
+                    write(inFlight.poll(), out, result, records);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * @return the offset in the window right after the dna starting at the given position, past the limit of the
+     * window when the dna does not end in it
+     */
+    private long frameEnd(ByteBuffer window, int position, long windowOffset) {
+        if (window.limit() - position < HEADER_BYTES) {
+            return (long) window.limit() + 1;
+        }
+        int size = window.getInt(position);
+        if (size <= 0 || size > maxSize) {
+            throw new BadInputException("Dna at byte " + (windowOffset + position) + " has size " + size
+                    + ", expected 1 to " + maxSize);
+        }
+        return position + HEADER_BYTES + frameBases(size);
+    }
+
+    private static long frameBases(int size) {
+        return ((long) size * size + 3) >> 2;
+    }
+
+    private Chunk classify(ByteBuffer chunk, long first, boolean hashed) {
+        PackedDnaFormat format = new PackedDnaFormat(maxSize);
+        StringBuilder verdicts = new StringBuilder(chunk.remaining());
+        // a dna repeated in the chunk is recorded once
+        Map<DnaHash, Boolean> records = hashed ? new LinkedHashMap<>() : null;
+        Chunk result = new Chunk();
+        for (long index = first; chunk.hasRemaining(); index++) {
+            DnaMatrix matrix = format.read(chunk);
+            boolean isMutant = detector.find(matrix) != null;
+            if (hashed) {
+                records.put(DnaHash.of(matrix), isMutant);
+            }
+            verdicts.append("{\"index\":").append(index).append(",\"mutant\":").append(isMutant).append("}\n");
+            if (isMutant) {
+                result.mutants++;
+            } else {
+                result.humans++;
+            }
+        }
+        result.verdicts = verdicts.toString().getBytes(StandardCharsets.US_ASCII);
+        if (hashed) {
+            result.records = new ArrayList<>(records.size());
+            for (Map.Entry<DnaHash, Boolean> record : records.entrySet()) {
+                result.records.add(new AbstractMap.SimpleImmutableEntry<>(record));
+            }
+        }
+        return result;
+    }
+
+    private static void write(Future<Chunk> pending, OutputStream out, Result result,
+                              Consumer<List<Map.Entry<DnaHash, Boolean>>> records)
+            throws IOException, InterruptedException {
+        Chunk chunk;
+        try {
+            chunk = pending.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        out.write(chunk.verdicts);
+        result.mutants += chunk.mutants;
+        result.humans += chunk.humans;
+        if (records != null) {
+            records.accept(chunk.records);
+        }
+    }
+
+    private static class Chunk {
+        private byte[] verdicts;
+        private List<Map.Entry<DnaHash, Boolean>> records;
+        private long mutants;
+        private long humans;
+    }
+
+    public static class Result {
+        private long mutants;
+        private long humans;
+
+        public long getMutants() {
+            return mutants;
+        }
+
+        public long getHumans() {
+            return humans;
+        }
+    }
+}
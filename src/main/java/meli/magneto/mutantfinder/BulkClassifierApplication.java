@@ -0,0 +1,157 @@
+package meli.magneto.mutantfinder;
+
+import com.mongodb.MongoClientURI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static meli.magneto.mutantfinder.Statistics.HUMAN_DNA;
+import static meli.magneto.mutantfinder.Statistics.MUTANT_DNA;
+
+/**
+ * Offline entry point classifying a file of dna with the {@link BulkClassifier}, configured from the same
+ * properties as the web application:
+ * <pre>
+ * ./gradlew bulkClassify -PbulkArgs='--input=archive.dna --output=verdicts.ndjson --stats'
+ * </pre>
+ * With <tt>--stats</tt> each chunk of the file is recorded as it is classified, through the same
+ * {@link MongoStatisticsStore#insert} as the web application, and only the dna not recorded before are counted:
+ * a dna repeated in the file or already sent to <tt>/mutant</tt> counts once. Only active in the <tt>bulk</tt>
+ * profile, so the web application skips it when scanning its package.
+ */
+@Configuration
+@Profile(BulkClassifierApplication.PROFILE)
+// MongoDB is only reached for --stats, without creating indexes or repositories
+@EnableAutoConfiguration(exclude = {MongoAutoConfiguration.class, MongoReactiveAutoConfiguration.class,
+        MongoDataAutoConfiguration.class, MongoReactiveDataAutoConfiguration.class,
+        MongoRepositoriesAutoConfiguration.class, MongoReactiveRepositoriesAutoConfiguration.class})
+@Import(AdaptiveDetector.class)
+public class BulkClassifierApplication {
+    static final String PROFILE = "bulk";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkClassifierApplication.class);
+    private static final int RECORD_ATTEMPTS = 3;
+
+    public static void main(String[] args) {
+        System.exit(SpringApplication.exit(new SpringApplicationBuilder(BulkClassifierApplication.class)
+                .profiles(PROFILE)
+                .run(args)));
+    }
+
+    @Bean
+    public BulkClassifier bulkClassifier(DnaDetector detector,
+                                         @Value("${mutant-finder.bulk.threads:0}") int threads,
+                                         @Value("${mutant-finder.bulk.chunk-bytes:8388608}") int chunkBytes,
+                                         @Value("${mutant-finder.admission.max-size:10000}") int maxSize) {
+        return new BulkClassifier(detector, threads, chunkBytes, maxSize);
+    }
+
+    @Bean
+    public ApplicationRunner bulkClassifierRunner(BulkClassifier bulkClassifier,
+                                                  @Value("${spring.data.mongodb.uri:mongodb://localhost/test}") String mongoUri,
+                                                  @Value("${mutant-finder.stats.shards:16}") int shards,
+                                                  @Value("${mutant-finder.stats.instance-id:}") String instanceId) {
+        return args -> {
+            Path input = path(args.getOptionValues("input"), "input");
+            Path output = path(args.getOptionValues("output"), "output");
+            long start = System.nanoTime();
+            if (!args.containsOption("stats")) {
+                BulkClassifier.Result result = bulkClassifier.classify(input, output);
+                LOGGER.info("Classified {} mutant and {} human dna from {} in {} ms", result.getMutants(),
+                        result.getHumans(), input, (System.nanoTime() - start) / 1_000_000L);
+                return;
+            }
+            SimpleMongoDbFactory mongoDbFactory = new SimpleMongoDbFactory(new MongoClientURI(mongoUri));
+            try {
+                MongoOperations mongoOperations = new MongoTemplate(mongoDbFactory);
+                StatisticsStore store = new MongoStatisticsStore(mongoOperations, shards, instanceId);
+                long[] counted = new long[2];
+                BulkClassifier.Result result = bulkClassifier.classify(input, output, records -> {
+                    long[] chunk = record(store, records);
+                    counted[0] += chunk[0];
+                    counted[1] += chunk[1];
+                });
+                LOGGER.info("Classified {} mutant and {} human dna from {} in {} ms, {} mutant and {} human not "
+                                + "counted before", result.getMutants(), result.getHumans(), input,
+                        (System.nanoTime() - start) / 1_000_000L, counted[0], counted[1]);
+            } finally {
+                mongoDbFactory.destroy();
+            }
+        };
+    }
+
+    /**
+     * Stores the records and counts the ones that were not stored before, retrying the ones that failed
+     *
+     * @param records distinct dna
+     * @return how many new mutant and human dna were counted
+     * @throws IllegalStateException if some records still could not be stored after a few attempts
+     */
+    static long[] record(StatisticsStore store, List<Map.Entry<DnaHash, Boolean>> records) {
+        long[] counted = new long[2];
+        List<Map.Entry<DnaHash, Boolean>> pending = records;
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            List<Map.Entry<DnaHash, Boolean>> failed = new ArrayList<>();
+            List<Map.Entry<DnaHash, Boolean>> inserted;
+            try {
+                inserted = store.insert(pending, failed::add);
+            } catch (RuntimeException e) {
+                if (attempt >= RECORD_ATTEMPTS) {
+                    throw e;
+                }
+                LOGGER.warn("Could not record {} dna, trying again", pending.size(), e);
+                failed = pending;
+                inserted = Collections.emptyList();
+            }
+            long mutants = inserted.stream().filter(Map.Entry::getValue).count();
+            long humans = inserted.size() - mutants;
+            if (mutants > 0L) {
+                store.increment(MUTANT_DNA, mutants);
+            }
+            if (humans > 0L) {
+                store.increment(HUMAN_DNA, humans);
+            }
+            if (mutants > 0L || humans > 0L) {
+                store.sync();
+            }
+            counted[0] += mutants;
+            counted[1] += humans;
+            if (!failed.isEmpty() && attempt >= RECORD_ATTEMPTS) {
+                throw new IllegalStateException("Could not record " + failed.size() + " dna");
+            }
+            pending = failed;
+        }
+        return counted;
+    }
+
+    private static Path path(List<String> values, String option) {
+        if (values == null || values.size() != 1) {
+            throw new IllegalArgumentException("A single --" + option + " file is expected");
+        }
+        return Paths.get(values.get(0));
+    }
+}
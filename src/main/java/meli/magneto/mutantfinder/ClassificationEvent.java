@@ -0,0 +1,97 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * One classification, for the audit trail: which dna, its verdict, when and the direction of the run that made
+ * it mutant. Unlike {@link DnaRecord} there is one per answered classification, so a dna sent again shows up
+ * again, <tt>cached</tt> when its verdict came from the {@link VerdictCache} instead of a detection.
+ */
+@Document(collection = "classification_events")
+public class ClassificationEvent {
+
+    @Id
+    private String id;
+    private String hash;
+    private boolean mutant;
+    private Direction direction;
+    private boolean cached;
+    private Date createdAt;
+
+    public ClassificationEvent() {}
+
+    /**
+     * A detection, mutant when a run was found
+     */
+    public ClassificationEvent(String hash, Direction direction, Date createdAt) {
+        this(hash, direction != null, direction, false, createdAt);
+    }
+
+    /**
+     * @param direction <tt>null</tt> for human dna, and for cached verdicts, which don't keep it
+     */
+    public ClassificationEvent(String hash, boolean mutant, Direction direction, boolean cached, Date createdAt) {
+        this.hash = hash;
+        this.mutant = mutant;
+        this.direction = direction;
+        this.cached = cached;
+        this.createdAt = createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public boolean isMutant() {
+        return mutant;
+    }
+
+    public void setMutant(boolean mutant) {
+        this.mutant = mutant;
+    }
+
+    /**
+     * @return direction of the run that made the dna mutant, <tt>null</tt> for human dna or a cached verdict
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public void setDirection(Direction direction) {
+        this.direction = direction;
+    }
+
+    /**
+     * @return whether the verdict came from the cache, without a detection
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
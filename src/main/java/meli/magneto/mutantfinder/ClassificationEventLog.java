@@ -0,0 +1,231 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind audit trail of every classification answered, detected or cached. Classifying threads publish to a ring buffer of
+ * preallocated slots: claiming a sequence is one compare-and-set and publishing it one volatile write, nothing
+ * is allocated and no lock is taken. A single consumer reads the published slots in order and commits them to
+ * the {@link ClassificationEventSink} in batches of up to <tt>batch-size</tt>, so the slower the sink the bigger
+ * the batches.
+ * <p>
+ * Slots are only freed once their batch is committed, a failing sink is retried every
+ * <tt>retry-interval-ms</tt> with the same events and the ones published in the meantime, at least once each.
+ * When the buffer is full, <tt>backpressure</tt> either drops the event (<tt>drop</tt>) or holds the classifying
+ * thread until a slot is freed (<tt>block</tt>), dropping it after <tt>block-timeout-ms</tt> anyway.
+ */
+@Component
+public class ClassificationEventLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassificationEventLog.class);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCKED_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    enum Backpressure {
+        DROP, BLOCK
+    }
+
+    private final ClassificationEventSink sink;
+    private final Slot[] slots;
+    private final int mask;
+    private final int batchSize;
+    private final Backpressure backpressure;
+    private final long blockTimeoutNanos;
+    private final long retryIntervalMs;
+    private final Counter droppedCounter;
+    private final DistributionSummary batchSummary;
+    private final Timer writeTimer;
+
+    // next sequence to claim, and the first one not committed yet
+    private final AtomicLong next = new AtomicLong();
+    private volatile long committed;
+    private volatile boolean running;
+    private Thread consumer;
+
+    public ClassificationEventLog(@Nullable ClassificationEventSink sink,
+                                  @Value("${mutant-finder.events.buffer-size:65536}") int bufferSize,
+                                  @Value("${mutant-finder.events.batch-size:1000}") int batchSize,
+                                  @Value("${mutant-finder.events.backpressure:drop}") String backpressure,
+                                  @Value("${mutant-finder.events.block-timeout-ms:100}") long blockTimeoutMs,
+                                  @Value("${mutant-finder.events.retry-interval-ms:1000}") long retryIntervalMs,
+                                  MeterRegistry meterRegistry) {
+        this.sink = sink;
+        // a power of two, so a sequence maps to its slot with a mask
+        int capacity = bufferSize <= 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+        this.batchSize = batchSize;
+        this.backpressure = Backpressure.valueOf(backpressure.toUpperCase(Locale.ROOT));
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        this.retryIntervalMs = retryIntervalMs;
+        this.droppedCounter = Counter.builder("dna.events.dropped")
+                .description("Classification events dropped because the buffer was full")
+                .register(meterRegistry);
+        this.batchSummary = DistributionSummary.builder("dna.events.batch")
+                .description("Classification events committed per batch")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("dna.events.write")
+                .description("Time spent committing one batch of classification events")
+                .register(meterRegistry);
+        Gauge.builder("dna.events.pending", this, ClassificationEventLog::pendingCount)
+                .description("Classification events published and not committed yet")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (sink == null) {
+            return;
+        }
+        running = true;
+        consumer = new Thread(this::consume, "classification-events");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Commits whatever was published before the application goes down
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (consumer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(retryIntervalMs * 2 + TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * @param direction direction of the run that made the dna mutant, <tt>null</tt> for human dna
+     */
+    public void publish(DnaHash hash, Direction direction) {
+        publish(hash, direction != null, direction, false);
+    }
+
+    /**
+     * @param mutant verdict answered from the {@link VerdictCache}
+     */
+    public void publishCached(DnaHash hash, boolean mutant) {
+        publish(hash, mutant, null, true);
+    }
+
+    private void publish(DnaHash hash, boolean mutant, Direction direction, boolean cached) {
+        if (sink == null) {
+            return;
+        }
+        long sequence = claim();
+        if (sequence < 0L) {
+            droppedCounter.increment();
+            return;
+        }
+        Slot slot = slots[(int) sequence & mask];
+        slot.hash = hash;
+        slot.mutant = mutant;
+        slot.direction = direction;
+        slot.cached = cached;
+        slot.time = System.currentTimeMillis();
+        // makes the fields above visible to the consumer
+        slot.published = sequence;
+    }
+
+    /**
+     * @return the claimed sequence, or <tt>-1</tt> if the buffer stayed full
+     */
+    private long claim() {
+        boolean waiting = false;
+        long deadline = 0L;
+        while (true) {
+            long sequence = next.get();
+            if (sequence - committed < slots.length) {
+                if (next.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            } else if (backpressure == Backpressure.DROP || !running) {
+                return -1L;
+            } else if (!waiting) {
+                waiting = true;
+                deadline = System.nanoTime() + blockTimeoutNanos;
+            } else if (System.nanoTime() - deadline >= 0L) {
+                return -1L;
+            } else {
+                LockSupport.parkNanos(BLOCKED_NANOS);
+            }
+        }
+    }
+
+    long pendingCount() {
+        return next.get() - committed;
+    }
+
+    private void consume() {
+        List<ClassificationEvent> batch = new ArrayList<>(batchSize);
+        long sequence = committed;
+        while (true) {
+            while (batch.size() < batchSize) {
+                Slot slot = slots[(int) (sequence + batch.size()) & mask];
+                if (slot.published != sequence + batch.size()) {
+                    break;
+                }
+                batch.add(new ClassificationEvent(slot.hash.toString(), slot.mutant, slot.direction, slot.cached,
+                        new Date(slot.time)));
+                slot.hash = null;
+            }
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            try {
+                writeTimer.record(() -> sink.write(batch));
+                batchSummary.record(batch.size());
+            } catch (RuntimeException e) {
+                if (running) {
+                    // slots stay taken, the batch is written again with whatever comes in meanwhile
+                    LOGGER.warn("Could not write {} classification events", batch.size(), e);
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(retryIntervalMs));
+                    continue;
+                }
+                LOGGER.error("Lost {} classification events while stopping", batch.size(), e);
+            }
+            sequence += batch.size();
+            committed = sequence;
+            batch.clear();
+        }
+    }
+
+    /**
+     * Reused for every sequence mapping to it, <tt>published</tt> holds the last one written
+     */
+    private static final class Slot {
+        private DnaHash hash;
+        private boolean mutant;
+        private Direction direction;
+        private boolean cached;
+        private long time;
+        private volatile long published = -1L;
+    }
+}
@@ -0,0 +1,18 @@
+package meli.magneto.mutantfinder;
+
+import java.util.List;
+
+/**
+ * Where the {@link ClassificationEventLog} commits its batches, picked with <tt>mutant-finder.events.sink</tt>:
+ * <tt>mongo</tt> (the default), <tt>file</tt> or <tt>none</tt> to keep no audit trail. Only ever called from the
+ * single consumer of the log.
+ */
+public interface ClassificationEventSink {
+
+    /**
+     * Commits the whole batch, oldest first
+     *
+     * @throws RuntimeException if it could not, the same events are written again later
+     */
+    void write(List<ClassificationEvent> events);
+}
@@ -0,0 +1,77 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detection latency by matrix size, the direction of the run that made each dna mutant and the number of
+ * dna rejected by validation. Every meter is registered up front, so recording is a lookup in a small array
+ * or enum map and never goes through the registry.
+ */
+@Component
+public class DetectionMetrics {
+    /**
+     * Upper bound (inclusive) of every size bucket but the last one, which takes anything larger
+     */
+    private static final int[] SIZE_BUCKETS = {10, 100, 1000, 10000};
+
+    private final Timer[] detectionTimers = new Timer[SIZE_BUCKETS.length + 1];
+    private final Map<Direction, Counter> hits = new EnumMap<>(Direction.class);
+    private final Counter misses;
+    private final Counter rejects;
+
+    public DetectionMetrics(MeterRegistry registry) {
+        int lowerBound = 1;
+        for (int i = 0; i <= SIZE_BUCKETS.length; i++) {
+            String size = i < SIZE_BUCKETS.length ? lowerBound + "-" + SIZE_BUCKETS[i] : lowerBound + "+";
+            detectionTimers[i] = Timer.builder("dna.detection")
+                    .description("Time spent looking for runs in a dna, cached verdicts excluded")
+                    .tag("size", size)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            if (i < SIZE_BUCKETS.length) {
+                lowerBound = SIZE_BUCKETS[i] + 1;
+            }
+        }
+        for (Direction direction : Direction.values()) {
+            hits.put(direction, hitCounter(registry, direction.name().toLowerCase()));
+        }
+        misses = hitCounter(registry, "none");
+        rejects = Counter.builder("dna.validation.rejects")
+                .description("Dna rejected as invalid")
+                .register(registry);
+    }
+
+    private static Counter hitCounter(MeterRegistry registry, String direction) {
+        return Counter.builder("dna.detection.hits")
+                .description("Detections by direction of the run found, none for human dna")
+                .tag("direction", direction)
+                .register(registry);
+    }
+
+    /**
+     * @param direction direction of the run found, <tt>null</tt> for a human dna
+     */
+    public void recordDetection(int size, long elapsedNanos, Direction direction) {
+        detectionTimers[bucket(size)].record(elapsedNanos, TimeUnit.NANOSECONDS);
+        (direction != null ? hits.get(direction) : misses).increment();
+    }
+
+    public void recordReject() {
+        rejects.increment();
+    }
+
+    private static int bucket(int size) {
+        int i = 0;
+        while (i < SIZE_BUCKETS.length && size > SIZE_BUCKETS[i]) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,175 @@
+package meli.magneto.mutantfinder;
+
+/**
+ * Scans a dna as its rows arrive, one at a time, the way the {@link RunLengthDetector} scans a whole matrix. The
+ * only state kept is the previous row and one run counter per column for each of the vertical and diagonal
+ * directions, so memory grows with the size of the dna and not with its number of bases. Every row is validated
+ * and case-folded like {@link DnaMatrix#of(String[])} does, and hashed like {@link DnaHash#of(String[])}.
+ * <p>
+ * The first row sets the size of the dna. Once <tt>minimumSequences</tt> sequences are found the remaining rows
+ * are only validated and hashed.
+ */
+public final class DetectionSession {
+    private final int sequenceSize;
+    private final int minimumSequences;
+    private final DnaHash.Hasher hasher = new DnaHash.Hasher();
+
+    private int size;
+    private int rows;
+    private byte[] previous;
+    private byte[] current;
+    private int[] vertical;
+    private int[] diagonal;
+    private int[] antiDiagonal;
+    private int sequences;
+    private Direction direction;
+
+    DetectionSession(int sequenceSize, int minimumSequences) {
+        this.sequenceSize = sequenceSize;
+        this.minimumSequences = minimumSequences;
+    }
+
+    /**
+     * @param row bases of the next row, in any case
+     * @return direction of the sequence that reached <tt>minimumSequences</tt> if it was found in this row,
+     * <tt>null</tt> otherwise, including for every row after it
+     * @throws BadInputException if there are too many rows, or the row is not valid
+     */
+    public Direction addRow(CharSequence row) {
+        if (rows == 0) {
+            start(row.length());
+        } else if (rows == size) {
+            throw new BadInputException("Dna has more than " + size + " rows");
+        }
+        if (row.length() != size) {
+            throw new BadInputException("Dna row " + rows + " has " + row.length() + " bases, expected " + size);
+        }
+        for (int col = 0; col < size; col++) {
+            char ch = row.charAt(col);
+            int code = DnaMatrix.code(ch);
+            if (code < 0) {
+                throw new BadInputException("Dna row " + rows + " has an invalid base '" + ch + "' at column " + col);
+            }
+            current[col] = (byte) code;
+            hasher.putBase(code);
+        }
+
+        Direction found = direction == null ? scan(rows > 0) : null;
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+        rows++;
+        return found;
+    }
+
+    private void start(int size) {
+        if (size == 0) {
+            throw new BadInputException("Dna cannot be empty");
+        }
+        if (size > DnaMatrix.MAX_SIZE) {
+            throw new BadInputException("Dna cannot have more than " + DnaMatrix.MAX_SIZE + " rows");
+        }
+        this.size = size;
+        previous = new byte[size];
+        current = new byte[size];
+        vertical = new int[size];
+        diagonal = new int[size];
+        antiDiagonal = new int[size];
+        hasher.putInt(size);
+    }
+
+    /**
+     * Extends the runs of the previous row with the current one, see {@link RunLengthDetector#find(DnaMatrix)}
+     */
+    private Direction scan(boolean hasUp) {
+        int horizontal = 0;
+        int left = -1;
+        int diagonalCarry = 0;
+        for (int col = 0; col < size; col++) {
+            int base = current[col];
+            int up = hasUp ? previous[col] : -1;
+            int upLeft = hasUp && col > 0 ? previous[col - 1] : -1;
+            int upRight = hasUp && col + 1 < size ? previous[col + 1] : -1;
+
+            horizontal = base == left ? horizontal + 1 : 1;
+            if (horizontal == sequenceSize) {
+                horizontal = 0;
+                if (++sequences == minimumSequences) {
+                    return found(Direction.HORIZONTAL);
+                }
+            }
+            vertical[col] = base == up ? vertical[col] + 1 : 1;
+            if (vertical[col] == sequenceSize) {
+                vertical[col] = 0;
+                if (++sequences == minimumSequences) {
+                    return found(Direction.VERTICAL);
+                }
+            }
+            int upLeftRun = diagonalCarry;
+            diagonalCarry = diagonal[col];
+            diagonal[col] = base == upLeft ? upLeftRun + 1 : 1;
+            if (diagonal[col] == sequenceSize) {
+                diagonal[col] = 0;
+                if (++sequences == minimumSequences) {
+                    return found(Direction.DIAGONAL);
+                }
+            }
+            // antiDiagonal[col + 1] still holds the previous row value at this point
+            int upRightRun = col + 1 < size ? antiDiagonal[col + 1] : 0;
+            antiDiagonal[col] = base == upRight ? upRightRun + 1 : 1;
+            if (antiDiagonal[col] == sequenceSize) {
+                antiDiagonal[col] = 0;
+                if (++sequences == minimumSequences) {
+                    return found(Direction.ANTI_DIAGONAL);
+                }
+            }
+            left = base;
+        }
+        return null;
+    }
+
+    private Direction found(Direction direction) {
+        this.direction = direction;
+        // the counters are not needed anymore
+        vertical = null;
+        diagonal = null;
+        antiDiagonal = null;
+        return direction;
+    }
+
+    /**
+     * @return the hash of the whole dna
+     * @throws BadInputException if rows are missing
+     */
+    public DnaHash finish() {
+        if (rows == 0) {
+            throw new BadInputException("Dna cannot be empty");
+        }
+        if (rows != size) {
+            throw new BadInputException("Dna has " + rows + " rows, expected " + size);
+        }
+        return hasher.finish();
+    }
+
+    public boolean isMutant() {
+        return direction != null;
+    }
+
+    /**
+     * @return direction of the sequence that reached <tt>minimumSequences</tt>, <tt>null</tt> until it is found
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return size of the dna, <tt>0</tt> until the first row
+     */
+    public int size() {
+        return size;
+    }
+
+    public int rows() {
+        return rows;
+    }
+}
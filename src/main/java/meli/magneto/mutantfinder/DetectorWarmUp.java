@@ -0,0 +1,186 @@
+package meli.magneto.mutantfinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Packs, hashes and scans synthetic dna of a few sizes through every engine of the {@link AdaptiveDetector}, so
+ * the first requests find that code already compiled whatever the size of their dna. With
+ * <tt>mutant-finder.detector.calibrate</tt>, each engine is then timed on dna without runs of growing sizes and
+ * the thresholds set to the sizes from which the bitboard and the parallel scan keep winning.
+ * <p>
+ * This runs while the context starts, so the server only opens its port once done. With
+ * <tt>warm-up-in-background</tt>, as in the <tt>fast</tt> profile, it runs on a low priority thread instead and
+ * health reports <tt>OUT_OF_SERVICE</tt> until it is done. Created eagerly even in the <tt>fast</tt> profile.
+ */
+@Component
+@Lazy(false)
+public class DetectorWarmUp implements HealthIndicator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DetectorWarmUp.class);
+    private static final int[] SIZES = {6, 32, 100};
+    private static final int[] CALIBRATION_SIZES = {16, 32, 64, 128, 256, 512, 1024, 2048};
+    private static final int CALIBRATION_ROUNDS = 5;
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+    private final AdaptiveDetector detector;
+    private final int iterations;
+    private final boolean inBackground;
+    private final boolean calibrate;
+    private volatile boolean done;
+
+    public DetectorWarmUp(AdaptiveDetector detector,
+                          @Value("${mutant-finder.startup.warm-up-iterations:3000}") int iterations,
+                          @Value("${mutant-finder.startup.warm-up-in-background:false}") boolean inBackground,
+                          @Value("${mutant-finder.detector.calibrate:false}") boolean calibrate) {
+        this.detector = detector;
+        this.iterations = iterations;
+        this.inBackground = inBackground;
+        this.calibrate = calibrate;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!inBackground) {
+            run();
+            return;
+        }
+        Thread thread = new Thread(this::run, "detector-warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    @Override
+    public Health health() {
+        if (!done) {
+            return Health.outOfService().withDetail("warmUp", "running").build();
+        }
+        return Health.up()
+                .withDetail("bitboardThreshold", detector.getBitboardThreshold())
+                .withDetail("parallelThreshold", detector.getParallelThreshold())
+                .build();
+    }
+
+    void run() {
+        try {
+            warmUp();
+            if (calibrate) {
+                calibrate();
+            }
+        } catch (RuntimeException e) {
+            // a cold detector is slower, not wrong
+            LOGGER.warn("Detector warm-up failed", e);
+        }
+        done = true;
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        Random random = new Random(SIZES.length);
+        // three random dna, mostly mutant and found early, for every one without runs, scanned to the end
+        String[][] dna = new String[SIZES.length * 4][];
+        for (int i = 0; i < dna.length; i++) {
+            int size = SIZES[i % SIZES.length];
+            dna[i] = i < SIZES.length ? noRunDna(size) : randomDna(random, size);
+        }
+        int mutants = 0;
+        List<DnaDetector> engines = detector.engines();
+        for (DnaDetector engine : engines) {
+            for (int i = 0; i < iterations; i++) {
+                String[] sample = dna[i % dna.length];
+                DnaHash.of(sample);
+                if (engine.find(DnaMatrix.of(sample)) != null) {
+                    mutants++;
+                }
+            }
+        }
+        LOGGER.info("Detector warmed up with {} dna ({} mutant) through {} engines in {} ms",
+                iterations * engines.size(), mutants, engines.size(), (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    private void calibrate() {
+        long start = System.nanoTime();
+        long[] scan = new long[CALIBRATION_SIZES.length];
+        long[] bitboard = new long[CALIBRATION_SIZES.length];
+        long[] parallel = new long[CALIBRATION_SIZES.length];
+        long[] sequential = new long[CALIBRATION_SIZES.length];
+        for (int i = 0; i < CALIBRATION_SIZES.length; i++) {
+            DnaMatrix matrix = DnaMatrix.of(noRunDna(CALIBRATION_SIZES[i]));
+            scan[i] = fastest(detector.getScanner(), matrix);
+            bitboard[i] = detector.getBitboard() != null ? fastest(detector.getBitboard(), matrix) : Long.MAX_VALUE;
+            parallel[i] = fastest(detector.getParallel(), matrix);
+            sequential[i] = Math.min(scan[i], bitboard[i]);
+        }
+        detector.setThresholds(threshold(CALIBRATION_SIZES, bitboard, scan),
+                threshold(CALIBRATION_SIZES, parallel, sequential));
+        LOGGER.info("Detector calibrated in {} ms: bitboard from {} on, parallel from {} on",
+                (System.nanoTime() - start) / 1_000_000L, detector.getBitboardThreshold(),
+                detector.getParallelThreshold());
+    }
+
+    /**
+     * @return the best time in nanoseconds of a few scans, the others having paid for collections or
+     * descheduling
+     */
+    private static long fastest(DnaDetector engine, DnaMatrix matrix) {
+        long fastest = Long.MAX_VALUE;
+        for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            long start = System.nanoTime();
+            engine.find(matrix);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+
+    /**
+     * @param candidate time of the engine to switch to at each size
+     * @param incumbent time of the engine used below the threshold at each size
+     * @return the smallest size from which the candidate is faster at every size measured, or
+     * {@link Integer#MAX_VALUE} if it is not faster at the largest one
+     */
+    static int threshold(int[] sizes, long[] candidate, long[] incumbent) {
+        int threshold = Integer.MAX_VALUE;
+        for (int i = sizes.length - 1; i >= 0 && candidate[i] < incumbent[i]; i--) {
+            threshold = sizes[i];
+        }
+        return threshold;
+    }
+
+    /**
+     * Rows built from "aacc"/"ggtt" shifted so no direction has more than two equal bases in a row
+     */
+    private static String[] noRunDna(int size) {
+        String[] pattern = {"aacc", "ggtt"};
+        String[] dna = new String[size];
+        char[] row = new char[size];
+        for (int i = 0; i < size; i++) {
+            String line = pattern[(i / 2) % 2];
+            for (int j = 0; j < size; j++) {
+                row[j] = line.charAt((j + (i % 2) * 2) % 4);
+            }
+            dna[i] = new String(row);
+        }
+        return dna;
+    }
+
+    private static String[] randomDna(Random random, int size) {
+        String[] dna = new String[size];
+        char[] row = new char[size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                row[j] = BASES[random.nextInt(BASES.length)];
+            }
+            dna[i] = new String(row);
+        }
+        return dna;
+    }
+}
@@ -0,0 +1,17 @@
+package meli.magneto.mutantfinder;
+
+/**
+ * Direction of the run that made a dna mutant
+ */
+public enum Direction {
+    HORIZONTAL,
+    VERTICAL,
+    /**
+     * Top left to bottom right
+     */
+    DIAGONAL,
+    /**
+     * Top right to bottom left
+     */
+    ANTI_DIAGONAL
+}
@@ -0,0 +1,27 @@
+package meli.magneto.mutantfinder;
+
+/**
+ * Strategy finding whether a dna has <tt>minimumSequences</tt> sequences of <tt>sequenceSize</tt> equal bases.
+ * Every engine counts the same sequences, they only differ in how fast they do it for a given size.
+ */
+public interface DnaDetector {
+
+    int getSequenceSize();
+
+    int getMinimumSequences();
+
+    /**
+     * @param matrix packed dna
+     * @return direction of the sequence that reached <tt>minimumSequences</tt>, or <tt>null</tt> if there are
+     * not enough of them
+     */
+    Direction find(DnaMatrix matrix);
+
+    /**
+     * @param matrix packed dna
+     * @return <tt>true</tt> as soon as <tt>minimumSequences</tt> sequences are found
+     */
+    default boolean isMutant(DnaMatrix matrix) {
+        return find(matrix) != null;
+    }
+}
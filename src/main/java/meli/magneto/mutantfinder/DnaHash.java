@@ -0,0 +1,259 @@
+package meli.magneto.mutantfinder;
+
+/**
+ * 128-bit content hash (MurmurHash3 x64) of a DNA. The hashed content is its size followed by the 2-bit
+ * codes of its bases, row by row and packed 32 per word like a {@link DnaMatrix} packs them, so the same
+ * DNA always gets the same hash whatever the case of its bases and a packed one is hashed straight from
+ * its words.
+ */
+public final class DnaHash {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    /**
+     * The 4 lower case bases of every byte of 2-bit codes, as 4 ASCII bytes starting at the lowest ones
+     */
+    private static final long[] LOWER_CASE_BASES = new long[256];
+
+    static {
+        for (int codes = 0; codes < LOWER_CASE_BASES.length; codes++) {
+            for (int i = 0; i < 4; i++) {
+                LOWER_CASE_BASES[codes] |= (long) "acgt".charAt((codes >>> (i << 1)) & 3) << (i << 3);
+            }
+        }
+    }
+
+    private final long high;
+    private final long low;
+
+    DnaHash(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param dna raw dna, not validated
+     * @return the hash or <tt>null</tt> if the dna cannot be a valid one (null or missing rows, rows that are
+     * not as long as the dna or anything but ATCG), in which case it must not be looked up
+     */
+    public static DnaHash of(String[] dna) {
+        if (dna == null || dna.length == 0) {
+            return null;
+        }
+        Hasher hasher = new Hasher();
+        hasher.putInt(dna.length);
+        char[] chars = new char[dna.length];
+        for (String row : dna) {
+            if (row == null || row.length() != chars.length) {
+                return null;
+            }
+            row.getChars(0, chars.length, chars, 0);
+            int col = 0;
+            for (; col + 8 <= chars.length; col += 8) {
+                int codes = codes(chars, col);
+                if (codes < 0) {
+                    return null;
+                }
+                hasher.putEightBases(codes);
+            }
+            for (; col < chars.length; col++) {
+                int code = DnaMatrix.code(chars[col]);
+                if (code < 0) {
+                    return null;
+                }
+                hasher.putBase(code);
+            }
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Validates and encodes 8 bases at once: bits 1 to 3 of ATCG in either case give their code, and a base is
+     * valid when the lower case base of its code is what it is once case folded.
+     *
+     * @return 2-bit codes of the bases starting at the lowest bits, or <tt>-1</tt> if any is not ATCG
+     */
+    private static int codes(char[] chars, int col) {
+        long ascii = 0L;
+        int all = 0;
+        for (int i = 0; i < 8; i++) {
+            char ch = chars[col + i];
+            all |= ch;
+            ascii |= (long) ch << (i << 3);
+        }
+        long codes = ((ascii >>> 1) ^ (ascii >>> 2)) & 0x0303030303030303L;
+        codes = (codes | codes >>> 6) & 0x000F000F000F000FL;
+        codes = (codes | codes >>> 12) & 0x000000FF000000FFL;
+        codes = (codes | codes >>> 24) & 0xFFFFL;
+        long lowerCase = LOWER_CASE_BASES[(int) codes & 0xFF] | LOWER_CASE_BASES[(int) codes >>> 8] << 32;
+        return all > 0x7F || (ascii | 0x2020202020202020L) != lowerCase ? -1 : (int) codes;
+    }
+
+    /**
+     * @param matrix packed dna
+     * @return the same hash as the one of the rows the matrix was packed from
+     */
+    public static DnaHash of(DnaMatrix matrix) {
+        Hasher hasher = new Hasher();
+        int size = matrix.size();
+        hasher.putInt(size);
+        for (int word = 0; word < DnaMatrix.packedLength(size); word++) {
+            hasher.putWord(matrix.word(word));
+        }
+        return hasher.finish();
+    }
+
+    long high() {
+        return high;
+    }
+
+    long low() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DnaHash)) {
+            return false;
+        }
+        DnaHash other = (DnaHash) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) low;
+    }
+
+    /**
+     * @return the 32 hex digits of the hash
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /**
+     * Streaming MurmurHash3_x64_128 of an int followed by bases, fed one at a time or 32 at once. The bases are
+     * packed in little endian words, the halves of each 16 byte block, and a block is mixed as soon as it is full.
+     */
+    static final class Hasher {
+        private long h1;
+        private long h2;
+        private long length;
+        // bytes not mixed yet: up to a word and a half, the int only shifts the words by half a word
+        private long k1;
+        private long k2;
+        private int position;
+        // bases not filling a word yet
+        private long bases;
+        private int count;
+
+        /**
+         * @param value goes before the bases
+         */
+        void putInt(int value) {
+            k1 = value & 0xFFFFFFFFL;
+            position = Integer.BYTES;
+            length = Integer.BYTES;
+        }
+
+        /**
+         * @param code 2-bit code of the next base
+         */
+        void putBase(int code) {
+            bases |= (long) code << (count << 1);
+            if (++count == 32) {
+                putWord(bases);
+                bases = 0L;
+                count = 0;
+            }
+        }
+
+        /**
+         * @param codes 2-bit codes of the next 8 bases starting at the lowest bits
+         */
+        void putEightBases(int codes) {
+            bases |= (long) codes << (count << 1);
+            count += 8;
+            if (count >= 32) {
+                putWord(bases);
+                count -= 32;
+                bases = count > 0 ? codes >>> ((8 - count) << 1) : 0L;
+            }
+        }
+
+        /**
+         * @param word 2-bit codes of the next 32 bases starting at the lowest bits, only called between words
+         */
+        void putWord(long word) {
+            length += Long.BYTES;
+            // the int leaves a block with either 4 or 12 bytes when a word comes in
+            if (position == 4) {
+                k1 |= word << 32;
+                k2 = word >>> 32;
+                position = 12;
+            } else {
+                k2 |= word << 32;
+                mixBlock();
+                k1 = word >>> 32;
+                position = 4;
+            }
+        }
+
+        private void mixBlock() {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        DnaHash finish() {
+            if (count > 0) {
+                putWord(bases);
+                count = 0;
+            }
+            if (position > 0) {
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(position > 8 ? k2 : 0L);
+            }
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix(h1);
+            h2 = fmix(h2);
+            h1 += h2;
+            h2 += h1;
+            return new DnaHash(h1, h2);
+        }
+
+        private static long mixK1(long k) {
+            k *= C1;
+            k = Long.rotateLeft(k, 31);
+            return k * C2;
+        }
+
+        private static long mixK2(long k) {
+            k *= C2;
+            k = Long.rotateLeft(k, 33);
+            return k * C1;
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package meli.magneto.mutantfinder;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.Arrays;
+
+/**
+ * Square DNA matrix packed with 2 bits per base (32 bases per long, row major).
+ * Bases are case insensitive, so "a" and "A" share the same code.
+ */
+@JsonDeserialize(using = DnaMatrixDeserializer.class)
+public final class DnaMatrix {
+    public static final int A = 0;
+    public static final int C = 1;
+    public static final int G = 2;
+    public static final int T = 3;
+
+    /**
+     * Largest size whose number of bases still fits an int
+     */
+    public static final int MAX_SIZE = 46340;
+
+    private static final byte INVALID = -1;
+    /**
+     * 2-bit code of every ASCII character, <tt>INVALID</tt> for anything but ATCG in either case
+     */
+    private static final byte[] CODES = new byte[128];
+
+    static {
+        Arrays.fill(CODES, INVALID);
+        CODES['a'] = CODES['A'] = A;
+        CODES['c'] = CODES['C'] = C;
+        CODES['g'] = CODES['G'] = G;
+        CODES['t'] = CODES['T'] = T;
+    }
+
+    private final int size;
+    private final long[] bases;
+
+    DnaMatrix(int size, long[] bases) {
+        this.size = size;
+        this.bases = bases;
+    }
+
+    /**
+     * Validates, case-folds and packs a DNA in a single pass over its bases
+     * @param dna square matrix of ATCG strings, in any case
+     * @return packed matrix
+     * @throws BadInputException naming the first row or base that is not valid
+     */
+    public static DnaMatrix of(String[] dna) {
+        if (dna == null) {
+            throw new BadInputException("Dna cannot be null");
+        }
+        if (dna.length == 0) {
+            throw new BadInputException("Dna cannot be empty");
+        }
+        Packer packer = new Packer(dna.length);
+        char[] buffer = new char[dna.length];
+        for (int row = 0; row < dna.length; row++) {
+            String sequence = dna[row];
+            if (sequence == null) {
+                throw new BadInputException("Dna row " + row + " cannot be null");
+            }
+            int length = Math.min(sequence.length(), buffer.length);
+            sequence.getChars(0, length, buffer, 0);
+            packer.addRow(buffer, 0, sequence.length());
+        }
+        return packer.finish();
+    }
+
+    /**
+     * @return 2-bit code of a base in either case, <tt>-1</tt> for anything but ATCG
+     */
+    static int code(char ch) {
+        return ch < CODES.length ? CODES[ch] : INVALID;
+    }
+
+    static int packedLength(int size) {
+        return (size * size + 31) >> 5;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 2-bit code of the base at the given position
+     */
+    public int get(int row, int col) {
+        int idx = row * size + col;
+        return (int) (bases[idx >> 5] >>> ((idx & 31) << 1)) & 3;
+    }
+
+    /**
+     * @return the given word of packed bases, 32 per word starting at the lowest bits; the bits past the last
+     * base are 0
+     */
+    long word(int index) {
+        return bases[index];
+    }
+
+    /**
+     * Splits a row in two bitplanes, the low and the high bit of the code of every base. Column <tt>c</tt> is
+     * bit <tt>c % 64</tt> of word <tt>c / 64</tt> of each plane; bits past the last column are left alone.
+     * @param planes cleared bitplanes, each <tt>(size + 63) / 64</tt> words long
+     * @param offset index of the first word of the low bit plane
+     * @param stride distance from the first word of the low bit plane to the first one of the high bit plane
+     */
+    void rowBitplanes(int row, long[] planes, int offset, int stride) {
+        int idx = row * size;
+        // 32 columns at a time, half a word of each plane
+        for (int col = 0; col < size; col += 32, idx += 32) {
+            int shift = (idx & 31) << 1;
+            long packed = bases[idx >> 5] >>> shift;
+            if (shift != 0 && (idx >> 5) + 1 < bases.length) {
+                packed |= bases[(idx >> 5) + 1] << (Long.SIZE - shift);
+            }
+            long columns = size - col < 32 ? (1L << (size - col)) - 1 : 0xFFFFFFFFL;
+            int word = offset + (col >>> 6);
+            int bit = col & 63;
+            planes[word] |= (evenBits(packed) & columns) << bit;
+            planes[word + stride] |= (evenBits(packed >>> 1) & columns) << bit;
+        }
+    }
+
+    /**
+     * @return bits 0, 2, 4 ... 62 of the value moved down to bits 0 to 31
+     */
+    private static long evenBits(long value) {
+        long bits = value & 0x5555555555555555L;
+        bits = (bits | bits >>> 1) & 0x3333333333333333L;
+        bits = (bits | bits >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        bits = (bits | bits >>> 4) & 0x00FF00FF00FF00FFL;
+        bits = (bits | bits >>> 8) & 0x0000FFFF0000FFFFL;
+        return (bits | bits >>> 16) & 0x00000000FFFFFFFFL;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DnaMatrix)) {
+            return false;
+        }
+        DnaMatrix other = (DnaMatrix) o;
+        return size == other.size && Arrays.equals(bases, other.bases);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(bases);
+    }
+
+    /**
+     * Packs a DNA row by row into a buffer allocated once its size is known, so the rows never have to be
+     * kept around. Every row is validated and case-folded as it is packed.
+     */
+    static final class Packer {
+        private final int size;
+        private final long[] bases;
+        private int row;
+        private int idx;
+        private long packed;
+
+        /**
+         * @param size number of rows, which is also the length of every row
+         */
+        Packer(int size) {
+            if (size > MAX_SIZE) {
+                throw new BadInputException("Dna cannot have more than " + MAX_SIZE + " rows");
+            }
+            this.size = size;
+            this.bases = new long[packedLength(size)];
+        }
+
+        /**
+         * @param chars buffer holding the row
+         * @param offset index of the first base of the row in the buffer
+         * @param length number of bases of the row
+         * @throws BadInputException if there are too many rows, or the row is not valid
+         */
+        void addRow(char[] chars, int offset, int length) {
+            if (row == size) {
+                throw new BadInputException("Dna has more than " + size + " rows");
+            }
+            if (length != size) {
+                throw new BadInputException("Dna row " + row + " has " + length + " bases, expected " + size);
+            }
+            for (int col = 0; col < length; col++, idx++) {
+                char ch = chars[offset + col];
+                int code = code(ch);
+                if (code == INVALID) {
+                    throw new BadInputException("Dna row " + row + " has an invalid base '" + ch
+                            + "' at column " + col);
+                }
+                packed |= (long) code << ((idx & 31) << 1);
+                if ((idx & 31) == 31) {
+                    bases[idx >> 5] = packed;
+                    packed = 0L;
+                }
+            }
+            row++;
+        }
+
+        /**
+         * @throws BadInputException if rows are missing
+         */
+        DnaMatrix finish() {
+            if (row != size) {
+                throw new BadInputException("Dna has " + row + " rows, expected " + size);
+            }
+            if ((idx & 31) != 0) {
+                bases[idx >> 5] = packed;
+            }
+            return new DnaMatrix(size, bases);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package meli.magneto.mutantfinder;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.IOException;
+
+/**
+ * Reads a JSON array of ATCG strings straight into a {@link DnaMatrix}. Every row is packed from the parser
+ * buffer as soon as it is read, without creating a <tt>String</tt> for it, and the first invalid row stops
+ * the parsing with a {@link BadInputException}. The number of rows is taken from the length of the first one,
+ * so a dna wider than <tt>max-size</tt> is rejected before anything else is read, and its packed buffer is
+ * charged to the {@link AdmissionControl} budget until the last row is read.
+ * <p>
+ * Created by Jackson, which lets Spring inject the limit and the {@link AdmissionControl} when the mapper is built
+ * by the application. Without them nothing is charged.
+ */
+public class DnaMatrixDeserializer extends StdDeserializer<DnaMatrix> {
+    private static final long serialVersionUID = 1L;
+
+    @Value("${mutant-finder.admission.max-size:10000}")
+    private int maxSize;
+
+    @Autowired(required = false)
+    private AdmissionControl admissionControl;
+
+    public DnaMatrixDeserializer() {
+        this(DnaMatrix.MAX_SIZE);
+    }
+
+    DnaMatrixDeserializer(int maxSize) {
+        this(maxSize, null);
+    }
+
+    DnaMatrixDeserializer(int maxSize, AdmissionControl admissionControl) {
+        super(DnaMatrix.class);
+        this.maxSize = maxSize;
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public DnaMatrix deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartArrayToken()) {
+            return (DnaMatrix) context.handleUnexpectedToken(DnaMatrix.class, parser);
+        }
+        DnaMatrix.Packer packer = null;
+        long reserved = 0L;
+        try {
+            int row = 0;
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken(), row++) {
+                if (token == JsonToken.VALUE_NULL) {
+                    throw new BadInputException("Dna row " + row + " cannot be null");
+                }
+                if (token != JsonToken.VALUE_STRING) {
+                    return (DnaMatrix) context.handleUnexpectedToken(DnaMatrix.class, parser);
+                }
+                if (packer == null) {
+                    if (parser.getTextLength() > maxSize) {
+                        throw new PayloadTooLargeException("Dna cannot be larger than " + maxSize + " x " + maxSize);
+                    }
+                    if (admissionControl != null) {
+                        reserved = admissionControl.reserve(parser.getTextLength());
+                    }
+                    packer = new DnaMatrix.Packer(parser.getTextLength());
+                }
+                packer.addRow(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            }
+            if (packer == null) {
+                throw new BadInputException("Dna cannot be empty");
+            }
+            return packer.finish();
+        } finally {
+            if (reserved > 0L) {
+                admissionControl.release(reserved);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * One document per distinct DNA. The content hash is the <tt>_id</tt>, so it is uniquely indexed
+ * and inserting the same DNA twice only matches the existing document.
+ */
+@Document(collection = "dna_records")
+public class DnaRecord {
+
+    @Id
+    private String hash;
+    private boolean mutant;
+    private Date createdAt;
+
+    public DnaRecord() {}
+
+    public DnaRecord(String hash, boolean mutant, Date createdAt) {
+        this.hash = hash;
+        this.mutant = mutant;
+        this.createdAt = createdAt;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public boolean isMutant() {
+        return mutant;
+    }
+
+    public void setMutant(boolean mutant) {
+        this.mutant = mutant;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
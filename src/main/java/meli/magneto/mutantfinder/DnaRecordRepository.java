@@ -1,10 +1,8 @@
-package meli.magneto.mutantfinder;
-
-import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.stereotype.Repository;
-
-@Repository
-public interface StatisticsRepository extends MongoRepository<Statistics, String> {
-
-    Statistics findByName(String name);
-}
+package meli.magneto.mutantfinder;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DnaRecordRepository extends MongoRepository<DnaRecord, String> {
+}
@@ -0,0 +1,183 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stores one record per distinct DNA in the {@link StatisticsStore}. Classified DNAs are buffered (repeated
+ * ones collapse into a single entry) and written in the background in batches. Only the records the store did
+ * not have yet are counted in the statistics and their history, so the request path never reads before writing.
+ * The history is only kept with the MongoDB store.
+ * <p>
+ * At most <tt>max-pending</tt> distinct dna are buffered, so a store that is down does not take the heap with
+ * it. Past that new dna are dropped, and never counted, until a flush makes room again; records requeued after
+ * a failed write were already buffered and are always kept.
+ */
+@Component
+public class DnaRecordWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DnaRecordWriter.class);
+
+    private final StatisticsStore statisticsStore;
+    private final StatisticsAggregator statisticsAggregator;
+    private final StatisticsHistory statisticsHistory;
+    private final long flushIntervalMs;
+    private final int flushBatchSize;
+    private final int maxPending;
+    private final Timer flushTimer;
+    private final Counter droppedCounter;
+
+    private final Map<DnaHash, Boolean> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dna-record-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DnaRecordWriter(StatisticsStore statisticsStore,
+                           StatisticsAggregator statisticsAggregator,
+                           @Nullable StatisticsHistory statisticsHistory,
+                           @Value("${mutant-finder.records.flush-interval-ms:500}") long flushIntervalMs,
+                           @Value("${mutant-finder.records.flush-batch-size:1000}") int flushBatchSize,
+                           @Value("${mutant-finder.records.max-pending:100000}") int maxPending,
+                           MeterRegistry meterRegistry) {
+        this.statisticsStore = statisticsStore;
+        this.statisticsAggregator = statisticsAggregator;
+        this.statisticsHistory = statisticsHistory;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushBatchSize = flushBatchSize;
+        this.maxPending = maxPending;
+        this.flushTimer = Timer.builder("dna.records.flush")
+                .description("Time spent writing one bulk of dna records")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("dna.records.dropped")
+                .description("Dna records dropped, and never counted, because too many were pending")
+                .register(meterRegistry);
+        Gauge.builder("dna.records.pending", pending, Map::size)
+                .description("Dna records waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes what is still buffered; runs before the statistics aggregator goes down since it depends on it
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(flushIntervalMs * 2, TimeUnit.MILLISECONDS);
+        flushQuietly();
+    }
+
+    public void record(DnaHash hash, boolean isMutant) {
+        buffer(hash, isMutant);
+        requestFlushIfFull();
+    }
+
+    public void recordAll(Map<DnaHash, Boolean> records) {
+        records.forEach(this::buffer);
+        requestFlushIfFull();
+    }
+
+    private void buffer(DnaHash hash, boolean isMutant) {
+        // the size is a moment behind concurrent writers, a few more than the limit may get in
+        if (pending.size() >= maxPending && !pending.containsKey(hash)) {
+            droppedCounter.increment();
+            return;
+        }
+        pending.putIfAbsent(hash, isMutant);
+    }
+
+    private void requestFlushIfFull() {
+        if (pending.size() >= flushBatchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    synchronized void flush() {
+        flushRequested.set(false);
+        // entries requeued after a failure wait for the next run
+        int remaining = pending.size();
+        while (remaining > 0) {
+            List<Map.Entry<DnaHash, Boolean>> batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            flushTimer.record(() -> write(batch));
+            remaining -= batch.size();
+        }
+    }
+
+    private List<Map.Entry<DnaHash, Boolean>> drain() {
+        List<Map.Entry<DnaHash, Boolean>> batch = new ArrayList<>(Math.min(pending.size(), flushBatchSize));
+        Iterator<Map.Entry<DnaHash, Boolean>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < flushBatchSize) {
+            Map.Entry<DnaHash, Boolean> entry = iterator.next();
+            batch.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+            iterator.remove();
+        }
+        return batch;
+    }
+
+    private void write(List<Map.Entry<DnaHash, Boolean>> batch) {
+        List<Map.Entry<DnaHash, Boolean>> inserted;
+        try {
+            inserted = statisticsStore.insert(batch, this::requeue);
+        } catch (RuntimeException e) {
+            batch.forEach(this::requeue);
+            throw e;
+        }
+        long mutants = inserted.stream().filter(Map.Entry::getValue).count();
+        long humans = inserted.size() - mutants;
+        if (mutants > 0L) {
+            statisticsAggregator.record(true, mutants);
+        }
+        if (humans > 0L) {
+            statisticsAggregator.record(false, humans);
+        }
+        if (statisticsHistory != null && (mutants > 0L || humans > 0L)) {
+            statisticsHistory.record(mutants, humans);
+        }
+    }
+
+    private void requeue(Map.Entry<DnaHash, Boolean> entry) {
+        pending.putIfAbsent(entry.getKey(), entry.getValue());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // records stay pending and are retried on the next run
+            LOGGER.warn("Could not write dna records", e);
+        }
+    }
+}
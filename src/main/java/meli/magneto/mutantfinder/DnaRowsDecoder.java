@@ -0,0 +1,100 @@
+package meli.magneto.mutantfinder;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_DNA_ROWS_VALUE;
+
+/**
+ * Decodes a body with one row of dna per line into its rows as its buffers come in, releasing each buffer once
+ * its bytes are copied. Lines end in <tt>\n</tt> or <tt>\r\n</tt>; bytes are read one char each, so anything
+ * outside ASCII ends up as an invalid base. A row longer than <tt>max-size</tt> is rejected before the rest of it
+ * is read.
+ */
+public class DnaRowsDecoder implements Decoder<String> {
+    private static final MimeType APPLICATION_DNA_ROWS = MimeType.valueOf(APPLICATION_DNA_ROWS_VALUE);
+
+    private final int maxSize;
+
+    public DnaRowsDecoder(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return String.class == elementType.resolve() && APPLICATION_DNA_ROWS.isCompatibleWith(mimeType);
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return Collections.singletonList(APPLICATION_DNA_ROWS);
+    }
+
+    @Override
+    public Flux<String> decode(Publisher<DataBuffer> input, ResolvableType elementType, MimeType mimeType,
+                               Map<String, Object> hints) {
+        return Flux.defer(() -> {
+            // the part of a row the previous buffers ended with
+            StringBuilder partial = new StringBuilder();
+            return Flux.from(input)
+                    .concatMapIterable(buffer -> read(partial, buffer, maxSize))
+                    .concatWith(Mono.fromSupplier(() -> partial.length() > 0 ? row(partial) : null));
+        });
+    }
+
+    /**
+     * @return the rows of the body, each ending in <tt>\n</tt> but the last one
+     */
+    @Override
+    public Mono<String> decodeToMono(Publisher<DataBuffer> input, ResolvableType elementType, MimeType mimeType,
+                                     Map<String, Object> hints) {
+        return decode(input, elementType, mimeType, hints).collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * @throws PayloadTooLargeException once the row being read is longer than <tt>maxSize</tt>, and a
+     * <tt>\r</tt>
+     */
+    private static List<String> read(StringBuilder partial, DataBuffer buffer, int maxSize) {
+        List<String> rows = new ArrayList<>(1);
+        try {
+            ByteBuffer bytes = buffer.asByteBuffer();
+            while (bytes.hasRemaining()) {
+                char ch = (char) (bytes.get() & 0xff);
+                if (ch == '\n') {
+                    rows.add(row(partial));
+                } else if (partial.length() > maxSize) {
+                    throw new PayloadTooLargeException("Dna cannot be larger than " + maxSize + " x " + maxSize);
+                } else {
+                    partial.append(ch);
+                }
+            }
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+        return rows;
+    }
+
+    private static String row(StringBuilder partial) {
+        int length = partial.length();
+        if (length > 0 && partial.charAt(length - 1) == '\r') {
+            length--;
+        }
+        String row = partial.substring(0, length);
+        partial.setLength(0);
+        return row;
+    }
+}
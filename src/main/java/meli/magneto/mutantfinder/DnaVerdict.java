@@ -0,0 +1,54 @@
+package meli.magneto.mutantfinder;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one dna of a batch: either the verdict or the reason it was rejected
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DnaVerdict {
+
+    private long index;
+    private Boolean mutant;
+    private String error;
+
+    public DnaVerdict() {}
+
+    private DnaVerdict(long index, Boolean mutant, String error) {
+        this.index = index;
+        this.mutant = mutant;
+        this.error = error;
+    }
+
+    public static DnaVerdict of(long index, boolean mutant) {
+        return new DnaVerdict(index, mutant, null);
+    }
+
+    public static DnaVerdict rejected(long index, String error) {
+        return new DnaVerdict(index, null, error);
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public void setIndex(long index) {
+        this.index = index;
+    }
+
+    public Boolean getMutant() {
+        return mutant;
+    }
+
+    public void setMutant(Boolean mutant) {
+        this.mutant = mutant;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,42 @@
+package meli.magneto.mutantfinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Width of a {@link StatisticsBucket}. Buckets start at multiples of their width since the epoch, so they are
+ * aligned in UTC.
+ */
+public enum Granularity {
+    MINUTE(TimeUnit.MINUTES.toMillis(1)),
+    HOUR(TimeUnit.HOURS.toMillis(1)),
+    DAY(TimeUnit.DAYS.toMillis(1));
+
+    private final long millis;
+
+    Granularity(long millis) {
+        this.millis = millis;
+    }
+
+    public long millis() {
+        return millis;
+    }
+
+    /**
+     * @return start of the bucket holding the given instant
+     */
+    public long truncate(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, millis);
+    }
+
+    /**
+     * @throws BadInputException if the value is none of <tt>minute</tt>, <tt>hour</tt> or <tt>day</tt>
+     */
+    public static Granularity parse(String value) {
+        for (Granularity granularity : values()) {
+            if (granularity.name().equalsIgnoreCase(value)) {
+                return granularity;
+            }
+        }
+        throw new BadInputException("Granularity must be minute, hour or day");
+    }
+}
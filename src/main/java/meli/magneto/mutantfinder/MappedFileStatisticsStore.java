@@ -0,0 +1,333 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Statistics of a single instance kept on its local disk, so they survive restarts without any external
+ * service. Everything lives in memory and every change is also appended to a log mapped in memory. Each batch
+ * of records and each {@link #sync()}, once per flush of the counters, forces the log to disk, so they survive a
+ * crash of the machine; with <tt>force-writes</tt> off they only reach the page cache and survive a crash of the
+ * process alone. Memory grows with the number of distinct dna.
+ * <p>
+ * Every <tt>checkpoint-interval-ms</tt>, and whenever the log is full, the dna recorded since the previous
+ * checkpoint are appended to the records file, the counters and how many records it holds are written to a new
+ * checkpoint file, moved over the previous one, and the log starts over, so a checkpoint costs as much as the
+ * log it replaces. Both carry a generation, so a log older than the checkpoint, left by a crash in between, is
+ * not replayed on top of it. The type of an entry is written after its content, so an entry cut short by a
+ * crash is never replayed, and records past the count of the checkpoint are written over by the next one.
+ */
+@Component
+@ConditionalOnProperty(name = "mutant-finder.stats.store", havingValue = "file")
+public class MappedFileStatisticsStore implements StatisticsStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedFileStatisticsStore.class);
+    static final String LOG_FILE = "statistics.log";
+    static final String CHECKPOINT_FILE = "statistics.checkpoint";
+    static final String RECORDS_FILE = "statistics.records";
+    private static final int MAGIC = 0x4d465354;
+    // magic and generation
+    private static final int HEADER_BYTES = 12;
+    private static final byte END = 0;
+    private static final byte RECORD = 1;
+    private static final byte INCREMENT = 2;
+    private static final int RECORD_BYTES = 1 + 16;
+    private static final int HASH_BYTES = 16;
+
+    private final Path directory;
+    private final int logBytes;
+    private final long checkpointIntervalMs;
+    private final boolean forceWrites;
+    private final Timer checkpointTimer;
+
+    private final Set<DnaHash> records = new HashSet<>();
+    // records in the order they were logged since the last checkpoint, the ones before it are in the records file
+    private final List<DnaHash> uncheckpointed = new ArrayList<>();
+    private long checkpointedRecords;
+    private final Map<String, Long> totals = new HashMap<>();
+    private long generation;
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    private final ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "statistics-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MappedFileStatisticsStore(@Value("${mutant-finder.stats.file.directory:data}") String directory,
+                                     @Value("${mutant-finder.stats.file.log-bytes:16777216}") int logBytes,
+                                     @Value("${mutant-finder.stats.file.checkpoint-interval-ms:60000}") long checkpointIntervalMs,
+                                     @Value("${mutant-finder.stats.file.force-writes:true}") boolean forceWrites,
+                                     MeterRegistry meterRegistry) {
+        this.directory = Paths.get(directory);
+        this.logBytes = logBytes;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+        this.forceWrites = forceWrites;
+        this.checkpointTimer = Timer.builder("dna.stats.checkpoint")
+                .description("Time spent writing a checkpoint of the statistics to disk")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the last checkpoint and replays the log on top of it. Local files only, so it is done on start.
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            readCheckpoint(checkpoint);
+        }
+        channel = FileChannel.open(directory.resolve(LOG_FILE), CREATE, READ, WRITE);
+        // a log written with a bigger size is replayed whole
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), logBytes));
+        if (log.getInt(0) == MAGIC && log.getLong(4) == generation) {
+            replay();
+        } else {
+            reset(log.capacity());
+        }
+        LOGGER.info("Loaded {} dna records and {} counters from {}", records.size(), totals.size(), directory);
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalMs, checkpointIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs after the writers went down, see {@link DnaRecordWriter#stop()}, so the checkpoint has everything
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        checkpointer.shutdownNow();
+        checkpoint();
+        channel.close();
+    }
+
+    @Override
+    public synchronized List<Map.Entry<DnaHash, Boolean>> insert(List<Map.Entry<DnaHash, Boolean>> records,
+                                                                 Consumer<Map.Entry<DnaHash, Boolean>> retry) {
+        List<Map.Entry<DnaHash, Boolean>> inserted = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            Map.Entry<DnaHash, Boolean> entry = records.get(i);
+            DnaHash hash = entry.getKey();
+            if (this.records.contains(hash)) {
+                continue;
+            }
+            try {
+                reserve(RECORD_BYTES);
+            } catch (UncheckedIOException e) {
+                if (inserted.isEmpty()) {
+                    throw e;
+                }
+                records.subList(i, records.size()).forEach(retry);
+                LOGGER.warn("Some dna records could not be written", e);
+                break;
+            }
+            int position = log.position();
+            log.putLong(position + 1, hash.high());
+            log.putLong(position + 9, hash.low());
+            log.put(position, RECORD);
+            log.position(position + RECORD_BYTES);
+            this.records.add(hash);
+            uncheckpointed.add(hash);
+            inserted.add(entry);
+        }
+        if (!inserted.isEmpty()) {
+            force();
+        }
+        return inserted;
+    }
+
+    @Override
+    public synchronized void increment(String name, long amount) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 2 + bytes.length + 8;
+        reserve(length);
+        int position = log.position();
+        log.position(position + 1);
+        log.putShort((short) bytes.length).put(bytes).putLong(amount);
+        log.put(position, INCREMENT);
+        totals.merge(name, amount, Long::sum);
+    }
+
+    @Override
+    public synchronized void sync() {
+        force();
+    }
+
+    @Override
+    public synchronized Map<String, Long> totals() {
+        return new HashMap<>(totals);
+    }
+
+    /**
+     * Appends the records logged since the previous checkpoint to the records file, writes the counters to a new
+     * checkpoint and starts the log over, unless nothing was logged since the previous one
+     */
+    synchronized void checkpoint() throws IOException {
+        if (log.position() == HEADER_BYTES) {
+            return;
+        }
+        long start = System.nanoTime();
+        long next = generation + 1;
+        try (FileChannel file = FileChannel.open(directory.resolve(RECORDS_FILE), CREATE, WRITE)) {
+            // past the records of the previous checkpoint, over whatever a crash left behind them
+            file.position(checkpointedRecords * HASH_BYTES);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file)));
+            for (DnaHash hash : uncheckpointed) {
+                out.writeLong(hash.high());
+                out.writeLong(hash.low());
+            }
+            out.flush();
+            file.force(true);
+        }
+        long count = checkpointedRecords + uncheckpointed.size();
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel file = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeLong(next);
+            out.writeInt(totals.size());
+            for (Map.Entry<String, Long> total : totals.entrySet()) {
+                out.writeUTF(total.getKey());
+                out.writeLong(total.getValue());
+            }
+            out.writeLong(count);
+            out.flush();
+            file.force(true);
+        }
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+        // the move must be on disk before the log says it is older than the new checkpoint
+        try (FileChannel parent = FileChannel.open(directory, READ)) {
+            parent.force(true);
+        }
+        generation = next;
+        checkpointedRecords = count;
+        uncheckpointed.clear();
+        reset(log.position());
+        checkpointTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Makes room for an entry and one more byte, the end of the log
+     */
+    private void reserve(int length) {
+        if (length + 1 > log.capacity() - HEADER_BYTES) {
+            throw new IllegalArgumentException("An entry of " + length + " bytes does not fit in the log");
+        }
+        if (log.remaining() < length + 1) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException("The statistics log is full and could not be checkpointed", e);
+            }
+        }
+    }
+
+    private void readCheckpoint(Path checkpoint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException(checkpoint + " is not a checkpoint of the statistics");
+            }
+            generation = in.readLong();
+            for (int count = in.readInt(); count > 0; count--) {
+                totals.put(in.readUTF(), in.readLong());
+            }
+            checkpointedRecords = in.readLong();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(RECORDS_FILE))))) {
+            for (long count = checkpointedRecords; count > 0; count--) {
+                records.add(new DnaHash(in.readLong(), in.readLong()));
+            }
+        }
+    }
+
+    private void replay() {
+        log.position(HEADER_BYTES);
+        while (log.remaining() > 0) {
+            int position = log.position();
+            byte type = log.get();
+            if (type == RECORD && log.remaining() >= RECORD_BYTES - 1) {
+                DnaHash hash = new DnaHash(log.getLong(), log.getLong());
+                records.add(hash);
+                uncheckpointed.add(hash);
+            } else if (type == INCREMENT && log.remaining() >= 2) {
+                byte[] bytes = new byte[log.getShort()];
+                if (log.remaining() < bytes.length + 8) {
+                    log.position(position);
+                    return;
+                }
+                log.get(bytes);
+                totals.merge(new String(bytes, StandardCharsets.UTF_8), log.getLong(), Long::sum);
+            } else {
+                log.position(position);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Clears the log up to <tt>end</tt> and only then writes the header, the log stays older than the checkpoint
+     * until it is empty
+     */
+    private void reset(int end) {
+        for (int position = 0; position < end; position++) {
+            log.put(position, END);
+        }
+        log.putInt(0, MAGIC);
+        log.putLong(4, generation);
+        log.position(HEADER_BYTES);
+        log.force();
+    }
+
+    private void force() {
+        if (forceWrites) {
+            log.force();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // the log keeps everything until the next one
+            LOGGER.warn("Could not checkpoint the statistics", e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Statistics kept by this instance alone and lost when it stops, for load tests and single-node trials that
+ * should not need MongoDB. Memory grows with the number of distinct dna.
+ */
+@Component
+@ConditionalOnProperty(name = "mutant-finder.stats.store", havingValue = "memory")
+public class MemoryStatisticsStore implements StatisticsStore {
+
+    private final Set<DnaHash> records = ConcurrentHashMap.newKeySet();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public List<Map.Entry<DnaHash, Boolean>> insert(List<Map.Entry<DnaHash, Boolean>> records,
+                                                    Consumer<Map.Entry<DnaHash, Boolean>> retry) {
+        return records.stream().filter(entry -> this.records.add(entry.getKey())).collect(toList());
+    }
+
+    @Override
+    public void increment(String name, long amount) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+    }
+
+    @Override
+    public Map<String, Long> totals() {
+        Map<String, Long> totals = new HashMap<>();
+        counters.forEach((name, amount) -> totals.put(name, amount.sum()));
+        return totals;
+    }
+}
@@ -0,0 +1,26 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Inserts each batch into the <tt>classification_events</tt> collection with a single <tt>insertMany</tt>
+ */
+@Component
+@ConditionalOnProperty(name = "mutant-finder.events.sink", havingValue = "mongo", matchIfMissing = true)
+public class MongoClassificationEventSink implements ClassificationEventSink {
+
+    private final MongoOperations mongoOperations;
+
+    public MongoClassificationEventSink(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public void write(List<ClassificationEvent> events) {
+        mongoOperations.insert(events, ClassificationEvent.class);
+    }
+}
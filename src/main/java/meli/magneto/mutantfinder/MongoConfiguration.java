@@ -0,0 +1,29 @@
+package meli.magneto.mutantfinder;
+
+import com.mongodb.MongoClientOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MongoConfiguration {
+
+    /**
+     * Picked up by the auto-configured blocking mongo client
+     */
+    @Bean
+    public MongoClientOptions mongoClientOptions(MeterRegistry meterRegistry) {
+        return MongoClientOptions.builder()
+                .addCommandListener(new MongoCommandMetrics(meterRegistry))
+                .build();
+    }
+
+    /**
+     * Same for the reactive client, used when running on WebFlux
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer reactiveMongoCommandMetrics(MeterRegistry meterRegistry) {
+        return settings -> settings.addCommandListener(new MongoCommandMetrics(meterRegistry));
+    }
+}
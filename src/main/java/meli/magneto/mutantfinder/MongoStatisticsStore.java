@@ -0,0 +1,157 @@
+package meli.magneto.mutantfinder;
+
+import com.mongodb.BulkWriteError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Statistics shared by every instance through MongoDB. Each distinct dna is one {@link DnaRecord}, written in
+ * unordered bulks of <tt>$setOnInsert</tt> upserts, so only the upserts that inserted a document are new.
+ * <p>
+ * Each counter is split in at most <tt>shards</tt> {@link Statistics} documents and every instance increments
+ * one of them with atomic <tt>$inc</tt> upserts, picked from its <tt>instance-id</tt>, the host name unless set.
+ * The shard is the same across restarts and deploys, so the collection never grows past <tt>shards</tt>
+ * documents per counter however many instances come and go; a numeric id is the shard itself, so instances
+ * numbered below <tt>shards</tt> never share one. The totals are the sum of the shards, read in a single
+ * aggregation.
+ */
+@Component
+@ConditionalOnProperty(name = "mutant-finder.stats.store", havingValue = "mongo", matchIfMissing = true)
+public class MongoStatisticsStore implements StatisticsStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoStatisticsStore.class);
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoOperations mongoOperations;
+    private final int shard;
+
+    public MongoStatisticsStore(MongoOperations mongoOperations,
+                                @Value("${mutant-finder.stats.shards:16}") int shards,
+                                @Value("${mutant-finder.stats.instance-id:}") String instanceId) {
+        this.mongoOperations = mongoOperations;
+        this.shard = shard(instanceId.isEmpty() ? hostName() : instanceId, shards);
+        LOGGER.info("Incrementing shard {} of the statistics counters", shard);
+    }
+
+    static int shard(String instanceId, int shards) {
+        try {
+            return Math.floorMod(Integer.parseInt(instanceId), shards);
+        } catch (NumberFormatException e) {
+            return Math.floorMod(instanceId.hashCode(), shards);
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            LOGGER.warn("Could not resolve the host name, set mutant-finder.stats.instance-id", e);
+            return "localhost";
+        }
+    }
+
+    /**
+     * Counters used to be single documents with a unique index on their name, which would reject a second shard
+     */
+    @Override
+    public void prepare() {
+        try {
+            IndexOperations indexes = mongoOperations.indexOps(Statistics.class);
+            for (IndexInfo index : indexes.getIndexInfo()) {
+                if (index.isUnique() && index.getIndexFields().size() == 1 && index.isIndexForFields(
+                        Collections.singleton("name"))) {
+                    indexes.dropIndex(index.getName());
+                    LOGGER.info("Dropped index {} of the statistics, counters are sharded now", index.getName());
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not check the indexes of the statistics", e);
+        }
+    }
+
+    @Override
+    public List<Map.Entry<DnaHash, Boolean>> insert(List<Map.Entry<DnaHash, Boolean>> records,
+                                                    Consumer<Map.Entry<DnaHash, Boolean>> retry) {
+        Date now = new Date();
+        BulkOperations operations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, DnaRecord.class);
+        for (Map.Entry<DnaHash, Boolean> entry : records) {
+            operations.upsert(query(where("_id").is(entry.getKey().toString())),
+                    new Update().setOnInsert("mutant", entry.getValue()).setOnInsert("createdAt", now));
+        }
+        try {
+            return inserted(records, operations.execute().getUpserts().stream().mapToInt(upsert -> upsert.getIndex()));
+        } catch (BulkOperationException e) {
+            // concurrent inserts of the same dna by another instance end in a duplicate key, it exists already
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    retry.accept(records.get(error.getIndex()));
+                }
+            }
+            LOGGER.warn("Some dna records could not be written", e);
+            return inserted(records, e.getResult().getUpserts().stream().mapToInt(upsert -> upsert.getIndex()));
+        }
+    }
+
+    private static List<Map.Entry<DnaHash, Boolean>> inserted(List<Map.Entry<DnaHash, Boolean>> records,
+                                                              IntStream indexes) {
+        return indexes.mapToObj(records::get).collect(toList());
+    }
+
+    @Override
+    public void increment(String name, long amount) {
+        mongoOperations.upsert(query(where("name").is(name).and("shard").is(shard)),
+                new Update().inc("amount", amount), Statistics.class);
+    }
+
+    @Override
+    public Map<String, Long> totals() {
+        Aggregation aggregation = newAggregation(group("name").sum("amount").as("amount"));
+        Map<String, Long> totals = new HashMap<>();
+        for (CounterTotal total : mongoOperations.aggregate(aggregation, Statistics.class, CounterTotal.class)) {
+            totals.put(total.id, total.amount);
+        }
+        return totals;
+    }
+
+    int getShard() {
+        return shard;
+    }
+
+    /**
+     * Sum of the shards of a counter, as grouped by name
+     */
+    static class CounterTotal {
+        private String id;
+        private long amount;
+
+        CounterTotal(String id, long amount) {
+            this.id = id;
+            this.amount = amount;
+        }
+    }
+}
@@ -1,31 +1,296 @@
 package meli.magneto.mutantfinder;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class MutantFinderController {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final String APPLICATION_PACKED_DNA_VALUE = "application/x-dna-packed";
+    public static final String APPLICATION_DNA_ROWS_VALUE = "application/x-dna-rows";
 
     @Autowired
     private MutantFinderService mutantFinderService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DetectionMetrics detectionMetrics;
+
+    @Autowired
+    private PackedDnaHttpMessageConverter packedDnaConverter;
+
+    @Value("${mutant-finder.admission.max-size:10000}")
+    private int maxSize;
+
     @PostMapping(path = "/mutant", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity checkForMutantDna(@RequestBody DnaRequest dnaRequest) {
-        if (mutantFinderService.isMutant(dnaRequest.getDna())) {
-            return ResponseEntity.ok().build();
+    public ResponseEntity<Void> checkForMutantDna(@RequestBody PackedDnaRequest dnaRequest) {
+        return verdictEntity(mutantFinderService.isMutant(dnaRequest.getDna()));
+    }
+
+    /**
+     * Same as the JSON body, with the dna in the {@link PackedDnaFormat}
+     */
+    @PostMapping(path = "/mutant", produces = MediaType.APPLICATION_JSON_VALUE, consumes = APPLICATION_PACKED_DNA_VALUE)
+    public ResponseEntity<Void> checkForPackedMutantDna(@RequestBody DnaMatrix dna) {
+        return verdictEntity(mutantFinderService.isMutant(dna));
+    }
+
+    /**
+     * Same as the JSON body, with one row of the dna per line. The rows are scanned as they are read, so a mutant
+     * dna is answered as soon as its sequences are found, while the rest of the body is still being sent.
+     */
+    @PostMapping(path = "/mutant", produces = MediaType.APPLICATION_JSON_VALUE, consumes = APPLICATION_DNA_ROWS_VALUE)
+    public void checkForStreamedMutantDna(InputStream body, HttpServletResponse response) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.ISO_8859_1));
+        try {
+            mutantFinderService.classifyRows(rowIterator(reader, maxSize), isMutant -> sendVerdict(response, isMutant));
+        } catch (BadInputException e) {
+            if (!response.isCommitted()) {
+                throw e;
+            }
+            // a row after the verdict was invalid, the dna is just not recorded
+        }
+    }
+
+    private static void sendVerdict(HttpServletResponse response, boolean isMutant) {
+        response.setStatus(isMutant ? HttpStatus.OK.value() : HttpStatus.FORBIDDEN.value());
+        try {
+            response.flushBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static <T> ResponseEntity<T> verdictEntity(boolean isMutant) {
+        return isMutant ? ResponseEntity.ok().build() : ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    }
+
+    /**
+     * Reads one {@link DnaRequest} per line and writes one {@link DnaVerdict} per line as each dna is classified,
+     * so neither side of the batch is ever held in memory
+     */
+    @PostMapping(path = "/mutant/batch", produces = APPLICATION_NDJSON_VALUE, consumes = APPLICATION_NDJSON_VALUE)
+    public void checkForMutantDnaBatch(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        try (MappingIterator<DnaRequest> requests = objectMapper.readerFor(DnaRequest.class).readValues(body);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            // every verdict ends its own line instead of being separated by spaces
+            generator.setRootValueSeparator(null);
+            try {
+                mutantFinderService.classifyBatch(dnaIterator(requests), verdict -> writeLine(generator, verdict));
+            } catch (UncheckedIOException e) {
+                if (!(e.getCause() instanceof JsonProcessingException)) {
+                    throw e;
+                }
+                // the rest of the body can't be trusted after a malformed line
+                writeLine(generator, DnaVerdict.rejected(-1L, ((JsonProcessingException) e.getCause()).getOriginalMessage()));
+            }
+        }
+    }
+
+    /**
+     * Reads dna in the {@link PackedDnaFormat} one after the other and writes one {@link DnaVerdict} per line as
+     * each dna is classified
+     */
+    @PostMapping(path = "/mutant/batch", produces = APPLICATION_NDJSON_VALUE, consumes = APPLICATION_PACKED_DNA_VALUE)
+    public void checkForPackedMutantDnaBatch(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            try {
+                mutantFinderService.classifyPackedBatch(packedDnaConverter.readAll(body),
+                        verdict -> writeLine(generator, verdict));
+            } catch (BadInputException e) {
+                // without a valid size the start of the next dna is unknown
+                writeLine(generator, DnaVerdict.rejected(-1L, e.getMessage()));
+            } catch (ResponseStatusException e) {
+                // nor without reading the dna turned away after its header
+                writeLine(generator, DnaVerdict.rejected(-1L, e.getReason()));
+            }
         }
-        return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
     }
 
+    private static Iterator<String[]> dnaIterator(MappingIterator<DnaRequest> requests) {
+        return new Iterator<String[]>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return requests.hasNextValue();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public String[] next() {
+                try {
+                    DnaRequest request = requests.nextValue();
+                    return request != null ? request.getDna() : null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Lines end in <tt>\n</tt> or <tt>\r\n</tt>, like for the {@link DnaRowsDecoder}
+     *
+     * @throws PayloadTooLargeException from the iterator once a row is longer than <tt>maxSize</tt>, before the
+     * rest of it is read
+     */
+    private static Iterator<String> rowIterator(BufferedReader reader, int maxSize) {
+        return new Iterator<String>() {
+            private final StringBuilder partial = new StringBuilder();
+            private String next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = readRow();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            private String readRow() throws IOException {
+                partial.setLength(0);
+                int ch;
+                while ((ch = reader.read()) != -1 && ch != '\n') {
+                    // room for a trailing \r
+                    if (partial.length() > maxSize) {
+                        throw new PayloadTooLargeException("Dna cannot be larger than " + maxSize + " x " + maxSize);
+                    }
+                    partial.append((char) ch);
+                }
+                if (ch == -1 && partial.length() == 0) {
+                    return null;
+                }
+                int length = partial.length();
+                if (length > 0 && partial.charAt(length - 1) == '\r') {
+                    length--;
+                }
+                return partial.substring(0, length);
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String row = next;
+                next = null;
+                return row;
+            }
+        };
+    }
+
+    private void writeLine(JsonGenerator generator, DnaVerdict verdict) {
+        try {
+            objectMapper.writeValue(generator, verdict);
+            generator.writeRaw('\n');
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Dna rejected while the body was parsed is counted like any other validation reject, with a 413 when it was
+     * too large. Dna turned away by the {@link AdmissionControl} before being read keep the status it was given.
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public void rejectUnreadableBody(HttpMessageNotReadableException e, HttpServletResponse response) throws IOException {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        if (cause instanceof ResponseStatusException) {
+            response.sendError(((ResponseStatusException) cause).getStatus().value(),
+                    ((ResponseStatusException) cause).getReason());
+            return;
+        }
+        if (cause instanceof BadInputException) {
+            detectionMetrics.recordReject();
+        }
+        HttpStatus status = cause instanceof PayloadTooLargeException ? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.BAD_REQUEST;
+        response.sendError(status.value(), cause.getMessage());
+    }
+
+    /**
+     * Tagged with an ETag, so a client sending it back in <tt>If-None-Match</tt> gets a 304 until a count moves
+     */
     @GetMapping(path = "/stats", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
-    public StatisticsResponse getRequestStatistics() {
-        return mutantFinderService.getRequestsStatistics();
+    public ResponseEntity<StatisticsResponse> getRequestStatistics() {
+        return statisticsEntity(mutantFinderService.getRequestsStatistics());
+    }
+
+    /**
+     * Server-sent events with the current statistics, then a new event every time a count moves
+     */
+    @GetMapping(path = "/stats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StatisticsResponse>> streamRequestStatistics() {
+        return mutantFinderService.getRequestsStatisticsUpdates().map(MutantFinderController::statisticsEvent);
+    }
+
+    /**
+     * Counts per minute, hour or day over a range given as ISO-8601 date-times, the last day by hour by default
+     */
+    @GetMapping(path = "/stats/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StatisticsHistoryResponse getRequestStatisticsHistory(
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) String granularity) {
+        return mutantFinderService.getRequestsStatisticsHistory(from, to, granularity);
+    }
+
+    static ResponseEntity<StatisticsResponse> statisticsEntity(StatisticsResponse statistics) {
+        // cached, but revalidated on every use
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(statistics.getETag())
+                .body(statistics);
+    }
+
+    static ServerSentEvent<StatisticsResponse> statisticsEvent(StatisticsResponse statistics) {
+        return ServerSentEvent.builder(statistics)
+                .id(Long.toString(statistics.getVersion()))
+                .event("stats")
+                .build();
     }
 
 }
@@ -1,8 +1,59 @@
 package meli.magneto.mutantfinder;
 
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
 public interface MutantFinderService {
 
     boolean isMutant(String[] dna);
 
+    /**
+     * Same as {@link #isMutant(String[])} for a dna already validated and packed while it was read
+     */
+    boolean isMutant(DnaMatrix dna);
+
+    /**
+     * Classifies every dna of the batch in order, handing each verdict to the consumer as soon as it is known.
+     * Invalid dna is reported as rejected instead of interrupting the batch, and records of new dna are
+     * stored in chunks rather than one by one.
+     */
+    void classifyBatch(Iterator<String[]> batch, Consumer<DnaVerdict> verdicts);
+
+    /**
+     * Same as {@link #classifyBatch(Iterator, Consumer)} for dna already packed while it was read
+     */
+    void classifyPackedBatch(Iterator<DnaMatrix> batch, Consumer<DnaVerdict> verdicts);
+
+    /**
+     * Classifies a dna whose rows arrive one at a time, holding only the previous one. A mutant verdict is handed
+     * to the consumer as soon as its sequences are found, possibly before the last row, which is still read to
+     * validate and record the dna; a human one once every row is in. The scan holds a detection permit from the
+     * first row on, and a dna classified before is only recognized once its last row is hashed.
+     * @throws BadInputException if the dna is not valid, even after a mutant verdict was handed out
+     * @throws org.springframework.web.server.ResponseStatusException if no permit is free in time
+     */
+    void classifyRows(Iterator<String> rows, Consumer<Boolean> verdict);
+
+    /**
+     * @return the latest statistics snapshot, kept current by the write path
+     */
     StatisticsResponse getRequestsStatistics();
+
+    /**
+     * @return the latest statistics snapshot followed by every new one
+     */
+    Flux<StatisticsResponse> getRequestsStatisticsUpdates();
+
+    /**
+     * @param from start of the range, a day before its end when <tt>null</tt>
+     * @param to end of the range, now when <tt>null</tt>
+     * @param granularity <tt>minute</tt>, <tt>hour</tt> or <tt>day</tt>, hours when <tt>null</tt>
+     * @return the counts of every bucket of the range
+     * @throws org.springframework.web.server.ResponseStatusException with 404 when the statistics store in use
+     * keeps no history
+     */
+    StatisticsHistoryResponse getRequestsStatisticsHistory(Instant from, Instant to, String granularity);
 }
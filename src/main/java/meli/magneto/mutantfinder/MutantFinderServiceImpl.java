@@ -1,198 +1,213 @@
 package meli.magneto.mutantfinder;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-
-import java.util.Arrays;
-
-import static java.lang.Character.toLowerCase;
-import static meli.magneto.mutantfinder.Statistics.HUMAN_DNA;
-import static meli.magneto.mutantfinder.Statistics.MUTANT_DNA;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class MutantFinderServiceImpl implements MutantFinderService {
-    private static int SEQUENCE_SIZE = 4;
-    private static String VALID_DNA_CHARACTERS = "atcgATCG";
+    private static final int BATCH_RECORDS_CHUNK = 1000;
+    private static final long DEFAULT_HISTORY_RANGE_MS = TimeUnit.DAYS.toMillis(1);
 
     @Autowired
-    private StatisticsRepository statisticsRepository;
+    private AdaptiveDetector detector;
 
-    @Override
-    public boolean isMutant(String[] dna) {
-        // validate input
-        validateDnaInput(dna);
+    @Autowired
+    private StatisticsAggregator statisticsAggregator;
 
-        boolean isMutant = false;
+    // only kept with the mongo statistics store
+    @Autowired(required = false)
+    private StatisticsHistory statisticsHistory;
 
-        if (dna.length >= SEQUENCE_SIZE) {
-            // horizontal check
-            isMutant = checkHorizontalSequence(dna);
+    @Autowired
+    private VerdictRecorder verdictRecorder;
 
-            // vertical check
-            if (!isMutant) {
-                isMutant = checkVerticalSequence(dna);
-            }
+    @Autowired
+    private DetectionMetrics detectionMetrics;
 
-            // diagonal check
-            if (!isMutant) {
-                isMutant = checkDiagonalSequence(dna);
-            }
-        }
+    @Autowired
+    private AdmissionControl admissionControl;
 
-        // stores the result in the database
-        String statName = isMutant ? MUTANT_DNA : HUMAN_DNA;
-        Statistics statistics = statisticsRepository.findByName(statName);
-        if (statistics == null) {
-            statistics = new Statistics(statName, 1L);
-        } else {
-            statistics.setAmount(statistics.getAmount() + 1L);
+    @Override
+    public boolean isMutant(String[] dna) {
+        // already classified dna skips validation, detection and storage
+        DnaHash hash = DnaHash.of(dna);
+        Boolean cached = verdictRecorder.cached(hash);
+        if (cached != null) {
+            return cached;
         }
-        statisticsRepository.save(statistics);
 
-        return isMutant;
+        return verdictRecorder.recorded(hash, detect(validate(dna)));
     }
 
-    private void validateDnaInput(String[] dna) throws BadInputException {
+    @Override
+    public boolean isMutant(DnaMatrix dna) {
         if (dna == null) {
+            detectionMetrics.recordReject();
             throw new BadInputException("Dna cannot be null");
         }
-        if (dna.length == 0) {
-            throw new BadInputException("Dna cannot be empty");
-        }
-        int length = dna.length;
-        boolean inconsistentSeq = Arrays.stream(dna)
-                .anyMatch(s -> s == null || s.length() != length || !validDnaString(s));
-        if (inconsistentSeq) {
-            throw new BadInputException("Dna has inconsistent sequences");
+        DnaHash hash = DnaHash.of(dna);
+        Boolean cached = verdictRecorder.cached(hash);
+        if (cached != null) {
+            return cached;
         }
+
+        return verdictRecorder.recorded(hash, detect(dna));
     }
 
-    /**
-     * Verifies if all characters are valid DNA characters (ATCG)
-     * @param curr string being tested
-     * @return <tt>true</tt> if valid or <tt>false</tt> if a wrong char is detected
-     */
-    private boolean validDnaString(String curr) {
-        return curr.chars()
-                .allMatch(ch -> VALID_DNA_CHARACTERS.contains(Character.toString((char)ch)));
+    @Override
+    public void classifyBatch(Iterator<String[]> batch, Consumer<DnaVerdict> verdicts) {
+        classifyAll(batch, DnaHash::of, this::classify, verdicts);
     }
 
-    private boolean checkHorizontalSequence(String[] dna) {
-        return Arrays.stream(dna).anyMatch(this::hasMutantSequence);
+    @Override
+    public void classifyPackedBatch(Iterator<DnaMatrix> batch, Consumer<DnaVerdict> verdicts) {
+        classifyAll(batch, DnaHash::of, this::classify, verdicts);
     }
 
-    private boolean hasMutantSequence(String s) {
-        char prev = s.charAt(0);
-        int prevCounter = 1;
-        for (int i = 1; i < s.length() && (s.length() - i + prevCounter) >= SEQUENCE_SIZE; i++) {
-            char curr = s.charAt(i);
-            if (toLowerCase(prev) == toLowerCase(curr)) {
-                prevCounter++;
-            } else {
-                prevCounter = 1;
+    private <T> void classifyAll(Iterator<T> batch, Function<T, DnaHash> hasher, BiFunction<T, DnaHash, Boolean> classifier,
+                                 Consumer<DnaVerdict> verdicts) {
+        Map<DnaHash, Boolean> newRecords = new HashMap<>();
+        try {
+            for (long index = 0; batch.hasNext(); index++) {
+                T dna = batch.next();
+                DnaHash hash = hasher.apply(dna);
+                Boolean isMutant = verdictRecorder.cached(hash);
+                if (isMutant == null) {
+                    try {
+                        isMutant = classifier.apply(dna, hash);
+                    } catch (BadInputException e) {
+                        verdicts.accept(DnaVerdict.rejected(index, e.getMessage()));
+                        continue;
+                    } catch (ResponseStatusException e) {
+                        // shed like a single request would be, the rest of the batch goes on
+                        verdicts.accept(DnaVerdict.rejected(index, e.getReason()));
+                        continue;
+                    }
+                    newRecords.put(hash, isMutant);
+                    if (newRecords.size() >= BATCH_RECORDS_CHUNK) {
+                        verdictRecorder.recordAll(newRecords);
+                        newRecords.clear();
+                    }
+                }
+                verdicts.accept(DnaVerdict.of(index, isMutant));
             }
-            if (prevCounter == SEQUENCE_SIZE) {
-                return true;
-            } else {
-                prev = curr;
+        } finally {
+            if (!newRecords.isEmpty()) {
+                verdictRecorder.recordAll(newRecords);
             }
         }
-        return false;
     }
 
-    private boolean checkVerticalSequence(String[] dna) {
-        int strLength = dna.length;
-        for (int charIdx = 0; charIdx < strLength; charIdx++) {
-            StringBuilder sbSequence = new StringBuilder();
-            for (String aDna : dna) {
-                sbSequence.append(aDna.charAt(charIdx));
-            }
-            if (hasMutantSequence(sbSequence.toString())) {
-                return true;
+    @Override
+    public void classifyRows(Iterator<String> rows, Consumer<Boolean> verdict) {
+        DetectionSession session = detector.newSession();
+        DnaHash hash;
+        try {
+            if (!rows.hasNext()) {
+                session.finish();
             }
+            String first = rows.next();
+            admissionControl.checkSize(first.length());
+            hash = scan(session, first, rows, verdict);
+        } catch (BadInputException e) {
+            detectionMetrics.recordReject();
+            throw e;
+        }
+        Boolean cached = verdictRecorder.cached(hash);
+        boolean isMutant = cached != null ? cached : verdictRecorder.recorded(hash, session.getDirection());
+        if (!session.isMutant()) {
+            verdict.accept(isMutant);
         }
-        return false;
     }
 
-    private boolean checkDiagonalSequence(String[] dna) {
-        StringBuilder sbSequence;
-        /*
-        First checks left to right diagonals
-         */
-        // Checks top half diagonals
-        for(int k = 0; k <= dna.length - SEQUENCE_SIZE; k++) {
-            sbSequence = new StringBuilder();
-            for(int j = 0 ; j <= dna.length - k - 1; j++) {
-                int i = k + j;
-                sbSequence.append(dna[i].charAt(j));
-            }
-            if (hasMutantSequence(sbSequence.toString())) {
-                return true;
+    /**
+     * Each row is admitted on its own, so a slow upload only holds a permit while one of its rows is scanned
+     */
+    private DnaHash scan(DetectionSession session, String first, Iterator<String> rows, Consumer<Boolean> verdict) {
+        long[] scanNanos = new long[1];
+        for (String row = first; row != null; row = rows.hasNext() ? rows.next() : null) {
+            String current = row;
+            Direction direction = admissionControl.detect(first.length(), () -> {
+                long start = System.nanoTime();
+                Direction found = session.addRow(current);
+                scanNanos[0] += System.nanoTime() - start;
+                return found;
+            });
+            if (direction != null) {
+                verdict.accept(true);
             }
         }
+        DnaHash hash = session.finish();
+        detectionMetrics.recordDetection(session.size(), scanNanos[0], session.getDirection());
+        return hash;
+    }
 
-        // Checks bottom half diagonals
-        for(int k = SEQUENCE_SIZE - 2; k > 0; k--) {
-            sbSequence = new StringBuilder();
-            for(int j = 0 ; j <= dna.length - k - 1; j++) {
-                int i = k + j;
-                sbSequence.append(dna[i].charAt(j));
-            }
-            if (hasMutantSequence(sbSequence.toString())) {
-                return true;
-            }
-        }
+    private boolean classify(String[] dna, DnaHash hash) {
+        return classify(validate(dna), hash);
+    }
 
-        /*
-        Second right to left diagonals
-         */
-        // Checks top half diagonals
-        for(int k = SEQUENCE_SIZE - 1; k < dna.length; k++) {
-            sbSequence = new StringBuilder();
-            for(int j = 0 ; j <= k ; j++) {
-                int i = k - j;
-                sbSequence.append(dna[i].charAt(j));
-            }
-            if (hasMutantSequence(sbSequence.toString())) {
-                return true;
-            }
-        }
+    /**
+     * The verdicts of a batch are recorded together by the caller
+     */
+    private boolean classify(DnaMatrix matrix, DnaHash hash) {
+        return verdictRecorder.classified(hash, detect(matrix));
+    }
 
-        // Checks bottom half diagonals
-        for (int k = dna.length - 2; k >= SEQUENCE_SIZE - 1; k--) {
-            sbSequence = new StringBuilder();
-            for (int j = 0; j <= k; j++) {
-                int i = k - j;
-                sbSequence.append(dna[dna.length - j - 1].charAt(dna.length - i - 1));
-            }
-            if (hasMutantSequence(sbSequence.toString())) {
-                return true;
+    private DnaMatrix validate(String[] dna) {
+        // validate and pack input in a single pass
+        try {
+            if (dna != null) {
+                admissionControl.checkSize(dna.length);
             }
+            return DnaMatrix.of(dna);
+        } catch (BadInputException e) {
+            detectionMetrics.recordReject();
+            throw e;
         }
+    }
 
-        return false;
+    private Direction detect(DnaMatrix matrix) {
+        // horizontal, vertical and diagonal checks in a single pass, split in bands for large matrices
+        return admissionControl.detect(matrix.size(), () -> {
+            long start = System.nanoTime();
+            Direction direction = detector.find(matrix);
+            detectionMetrics.recordDetection(matrix.size(), System.nanoTime() - start, direction);
+            return direction;
+        });
     }
 
     @Override
     public StatisticsResponse getRequestsStatistics() {
-        StatisticsResponse response = new StatisticsResponse();
-        Statistics mutantStats = statisticsRepository.findByName(MUTANT_DNA);
-        if (mutantStats != null) {
-            response.setCountMutantDna(mutantStats.getAmount());
-        } else {
-            response.setCountMutantDna(0L);
-        }
-        Statistics humanStats = statisticsRepository.findByName(HUMAN_DNA);
-        if (humanStats != null) {
-            response.setCountHumanDna(humanStats.getAmount());
-        } else {
-            response.setCountHumanDna(0L);
-        }
-        // ratio only make sense when both numbers are non-zero
-        if (response.getCountHumanDna() > 0L && response.getCountMutantDna() > 0L) {
-            response.setRatio(response.getCountMutantDna().doubleValue() / response.getCountHumanDna().doubleValue());
-        }
-        return response;
+        return statisticsAggregator.getSnapshot();
+    }
+
+    @Override
+    public Flux<StatisticsResponse> getRequestsStatisticsUpdates() {
+        return statisticsAggregator.snapshots();
+    }
 
+    @Override
+    public StatisticsHistoryResponse getRequestsStatisticsHistory(Instant from, Instant to, String granularity) {
+        if (statisticsHistory == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No history is kept by this statistics store");
+        }
+        Granularity resolved = granularity != null ? Granularity.parse(granularity) : Granularity.HOUR;
+        long end = to != null ? to.toEpochMilli() : System.currentTimeMillis();
+        long start = from != null ? from.toEpochMilli() : end - DEFAULT_HISTORY_RANGE_MS;
+        return new StatisticsHistoryResponse(resolved, new Date(start), new Date(end),
+                statisticsHistory.find(resolved, start, end));
     }
 }
@@ -0,0 +1,37 @@
+package meli.magneto.mutantfinder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+import java.util.Arrays;
+
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_NDJSON_VALUE;
+
+/**
+ * Lets the WebFlux JSON codecs read and write <tt>application/x-ndjson</tt> one value per line, the way they
+ * already handle <tt>application/stream+json</tt>
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class NdjsonCodecConfiguration implements WebFluxConfigurer {
+    private static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        MediaType[] mediaTypes = {MediaType.APPLICATION_JSON, new MediaType("application", "*+json"), APPLICATION_NDJSON};
+        Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, mediaTypes);
+        encoder.setStreamingMediaTypes(Arrays.asList(MediaType.APPLICATION_STREAM_JSON, APPLICATION_NDJSON));
+        configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+        configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper, mediaTypes));
+    }
+}
@@ -0,0 +1,29 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Lets WebFlux read <tt>application/x-dna-packed</tt> bodies with the {@link PackedDnaDecoder}, and
+ * <tt>application/x-dna-rows</tt> ones with the {@link DnaRowsDecoder}
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class PackedDnaCodecConfiguration implements WebFluxConfigurer {
+
+    @Value("${mutant-finder.admission.max-size:10000}")
+    private int maxSize;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().decoder(new PackedDnaDecoder(maxSize, admissionControl));
+        configurer.customCodecs().decoder(new DnaRowsDecoder(maxSize));
+    }
+}
@@ -0,0 +1,89 @@
+package meli.magneto.mutantfinder;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_PACKED_DNA_VALUE;
+
+/**
+ * Decodes every {@link DnaMatrix} of a body in the {@link PackedDnaFormat} as its buffers come in, releasing
+ * each buffer once its bytes are packed
+ */
+public class PackedDnaDecoder implements Decoder<DnaMatrix> {
+    private static final MimeType APPLICATION_PACKED_DNA = MimeType.valueOf(APPLICATION_PACKED_DNA_VALUE);
+
+    private final int maxSize;
+    private final AdmissionControl admissionControl;
+
+    /**
+     * @param admissionControl charged for the buffer of every dna while it is read, or <tt>null</tt>
+     */
+    public PackedDnaDecoder(int maxSize, AdmissionControl admissionControl) {
+        this.maxSize = maxSize;
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return DnaMatrix.class == elementType.resolve() && APPLICATION_PACKED_DNA.isCompatibleWith(mimeType);
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return Collections.singletonList(APPLICATION_PACKED_DNA);
+    }
+
+    @Override
+    public Flux<DnaMatrix> decode(Publisher<DataBuffer> input, ResolvableType elementType, MimeType mimeType,
+                                  Map<String, Object> hints) {
+        return Flux.defer(() -> {
+            PackedDnaFormat format = new PackedDnaFormat(maxSize, admissionControl);
+            return Flux.from(input)
+                    .concatMapIterable(buffer -> read(format, buffer))
+                    .concatWith(Mono.defer(() -> format.isPending()
+                            ? Mono.error(new BadInputException("Packed dna ends in the middle of a dna"))
+                            : Mono.empty()))
+                    // a body cut short or cancelled leaves its last dna unread
+                    .doFinally(signal -> format.close());
+        });
+    }
+
+    @Override
+    public Mono<DnaMatrix> decodeToMono(Publisher<DataBuffer> input, ResolvableType elementType, MimeType mimeType,
+                                        Map<String, Object> hints) {
+        return decode(input, elementType, mimeType, hints)
+                .single()
+                .onErrorMap(NoSuchElementException.class, e -> new BadInputException("Dna cannot be empty"))
+                .onErrorMap(IndexOutOfBoundsException.class,
+                        e -> new BadInputException("Only one dna is expected, send more to /mutant/batch"));
+    }
+
+    private static List<DnaMatrix> read(PackedDnaFormat format, DataBuffer buffer) {
+        List<DnaMatrix> dna = new ArrayList<>(1);
+        try {
+            ByteBuffer chunk = buffer.asByteBuffer();
+            while (chunk.hasRemaining()) {
+                DnaMatrix matrix = format.read(chunk);
+                if (matrix != null) {
+                    dna.add(matrix);
+                }
+            }
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+        return dna;
+    }
+}
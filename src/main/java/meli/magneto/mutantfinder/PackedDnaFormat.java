@@ -0,0 +1,217 @@
+package meli.magneto.mutantfinder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads dna in the packed format, <tt>application/x-dna-packed</tt>: the size of the matrix as a 4 byte
+ * big-endian int, then its bases in row major order, 2 bits each (A=0, C=1, G=2, T=3) and 4 per byte starting
+ * at the low bits. The bits past the last base are ignored. Several dna may follow each other in the same body.
+ * <p>
+ * Bytes are read from chunks cut anywhere and go straight into the words of the {@link DnaMatrix}, which share
+ * the same layout, so there is nothing to validate or convert on the way. Given an {@link AdmissionControl}, the
+ * buffer of each dna is charged to its budget from the header on, until the dna is read or {@link #close()} is
+ * called.
+ */
+final class PackedDnaFormat {
+    private static final int HEADER_BYTES = 4;
+    private static final int CHUNK_BYTES = 8192;
+
+    private final int maxSize;
+    private final AdmissionControl admissionControl;
+    private long reserved;
+    private int header;
+    private int headerBytes;
+    private int size;
+    private long[] bases;
+    private long position;
+    private long length;
+
+    /**
+     * @param maxSize largest size accepted, larger dna is rejected before its bases are read
+     */
+    PackedDnaFormat(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param admissionControl charged for the buffer of every dna read, or <tt>null</tt> to charge nothing
+     */
+    PackedDnaFormat(int maxSize, AdmissionControl admissionControl) {
+        this.maxSize = Math.min(maxSize, DnaMatrix.MAX_SIZE);
+        this.admissionControl = admissionControl;
+    }
+
+    /**
+     * Consumes the bytes of the chunk up to the end of the current dna at most
+     *
+     * @return the dna once its last byte is read, <tt>null</tt> while it needs more bytes
+     * @throws BadInputException if the size is not valid
+     * @throws org.springframework.web.server.ResponseStatusException with 503 when the budget of the
+     * {@link AdmissionControl} can't take the buffer of the dna
+     */
+    DnaMatrix read(ByteBuffer chunk) {
+        while (headerBytes < HEADER_BYTES) {
+            if (!chunk.hasRemaining()) {
+                return null;
+            }
+            header = header << 8 | chunk.get() & 0xFF;
+            if (++headerBytes == HEADER_BYTES) {
+                start(header);
+            }
+        }
+        ByteOrder order = chunk.order();
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (position < length && chunk.hasRemaining()) {
+                // whole words at a time while both sides are aligned
+                if ((position & 7) == 0 && length - position >= 8 && chunk.remaining() >= 8) {
+                    bases[(int) (position >>> 3)] = chunk.getLong();
+                    position += 8;
+                } else {
+                    bases[(int) (position >>> 3)] |= (chunk.get() & 0xFFL) << ((position & 7) << 3);
+                    position++;
+                }
+            }
+        } finally {
+            chunk.order(order);
+        }
+        return position < length ? null : finish();
+    }
+
+    /**
+     * @return whether a dna was started and not read in full yet
+     */
+    boolean isPending() {
+        return headerBytes > 0;
+    }
+
+    /**
+     * Gives back the budget charged for a dna left unread, once nothing more is going to be read
+     */
+    synchronized void close() {
+        if (reserved > 0L) {
+            admissionControl.release(reserved);
+            reserved = 0L;
+        }
+    }
+
+    private void start(int size) {
+        if (size <= 0) {
+            throw new BadInputException("Dna cannot be empty");
+        }
+        if (size > maxSize) {
+            throw new PayloadTooLargeException("Dna cannot be larger than " + maxSize + " x " + maxSize);
+        }
+        if (admissionControl != null) {
+            reserved = admissionControl.reserve(size);
+        }
+        this.size = size;
+        this.bases = new long[DnaMatrix.packedLength(size)];
+        this.position = 0L;
+        this.length = ((long) size * size + 3) >> 2;
+    }
+
+    private DnaMatrix finish() {
+        int bits = (size * size & 31) << 1;
+        if (bits != 0) {
+            bases[bases.length - 1] &= (1L << bits) - 1;
+        }
+        DnaMatrix dna = new DnaMatrix(size, bases);
+        header = 0;
+        headerBytes = 0;
+        bases = null;
+        close();
+        return dna;
+    }
+
+    /**
+     * @return every dna of the stream, read as the iterator goes
+     * @throws BadInputException from the iterator when a dna is not valid or the stream ends in the middle of one
+     * @throws UncheckedIOException from the iterator when the stream can't be read
+     */
+    static Iterator<DnaMatrix> readAll(InputStream in, int maxSize) {
+        return readAll(in, maxSize, null);
+    }
+
+    /**
+     * @param admissionControl charged for the buffer of every dna while it is read, or <tt>null</tt>
+     * @see #readAll(InputStream, int)
+     */
+    static Iterator<DnaMatrix> readAll(InputStream in, int maxSize, AdmissionControl admissionControl) {
+        PackedDnaFormat format = new PackedDnaFormat(maxSize, admissionControl);
+        byte[] buffer = new byte[CHUNK_BYTES];
+        return new Iterator<DnaMatrix>() {
+            private ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, 0);
+            private DnaMatrix next;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null) {
+                        if (!chunk.hasRemaining()) {
+                            int read;
+                            try {
+                                read = in.read(buffer);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            if (read == -1) {
+                                if (format.isPending()) {
+                                    throw new BadInputException("Packed dna ends in the middle of a dna");
+                                }
+                                return false;
+                            }
+                            chunk = ByteBuffer.wrap(buffer, 0, read);
+                        }
+                        next = format.read(chunk);
+                    }
+                    return true;
+                } catch (RuntimeException e) {
+                    // nothing more is read after a failure
+                    format.close();
+                    throw e;
+                }
+            }
+
+            @Override
+            public DnaMatrix next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                DnaMatrix dna = next;
+                next = null;
+                return dna;
+            }
+        };
+    }
+
+    /**
+     * @return the dna in the packed format
+     */
+    static byte[] write(DnaMatrix dna) {
+        int size = dna.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + (int) (((long) size * size + 3) >> 2));
+        buffer.putInt(size);
+        int idx = 0;
+        int packed = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++, idx++) {
+                packed |= dna.get(row, col) << ((idx & 3) << 1);
+                if ((idx & 3) == 3) {
+                    buffer.put((byte) packed);
+                    packed = 0;
+                }
+            }
+        }
+        if ((idx & 3) != 0) {
+            buffer.put((byte) packed);
+        }
+        return buffer.array();
+    }
+}
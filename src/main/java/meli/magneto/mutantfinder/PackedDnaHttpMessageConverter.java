@@ -0,0 +1,72 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_PACKED_DNA_VALUE;
+
+/**
+ * Reads a {@link DnaMatrix} from a body in the {@link PackedDnaFormat}. Picked up by Spring MVC as any other
+ * converter bean, next to the JSON one.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class PackedDnaHttpMessageConverter extends AbstractHttpMessageConverter<DnaMatrix> {
+
+    private final int maxSize;
+    private final AdmissionControl admissionControl;
+
+    public PackedDnaHttpMessageConverter(@Value("${mutant-finder.admission.max-size:10000}") int maxSize,
+                                         AdmissionControl admissionControl) {
+        super(MediaType.valueOf(APPLICATION_PACKED_DNA_VALUE));
+        this.maxSize = maxSize;
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return DnaMatrix.class == clazz;
+    }
+
+    /**
+     * Invalid dna is reported as an unreadable body, like the JSON converter does
+     */
+    @Override
+    protected DnaMatrix readInternal(Class<? extends DnaMatrix> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            Iterator<DnaMatrix> dna = readAll(inputMessage.getBody());
+            if (!dna.hasNext()) {
+                throw new BadInputException("Dna cannot be empty");
+            }
+            DnaMatrix matrix = dna.next();
+            if (dna.hasNext()) {
+                throw new BadInputException("Only one dna is expected, send more to /mutant/batch");
+            }
+            return matrix;
+        } catch (BadInputException e) {
+            throw new HttpMessageNotReadableException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void writeInternal(DnaMatrix dna, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(PackedDnaFormat.write(dna));
+    }
+
+    /**
+     * @see PackedDnaFormat#readAll(InputStream, int, AdmissionControl)
+     */
+    public Iterator<DnaMatrix> readAll(InputStream body) {
+        return PackedDnaFormat.readAll(body, maxSize, admissionControl);
+    }
+}
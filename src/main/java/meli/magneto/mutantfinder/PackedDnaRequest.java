@@ -0,0 +1,17 @@
+package meli.magneto.mutantfinder;
+
+/**
+ * Same body as a {@link DnaRequest}, with the dna packed while it is parsed
+ */
+public class PackedDnaRequest {
+
+    private DnaMatrix dna;
+
+    public DnaMatrix getDna() {
+        return dna;
+    }
+
+    public void setDna(DnaMatrix dna) {
+        this.dna = dna;
+    }
+}
@@ -0,0 +1,113 @@
+package meli.magneto.mutantfinder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits the matrix in bands of <tt>bandSize</tt> rows scanned by the {@link BitboardDetector} on a fork-join
+ * pool. Each band counts the sequences ending in it, picking up the runs that cross into it, into a count shared
+ * by all of them; the band that reaches <tt>minimumSequences</tt> stops every other one.
+ * <p>
+ * Sequences longer than the 64 columns a bitboard word holds fall back to the {@link RunLengthDetector},
+ * scanning tiles of <tt>bandSize</tt> rows by <tt>bandSize</tt> columns instead of bands.
+ */
+public class ParallelDetector implements DnaDetector {
+    private final RunLengthDetector scanner;
+    private final BitboardDetector bitboard;
+    private final int bandSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism threads of the pool, <tt>0</tt> for one per core
+     */
+    public ParallelDetector(int sequenceSize, int minimumSequences, int bandSize, int parallelism) {
+        this.scanner = new RunLengthDetector(sequenceSize, minimumSequences);
+        this.bitboard = sequenceSize <= Long.SIZE ? new BitboardDetector(sequenceSize, minimumSequences) : null;
+        this.bandSize = bandSize;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @return direction of the sequence that reached <tt>minimumSequences</tt>, or <tt>null</tt> if there are
+     * not enough of them. With several bands, which sequence that is depends on the order they ran.
+     */
+    @Override
+    public Direction find(DnaMatrix matrix) {
+        if (matrix.size() < scanner.getSequenceSize()) {
+            return null;
+        }
+        int bands = (matrix.size() + bandSize - 1) / bandSize;
+        AtomicReference<Direction> hit = new AtomicReference<>();
+        int tiles = bitboard != null ? bands : bands * bands;
+        pool.invoke(new TileScan(matrix, bands, 0, tiles, new AtomicInteger(), hit));
+        return hit.get();
+    }
+
+    @Override
+    public int getSequenceSize() {
+        return scanner.getSequenceSize();
+    }
+
+    @Override
+    public int getMinimumSequences() {
+        return scanner.getMinimumSequences();
+    }
+
+    /**
+     * Scans the bands <tt>[from, to)</tt>, or without a bitboard the tiles <tt>[from, to)</tt>, numbered row
+     * band by row band
+     */
+    private class TileScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final DnaMatrix matrix;
+        private final int bands;
+        private final int from;
+        private final int to;
+        private final AtomicInteger sequences;
+        private final AtomicReference<Direction> hit;
+
+        TileScan(DnaMatrix matrix, int bands, int from, int to, AtomicInteger sequences,
+                 AtomicReference<Direction> hit) {
+            this.matrix = matrix;
+            this.bands = bands;
+            this.from = from;
+            this.to = to;
+            this.sequences = sequences;
+            this.hit = hit;
+        }
+
+        @Override
+        protected void compute() {
+            if (hit.get() != null) {
+                return;
+            }
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileScan(matrix, bands, from, middle, sequences, hit),
+                        new TileScan(matrix, bands, middle, to, sequences, hit));
+                return;
+            }
+            int size = matrix.size();
+            // only the band or tile whose sequence reaches the minimum gets a direction
+            Direction direction;
+            if (bitboard != null) {
+                int rowFrom = from * bandSize;
+                direction = bitboard.find(matrix, rowFrom, Math.min(size, rowFrom + bandSize), sequences);
+            } else {
+                int rowFrom = (from / bands) * bandSize;
+                int colFrom = (from % bands) * bandSize;
+                direction = scanner.find(matrix, rowFrom, Math.min(size, rowFrom + bandSize),
+                        colFrom, Math.min(size, colFrom + bandSize), sequences);
+            }
+            if (direction != null) {
+                hit.set(direction);
+            }
+        }
+    }
+}
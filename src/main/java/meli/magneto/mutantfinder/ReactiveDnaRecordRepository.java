@@ -0,0 +1,8 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactiveDnaRecordRepository extends ReactiveMongoRepository<DnaRecord, String> {
+}
@@ -0,0 +1,134 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_DNA_ROWS_VALUE;
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_NDJSON_VALUE;
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_PACKED_DNA_VALUE;
+
+/**
+ * Same endpoints as {@link MutantFinderController}, served by WebFlux when
+ * <tt>spring.main.web-application-type=reactive</tt>
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMutantFinderController {
+
+    @Autowired
+    private ReactiveMutantFinderService mutantFinderService;
+
+    @Autowired
+    private DetectionMetrics detectionMetrics;
+
+    @PostMapping(path = "/mutant", produces = MediaType.APPLICATION_JSON_VALUE, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Void>> checkForMutantDna(@RequestBody Mono<PackedDnaRequest> dnaRequest) {
+        return verdictEntity(dnaRequest.map(PackedDnaRequest::getDna));
+    }
+
+    /**
+     * Same as the JSON body, with the dna in the {@link PackedDnaFormat}
+     */
+    @PostMapping(path = "/mutant", produces = MediaType.APPLICATION_JSON_VALUE, consumes = APPLICATION_PACKED_DNA_VALUE)
+    public Mono<ResponseEntity<Void>> checkForPackedMutantDna(@RequestBody Mono<DnaMatrix> dna) {
+        return verdictEntity(dna);
+    }
+
+    /**
+     * Same as the JSON body, with one row of the dna per line. The status is flushed as soon as the verdict is
+     * known, but the response only ends with the body: once it does the server drops what is left of the request.
+     */
+    @PostMapping(path = "/mutant", produces = MediaType.APPLICATION_JSON_VALUE, consumes = APPLICATION_DNA_ROWS_VALUE)
+    public Mono<Void> checkForStreamedMutantDna(@RequestBody Flux<String> rows, ServerHttpResponse response) {
+        return response.writeAndFlushWith(mutantFinderService.classifyRows(rows)
+                .map(isMutant -> {
+                    response.setStatusCode(isMutant ? HttpStatus.OK : HttpStatus.FORBIDDEN);
+                    return Flux.<DataBuffer>empty();
+                })
+                // a row after the verdict was invalid, the dna is just not recorded
+                .onErrorResume(BadInputException.class, e -> response.isCommitted() ? Flux.empty() : Flux.error(e)));
+    }
+
+    private Mono<ResponseEntity<Void>> verdictEntity(Mono<DnaMatrix> dna) {
+        return dna
+                // dna rejected while the body was parsed is counted like any other validation reject
+                .onErrorMap(e -> NestedExceptionUtils.getMostSpecificCause(e) instanceof BadInputException, e -> {
+                    detectionMetrics.recordReject();
+                    return NestedExceptionUtils.getMostSpecificCause(e);
+                })
+                // and dna turned away by the admission control before being read keeps its status
+                .onErrorMap(e -> NestedExceptionUtils.getMostSpecificCause(e) instanceof ResponseStatusException,
+                        NestedExceptionUtils::getMostSpecificCause)
+                .flatMap(mutantFinderService::isMutant)
+                .map(MutantFinderController::verdictEntity);
+    }
+
+    /**
+     * Reads one {@link DnaRequest} per line and writes one {@link DnaVerdict} per line as each dna is classified
+     */
+    @PostMapping(path = "/mutant/batch", produces = APPLICATION_NDJSON_VALUE, consumes = APPLICATION_NDJSON_VALUE)
+    public Flux<DnaVerdict> checkForMutantDnaBatch(@RequestBody Flux<DnaRequest> requests) {
+        return mutantFinderService.classifyBatch(requests)
+                // the rest of the body can't be trusted after a malformed line
+                .onErrorResume(DecodingException.class,
+                        e -> Mono.just(DnaVerdict.rejected(-1L, NestedExceptionUtils.getMostSpecificCause(e).getMessage())));
+    }
+
+    /**
+     * Reads dna in the {@link PackedDnaFormat} one after the other and writes one {@link DnaVerdict} per line as
+     * each dna is classified
+     */
+    @PostMapping(path = "/mutant/batch", produces = APPLICATION_NDJSON_VALUE, consumes = APPLICATION_PACKED_DNA_VALUE)
+    public Flux<DnaVerdict> checkForPackedMutantDnaBatch(@RequestBody Flux<DnaMatrix> dna) {
+        return mutantFinderService.classifyPackedBatch(dna)
+                // without a valid size the start of the next dna is unknown
+                .onErrorResume(BadInputException.class, e -> Mono.just(DnaVerdict.rejected(-1L, e.getMessage())))
+                // nor without reading the dna turned away after its header
+                .onErrorResume(ResponseStatusException.class, e -> Mono.just(DnaVerdict.rejected(-1L, e.getReason())));
+    }
+
+    /**
+     * Tagged with an ETag, so a client sending it back in <tt>If-None-Match</tt> gets a 304 until a count moves
+     */
+    @GetMapping(path = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<StatisticsResponse>> getRequestStatistics() {
+        return mutantFinderService.getRequestsStatistics().map(MutantFinderController::statisticsEntity);
+    }
+
+    /**
+     * Server-sent events with the current statistics, then a new event every time a count moves
+     */
+    @GetMapping(path = "/stats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StatisticsResponse>> streamRequestStatistics() {
+        return mutantFinderService.getRequestsStatisticsUpdates().map(MutantFinderController::statisticsEvent);
+    }
+
+    /**
+     * Counts per minute, hour or day over a range given as ISO-8601 date-times, the last day by hour by default
+     */
+    @GetMapping(path = "/stats/history", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<StatisticsHistoryResponse> getRequestStatisticsHistory(
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) String granularity) {
+        return mutantFinderService.getRequestsStatisticsHistory(from, to, granularity);
+    }
+}
@@ -0,0 +1,44 @@
+package meli.magneto.mutantfinder;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+/**
+ * Non-blocking counterpart of {@link MutantFinderService}, used when the application runs on WebFlux
+ */
+public interface ReactiveMutantFinderService {
+
+    Mono<Boolean> isMutant(DnaMatrix dna);
+
+    /**
+     * Classifies the dna of the batch keeping their order, several of them at a time. Invalid dna is reported
+     * as rejected instead of interrupting the batch.
+     */
+    Flux<DnaVerdict> classifyBatch(Flux<DnaRequest> batch);
+
+    /**
+     * Same as {@link #classifyBatch(Flux)} for dna already packed while it was read
+     */
+    Flux<DnaVerdict> classifyPackedBatch(Flux<DnaMatrix> batch);
+
+    /**
+     * @return the verdict of a dna whose rows arrive one at a time, a mutant one as soon as its sequences are
+     * found, and completes once every row is read, see
+     * {@link MutantFinderService#classifyRows(java.util.Iterator, java.util.function.Consumer)}
+     */
+    Flux<Boolean> classifyRows(Flux<String> rows);
+
+    Mono<StatisticsResponse> getRequestsStatistics();
+
+    /**
+     * @return the latest statistics snapshot followed by every new one
+     */
+    Flux<StatisticsResponse> getRequestsStatisticsUpdates();
+
+    /**
+     * @see MutantFinderService#getRequestsStatisticsHistory(Instant, Instant, String)
+     */
+    Mono<StatisticsHistoryResponse> getRequestsStatisticsHistory(Instant from, Instant to, String granularity);
+}
@@ -0,0 +1,167 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+
+/**
+ * Request threads only wait on non-blocking I/O: hashing, validation and detection run on a bounded parallel
+ * scheduler, the MongoDB verdict tier is read with the reactive driver and new records go to the
+ * {@link DnaRecordWriter} buffer, which is written in the background.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMutantFinderServiceImpl implements ReactiveMutantFinderService {
+    private final AdaptiveDetector detector;
+    private final VerdictRecorder verdictRecorder;
+    private final DetectionMetrics detectionMetrics;
+    private final AdmissionControl admissionControl;
+    private final MutantFinderService mutantFinderService;
+    private final int parallelism;
+    private final Scheduler detectionScheduler;
+
+    public ReactiveMutantFinderServiceImpl(AdaptiveDetector detector,
+                                           VerdictRecorder verdictRecorder,
+                                           DetectionMetrics detectionMetrics,
+                                           AdmissionControl admissionControl,
+                                           MutantFinderService mutantFinderService,
+                                           @Value("${mutant-finder.reactive.detection-parallelism:0}") int parallelism) {
+        this.detector = detector;
+        this.verdictRecorder = verdictRecorder;
+        this.detectionMetrics = detectionMetrics;
+        this.admissionControl = admissionControl;
+        this.mutantFinderService = mutantFinderService;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.detectionScheduler = Schedulers.newParallel("dna-detection", this.parallelism, true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        detectionScheduler.dispose();
+    }
+
+    @Override
+    public Mono<Boolean> isMutant(DnaMatrix dna) {
+        if (dna == null) {
+            detectionMetrics.recordReject();
+            return Mono.error(new BadInputException("Dna cannot be null"));
+        }
+        return Mono.fromSupplier(() -> DnaHash.of(dna))
+                .subscribeOn(detectionScheduler)
+                // already classified dna skips detection and storage
+                .flatMap(hash -> verdictRecorder.find(hash)
+                        .switchIfEmpty(Mono.defer(() -> classify(dna, hash))));
+    }
+
+    @Override
+    public Flux<DnaVerdict> classifyBatch(Flux<DnaRequest> batch) {
+        // errors of the batch itself only surface once the verdicts already being computed are out
+        return batch.index()
+                .flatMapSequentialDelayError(item -> classify(item.getT1(), item.getT2().getDna()), parallelism,
+                        1);
+    }
+
+    @Override
+    public Flux<DnaVerdict> classifyPackedBatch(Flux<DnaMatrix> batch) {
+        return batch.index()
+                .flatMapSequentialDelayError(item -> classify(item.getT1(), Mono.just(item.getT2())), parallelism, 1);
+    }
+
+    /**
+     * The rows are scanned on the detection scheduler, each once it got a permit of its own, and the verdict is
+     * emitted as soon as it is known
+     */
+    @Override
+    public Flux<Boolean> classifyRows(Flux<String> rows) {
+        return Flux.defer(() -> {
+            DetectionSession session = detector.newSession();
+            long[] scanNanos = new long[1];
+            int[] size = new int[1];
+            return rows
+                    // a slow upload only holds a permit while one of its rows is scanned
+                    .concatMap(row -> {
+                        if (size[0] == 0) {
+                            admissionControl.checkSize(row.length());
+                            size[0] = row.length();
+                        }
+                        return admissionControl.detect(size[0], () -> {
+                            long start = System.nanoTime();
+                            Direction direction = session.addRow(row);
+                            scanNanos[0] += System.nanoTime() - start;
+                            return direction != null;
+                        }, detectionScheduler);
+                    })
+                    .filter(found -> found)
+                    .concatWith(Mono.fromSupplier(session::finish).subscribeOn(detectionScheduler).flatMap(hash -> {
+                        detectionMetrics.recordDetection(session.size(), scanNanos[0], session.getDirection());
+                        return verdictRecorder.find(hash)
+                                .switchIfEmpty(Mono.fromSupplier(() ->
+                                        verdictRecorder.recorded(hash, session.getDirection())))
+                                // a mutant verdict was emitted already
+                                .filter(isMutant -> !session.isMutant());
+                    }))
+                    .doOnError(BadInputException.class, e -> detectionMetrics.recordReject());
+        });
+    }
+
+    private Mono<DnaVerdict> classify(long index, String[] dna) {
+        return classify(index, Mono.fromSupplier(() -> {
+                    if (dna != null) {
+                        admissionControl.checkSize(dna.length);
+                    }
+                    return DnaMatrix.of(dna);
+                })
+                .subscribeOn(detectionScheduler)
+                .doOnError(BadInputException.class, e -> detectionMetrics.recordReject()));
+    }
+
+    private Mono<DnaVerdict> classify(long index, Mono<DnaMatrix> dna) {
+        return dna.flatMap(this::isMutant)
+                .map(isMutant -> DnaVerdict.of(index, isMutant))
+                .onErrorResume(BadInputException.class, e -> Mono.just(DnaVerdict.rejected(index, e.getMessage())))
+                .onErrorResume(ResponseStatusException.class, e -> Mono.just(DnaVerdict.rejected(index, e.getReason())));
+    }
+
+    /**
+     * Waits for a detection permit without holding a thread of the detection scheduler
+     */
+    private Mono<Boolean> classify(DnaMatrix dna, DnaHash hash) {
+        return admissionControl.detect(dna.size(), () -> {
+            // horizontal, vertical and diagonal checks in a single pass, split in bands for large matrices
+            long start = System.nanoTime();
+            Direction direction = detector.find(dna);
+            detectionMetrics.recordDetection(dna.size(), System.nanoTime() - start, direction);
+            return verdictRecorder.recorded(hash, direction);
+        }, detectionScheduler);
+    }
+
+    /**
+     * The counts are kept in memory, nothing blocks
+     */
+    @Override
+    public Mono<StatisticsResponse> getRequestsStatistics() {
+        return Mono.fromSupplier(mutantFinderService::getRequestsStatistics);
+    }
+
+    @Override
+    public Flux<StatisticsResponse> getRequestsStatisticsUpdates() {
+        return mutantFinderService.getRequestsStatisticsUpdates();
+    }
+
+    /**
+     * The buckets are read with the blocking driver, off the request threads
+     */
+    @Override
+    public Mono<StatisticsHistoryResponse> getRequestsStatisticsHistory(Instant from, Instant to, String granularity) {
+        return Mono.fromCallable(() -> mutantFinderService.getRequestsStatisticsHistory(from, to, granularity))
+                .subscribeOn(Schedulers.elastic());
+    }
+}
@@ -0,0 +1,58 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebFlux counterpart of {@link RequestSizeFilter}
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRequestSizeFilter implements WebFilter {
+
+    private final long maxBytes;
+
+    public ReactiveRequestSizeFilter(@Value("${mutant-finder.admission.max-bytes:104857600}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.POST || !"/mutant".equals(request.getPath().pathWithinApplication().value())) {
+            return chain.filter(exchange);
+        }
+        if (request.getHeaders().getContentLength() > maxBytes) {
+            exchange.getResponse().setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+            return exchange.getResponse().setComplete();
+        }
+        AtomicLong read = new AtomicLong();
+        ServerHttpRequest limited = new ServerHttpRequestDecorator(request) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return super.getBody().map(buffer -> {
+                    if (read.addAndGet(buffer.readableByteCount()) > maxBytes) {
+                        DataBufferUtils.release(buffer);
+                        throw new PayloadTooLargeException(RequestSizeFilter.tooLarge(maxBytes));
+                    }
+                    return buffer;
+                });
+            }
+        };
+        return chain.filter(exchange.mutate().request(limited).build());
+    }
+}
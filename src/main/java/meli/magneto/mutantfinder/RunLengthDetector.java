@@ -0,0 +1,164 @@
+package meli.magneto.mutantfinder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts runs of equal bases in every direction (horizontal, vertical and both diagonals) walking the
+ * matrix only once. Each cell extends the run of its left, upper, upper-left and upper-right neighbour,
+ * so the only state kept is one run counter per column for each of the vertical and diagonal directions.
+ * A counter goes back to zero once it makes a sequence, so a run of <tt>n * sequenceSize</tt> bases counts
+ * as <tt>n</tt> sequences and overlapping sequences are never counted twice. The scan stops as soon as
+ * <tt>minimumSequences</tt> are found.
+ */
+public class RunLengthDetector implements DnaDetector {
+
+    private final int sequenceSize;
+    private final int minimumSequences;
+
+    /**
+     * @param sequenceSize number of equal bases of a sequence
+     * @param minimumSequences number of sequences that make a dna mutant
+     */
+    public RunLengthDetector(int sequenceSize, int minimumSequences) {
+        if (sequenceSize < 2) {
+            throw new IllegalArgumentException("Sequence size must be at least 2, was " + sequenceSize);
+        }
+        if (minimumSequences < 1) {
+            throw new IllegalArgumentException("Minimum sequences must be at least 1, was " + minimumSequences);
+        }
+        this.sequenceSize = sequenceSize;
+        this.minimumSequences = minimumSequences;
+    }
+
+    @Override
+    public int getSequenceSize() {
+        return sequenceSize;
+    }
+
+    @Override
+    public int getMinimumSequences() {
+        return minimumSequences;
+    }
+
+    /**
+     * @return a scan of a dna fed one row at a time, finding the same sequences as {@link #find(DnaMatrix)}
+     */
+    public DetectionSession newSession() {
+        return new DetectionSession(sequenceSize, minimumSequences);
+    }
+
+    @Override
+    public Direction find(DnaMatrix matrix) {
+        if (matrix.size() < sequenceSize) {
+            return null;
+        }
+        return find(matrix, 0, matrix.size(), 0, matrix.size(), new AtomicInteger());
+    }
+
+    /**
+     * Scans only the cells of a region, counting the sequences that end in it. Runs coming from outside the
+     * region are picked up where they cross its borders, so regions covering a matrix count exactly what a
+     * scan of the whole matrix would.
+     * @param rowFrom first row, inclusive
+     * @param rowTo last row, exclusive
+     * @param colFrom first column, inclusive
+     * @param colTo last column, exclusive
+     * @param sequences sequences found so far, shared by every region of the matrix. Checked once per row,
+     * the scan gives up when another region already reached <tt>minimumSequences</tt>
+     * @return direction of the sequence that reached <tt>minimumSequences</tt>, or <tt>null</tt> if it was not
+     * reached in this region
+     */
+    public Direction find(DnaMatrix matrix, int rowFrom, int rowTo, int colFrom, int colTo, AtomicInteger sequences) {
+        int size = matrix.size();
+        int width = colTo - colFrom;
+        int[] vertical = new int[width];
+        int[] diagonal = new int[width];
+        int[] antiDiagonal = new int[width];
+        if (rowFrom > 0) {
+            for (int col = 0; col < width; col++) {
+                vertical[col] = runEndingAt(matrix, rowFrom - 1, colFrom + col, 1, 0);
+                diagonal[col] = runEndingAt(matrix, rowFrom - 1, colFrom + col, 1, 1);
+                antiDiagonal[col] = runEndingAt(matrix, rowFrom - 1, colFrom + col, 1, -1);
+            }
+        }
+        boolean hasLeft = colFrom > 0;
+        boolean hasRight = colTo < size;
+
+        for (int row = rowFrom; row < rowTo; row++) {
+            if (sequences.get() >= minimumSequences) {
+                return null;
+            }
+            boolean hasUp = row > 0;
+            // runs of the cells left of the region, and up right of its last column
+            int horizontal = hasLeft ? runEndingAt(matrix, row, colFrom - 1, 0, 1) : 0;
+            int diagonalCarry = hasLeft && hasUp ? runEndingAt(matrix, row - 1, colFrom - 1, 1, 1) : 0;
+            int antiDiagonalBorder = hasRight && hasUp ? runEndingAt(matrix, row - 1, colTo, 1, -1) : 0;
+            int left = hasLeft ? matrix.get(row, colFrom - 1) : -1;
+            // previous row neighbours, shifted along as the column advances
+            int upLeft = hasLeft && hasUp ? matrix.get(row - 1, colFrom - 1) : -1;
+            int up = hasUp ? matrix.get(row - 1, colFrom) : -1;
+
+            for (int col = 0; col < width; col++) {
+                int base = matrix.get(row, colFrom + col);
+                boolean lastColumn = col + 1 == width;
+                int upRight = hasUp && (!lastColumn || hasRight) ? matrix.get(row - 1, colFrom + col + 1) : -1;
+
+                horizontal = base == left ? horizontal + 1 : 1;
+                if (horizontal == sequenceSize) {
+                    horizontal = 0;
+                    if (sequences.incrementAndGet() == minimumSequences) {
+                        return Direction.HORIZONTAL;
+                    }
+                }
+                vertical[col] = base == up ? vertical[col] + 1 : 1;
+                if (vertical[col] == sequenceSize) {
+                    vertical[col] = 0;
+                    if (sequences.incrementAndGet() == minimumSequences) {
+                        return Direction.VERTICAL;
+                    }
+                }
+                // previous row diagonal run of the column on the left, saved before being overwritten
+                int upLeftRun = diagonalCarry;
+                diagonalCarry = diagonal[col];
+                diagonal[col] = base == upLeft ? upLeftRun + 1 : 1;
+                if (diagonal[col] == sequenceSize) {
+                    diagonal[col] = 0;
+                    if (sequences.incrementAndGet() == minimumSequences) {
+                        return Direction.DIAGONAL;
+                    }
+                }
+                // antiDiagonal[col + 1] still holds the previous row value at this point
+                int upRightRun = lastColumn ? antiDiagonalBorder : antiDiagonal[col + 1];
+                antiDiagonal[col] = base == upRight ? upRightRun + 1 : 1;
+                if (antiDiagonal[col] == sequenceSize) {
+                    antiDiagonal[col] = 0;
+                    if (sequences.incrementAndGet() == minimumSequences) {
+                        return Direction.ANTI_DIAGONAL;
+                    }
+                }
+                left = base;
+                upLeft = up;
+                up = upRight;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param rowStep row distance back to the previous cell of the run
+     * @param colStep column distance back to the previous cell of the run
+     * @return counter a scan from the matrix borders has at the cell: the length of the run ending there,
+     * less the sequences already made of it
+     */
+    private int runEndingAt(DnaMatrix matrix, int row, int col, int rowStep, int colStep) {
+        int base = matrix.get(row, col);
+        int size = matrix.size();
+        int length = 1;
+        for (int r = row - rowStep, c = col - colStep;
+             r >= 0 && c >= 0 && c < size && matrix.get(r, c) == base;
+             r -= rowStep, c -= colStep) {
+            length++;
+        }
+        return length % sequenceSize;
+    }
+}
@@ -0,0 +1,85 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Appends each batch to a local segment file as one JSON object per line, with a single write and a single
+ * <tt>fsync</tt> per batch. Once a segment reaches <tt>segment-bytes</tt> the next batch starts a new one,
+ * named after the time it was opened, so old segments can be shipped or deleted as whole files.
+ */
+@Component
+@ConditionalOnProperty(name = "mutant-finder.events.sink", havingValue = "file")
+public class SegmentFileClassificationEventSink implements ClassificationEventSink {
+    static final String SEGMENT_PREFIX = "classifications-";
+    static final String SEGMENT_SUFFIX = ".ndjson";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final StringBuilder lines = new StringBuilder();
+    private FileChannel segment;
+
+    public SegmentFileClassificationEventSink(@Value("${mutant-finder.events.file.directory:data/events}") String directory,
+                                              @Value("${mutant-finder.events.file.segment-bytes:67108864}") long segmentBytes) {
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+
+    @Override
+    public synchronized void write(List<ClassificationEvent> events) {
+        lines.setLength(0);
+        for (ClassificationEvent event : events) {
+            lines.append("{\"hash\":\"").append(event.getHash())
+                    .append("\",\"mutant\":").append(event.isMutant())
+                    .append(",\"direction\":");
+            if (event.getDirection() != null) {
+                lines.append('"').append(event.getDirection().name()).append('"');
+            } else {
+                lines.append("null");
+            }
+            lines.append(",\"cached\":").append(event.isCached());
+            lines.append(",\"createdAt\":\"").append(event.getCreatedAt().toInstant()).append("\"}\n");
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.US_ASCII));
+        try {
+            if (segment == null) {
+                Files.createDirectories(directory);
+                segment = FileChannel.open(directory.resolve(SEGMENT_PREFIX + System.currentTimeMillis()
+                        + SEGMENT_SUFFIX), CREATE, WRITE, APPEND);
+            }
+            while (bytes.hasRemaining()) {
+                segment.write(bytes);
+            }
+            segment.force(false);
+            if (segment.size() >= segmentBytes) {
+                close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append the classification events", e);
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package meli.magneto.mutantfinder;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
 
+/**
+ * One shard of a counter. Every instance only increments its own shard and the amount of a counter is the sum
+ * of all of them.
+ */
+@Document
+@CompoundIndex(name = "name_shard", def = "{'name': 1, 'shard': 1}", unique = true)
 public class Statistics {
     public static final String MUTANT_DNA = "count_mutant_dna";
     public static final String HUMAN_DNA = "count_human_dna";
@@ -9,6 +17,7 @@ public class Statistics {
     @Id
     private String id;
     private String name;
+    private Integer shard;
     private Long amount;
 
     public Statistics() {}
@@ -18,6 +27,12 @@ public class Statistics {
         this.amount = amount;
     }
 
+    public Statistics(String name, Integer shard, Long amount) {
+        this.name = name;
+        this.shard = shard;
+        this.amount = amount;
+    }
+
     public String getId() {
         return id;
     }
@@ -34,6 +49,14 @@ public class Statistics {
         this.name = name;
     }
 
+    public Integer getShard() {
+        return shard;
+    }
+
+    public void setShard(Integer shard) {
+        this.shard = shard;
+    }
+
     public Long getAmount() {
         return amount;
     }
@@ -0,0 +1,241 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.ReplayProcessor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static meli.magneto.mutantfinder.Statistics.HUMAN_DNA;
+import static meli.magneto.mutantfinder.Statistics.MUTANT_DNA;
+
+/**
+ * Keeps the mutant/human counters in memory and sends the accumulated deltas to the {@link StatisticsStore}
+ * in the background. Requests only touch a {@link LongAdder}.
+ * <p>
+ * The totals of the store, which may include the counts of other instances, are read again after a flush once
+ * they are older than <tt>refresh-interval-ms</tt>.
+ * <p>
+ * Every recorded batch and every flush that moves a count publishes a new {@link StatisticsResponse}, so
+ * reading the statistics is a volatile read and subscribers are pushed each change.
+ */
+@Component
+public class StatisticsAggregator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsAggregator.class);
+
+    private final StatisticsStore statisticsStore;
+    private final long flushIntervalMs;
+    private final long flushBatchSize;
+    private final long refreshIntervalMs;
+    private final Timer flushTimer;
+    private final Timer refreshTimer;
+    private long refreshedAt;
+
+    private final Counter mutants = new Counter(MUTANT_DNA);
+    private final Counter humans = new Counter(HUMAN_DNA);
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object publishLock = new Object();
+    private volatile StatisticsResponse snapshot = new StatisticsResponse(0L, 0L, 0L);
+    private final ReplayProcessor<StatisticsResponse> snapshots = ReplayProcessor.cacheLastOrDefault(snapshot);
+    private final FluxSink<StatisticsResponse> snapshotSink = snapshots.sink();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "statistics-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StatisticsAggregator(StatisticsStore statisticsStore,
+                                @Value("${mutant-finder.stats.flush-interval-ms:1000}") long flushIntervalMs,
+                                @Value("${mutant-finder.stats.flush-batch-size:1000}") long flushBatchSize,
+                                @Value("${mutant-finder.stats.refresh-interval-ms:1000}") long refreshIntervalMs,
+                                MeterRegistry meterRegistry) {
+        this.statisticsStore = statisticsStore;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushBatchSize = flushBatchSize;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.flushTimer = Timer.builder("dna.stats.flush")
+                .description("Time spent sending the pending statistics to the store")
+                .register(meterRegistry);
+        this.refreshTimer = Timer.builder("dna.stats.refresh")
+                .description("Time spent reading the totals of the statistics")
+                .register(meterRegistry);
+        Gauge.builder("dna.stats.pending", this, StatisticsAggregator::pendingCount)
+                .description("Counted dna not sent to the store yet")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Everything touching the store runs on the flusher, so starting never waits for it to be up
+     */
+    @PostConstruct
+    public void start() {
+        flusher.execute(statisticsStore::prepare);
+        flusher.scheduleWithFixedDelay(this::flushQuietly, 0, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drains whatever is still pending before the application goes down
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(flushIntervalMs * 2, TimeUnit.MILLISECONDS);
+        flushQuietly();
+    }
+
+    public void record(boolean isMutant, long amount) {
+        (isMutant ? mutants : humans).pending.add(amount);
+        publish();
+        if (pendingCount() >= flushBatchSize && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * @return the latest snapshot, without touching the store
+     */
+    public StatisticsResponse getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the latest snapshot followed by every new one
+     */
+    public Flux<StatisticsResponse> snapshots() {
+        return snapshots;
+    }
+
+    public long getMutantCount() {
+        return mutants.count();
+    }
+
+    public long getHumanCount() {
+        return humans.count();
+    }
+
+    long pendingCount() {
+        return mutants.unflushed() + humans.unflushed();
+    }
+
+    synchronized void flush() {
+        flushRequested.set(false);
+        flushTimer.record(() -> {
+            // both run, the second one is not held by a first one with nothing to flush
+            if (mutants.flush() | humans.flush()) {
+                statisticsStore.sync();
+            }
+        });
+        long now = System.currentTimeMillis();
+        if (refreshedAt == 0L || now - refreshedAt >= refreshIntervalMs) {
+            refreshTimer.record(this::refresh);
+            refreshedAt = now;
+        }
+        // other instances may have moved the persisted amounts forward
+        publish();
+    }
+
+    /**
+     * Reads the totals of both counters at once. Runs while flushes are held, so the totals include exactly what
+     * this instance flushed so far.
+     */
+    private void refresh() {
+        long mutantsFlushed = mutants.flushed;
+        long humansFlushed = humans.flushed;
+        Map<String, Long> totals = statisticsStore.totals();
+        mutants.base = new Base(totals.getOrDefault(MUTANT_DNA, 0L), mutantsFlushed);
+        humans.base = new Base(totals.getOrDefault(HUMAN_DNA, 0L), humansFlushed);
+    }
+
+    /**
+     * Replaces the snapshot when a count moved, the version going up by one. Uses its own lock, so recording
+     * never waits for a flush talking to the store.
+     */
+    private void publish() {
+        synchronized (publishLock) {
+            long mutantCount = mutants.count();
+            long humanCount = humans.count();
+            StatisticsResponse current = snapshot;
+            if (mutantCount == current.getCountMutantDna() && humanCount == current.getCountHumanDna()) {
+                return;
+            }
+            snapshot = new StatisticsResponse(current.getVersion() + 1, mutantCount, humanCount);
+            snapshotSink.next(snapshot);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // deltas stay pending and are retried on the next run
+            LOGGER.warn("Could not flush statistics", e);
+        }
+    }
+
+    /**
+     * One statistic. The adder is never reset: what was already sent is tracked apart from it,
+     * so increments racing with a flush are never lost.
+     */
+    private class Counter {
+        private final String name;
+        private final LongAdder pending = new LongAdder();
+        private volatile long flushed;
+        private volatile Base base;
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        long count() {
+            Base current = base;
+            long persisted = current == null ? 0L : current.persisted;
+            long flushed = current == null ? 0L : current.flushed;
+            return persisted + pending.sum() - flushed;
+        }
+
+        long unflushed() {
+            return pending.sum() - flushed;
+        }
+
+        /**
+         * @return whether anything was incremented
+         */
+        boolean flush() {
+            long total = pending.sum();
+            long delta = total - flushed;
+            if (delta == 0L) {
+                return false;
+            }
+            statisticsStore.increment(name, delta);
+            flushed = total;
+            return true;
+        }
+    }
+
+    /**
+     * Persisted amount together with how much of the local adder it already includes
+     */
+    private static class Base {
+        private final long persisted;
+        private final long flushed;
+
+        Base(long persisted, long flushed) {
+            this.persisted = persisted;
+            this.flushed = flushed;
+        }
+    }
+}
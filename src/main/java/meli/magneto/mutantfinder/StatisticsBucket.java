@@ -0,0 +1,89 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * Mutant and human counts of one minute, hour or day. The <tt>_id</tt> is made of the granularity and the
+ * start, so every instance increments or replaces the same document. Buckets with an <tt>expireAt</tt> are
+ * dropped by MongoDB once it is past.
+ */
+@Document(collection = "statistics_buckets")
+@CompoundIndex(name = "granularity_start", def = "{'granularity': 1, 'start': 1}")
+public class StatisticsBucket {
+
+    @Id
+    private String id;
+    private String granularity;
+    private Date start;
+    private long mutants;
+    private long humans;
+    @Indexed(expireAfterSeconds = 0)
+    private Date expireAt;
+
+    public StatisticsBucket() {}
+
+    public StatisticsBucket(Granularity granularity, long start, long mutants, long humans) {
+        this.id = id(granularity, start);
+        this.granularity = granularity.name();
+        this.start = new Date(start);
+        this.mutants = mutants;
+        this.humans = humans;
+    }
+
+    public static String id(Granularity granularity, long start) {
+        return granularity.name() + ":" + start;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(String granularity) {
+        this.granularity = granularity;
+    }
+
+    public Date getStart() {
+        return start;
+    }
+
+    public void setStart(Date start) {
+        this.start = start;
+    }
+
+    public long getMutants() {
+        return mutants;
+    }
+
+    public void setMutants(long mutants) {
+        this.mutants = mutants;
+    }
+
+    public long getHumans() {
+        return humans;
+    }
+
+    public void setHumans(long humans) {
+        this.humans = humans;
+    }
+
+    public Date getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(Date expireAt) {
+        this.expireAt = expireAt;
+    }
+}
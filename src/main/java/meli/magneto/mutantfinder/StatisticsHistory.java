@@ -0,0 +1,257 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static meli.magneto.mutantfinder.Granularity.DAY;
+import static meli.magneto.mutantfinder.Granularity.HOUR;
+import static meli.magneto.mutantfinder.Granularity.MINUTE;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Counts the recorded dna per minute in memory and sends each minute to MongoDB as one <tt>$inc</tt> upsert
+ * of its {@link StatisticsBucket} per flush. Compaction rebuilds the hours from their minutes and the days from
+ * their hours, replacing them with <tt>$set</tt>, so any number of instances may run it. Every run starts from
+ * the last hour and day a previous run left open, kept in <tt>COMPACTED</tt> marker buckets, so it catches up
+ * after the application was down as far back as the minutes and hours are kept. Minutes and hours expire after
+ * their retention while days are kept.
+ * <p>
+ * History queries read a single granularity over the <tt>(granularity, start)</tt> index, and are limited to
+ * <tt>max-buckets</tt> buckets, so their cost does not grow with the age of the data.
+ */
+@Component
+@ConditionalOnProperty(name = "mutant-finder.stats.store", havingValue = "mongo", matchIfMissing = true)
+public class StatisticsHistory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsHistory.class);
+
+    private final MongoOperations mongoOperations;
+    private final long flushIntervalMs;
+    private final long compactionIntervalMs;
+    private final long minuteRetentionMs;
+    private final long hourRetentionMs;
+    private final int maxBuckets;
+    private final Clock clock;
+    private final Timer flushTimer;
+    private final Timer compactionTimer;
+
+    private final ConcurrentMap<Long, Tally> minutes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "statistics-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public StatisticsHistory(MongoOperations mongoOperations,
+                             @Value("${mutant-finder.history.flush-interval-ms:1000}") long flushIntervalMs,
+                             @Value("${mutant-finder.history.compaction-interval-ms:60000}") long compactionIntervalMs,
+                             @Value("${mutant-finder.history.minute-retention-hours:48}") int minuteRetentionHours,
+                             @Value("${mutant-finder.history.hour-retention-days:400}") int hourRetentionDays,
+                             @Value("${mutant-finder.history.max-buckets:1440}") int maxBuckets,
+                             MeterRegistry meterRegistry) {
+        this(mongoOperations, flushIntervalMs, compactionIntervalMs, minuteRetentionHours, hourRetentionDays,
+                maxBuckets, meterRegistry, Clock.systemUTC());
+    }
+
+    StatisticsHistory(MongoOperations mongoOperations, long flushIntervalMs, long compactionIntervalMs,
+                      int minuteRetentionHours, int hourRetentionDays, int maxBuckets, MeterRegistry meterRegistry,
+                      Clock clock) {
+        // compaction rebuilds the last two hours and the last two days on every run, from minutes and hours
+        if (minuteRetentionHours < 2 || hourRetentionDays < 2) {
+            throw new IllegalArgumentException("Minutes and hours must be kept at least two hours and two days");
+        }
+        this.mongoOperations = mongoOperations;
+        this.flushIntervalMs = flushIntervalMs;
+        this.compactionIntervalMs = compactionIntervalMs;
+        this.minuteRetentionMs = TimeUnit.HOURS.toMillis(minuteRetentionHours);
+        this.hourRetentionMs = TimeUnit.DAYS.toMillis(hourRetentionDays);
+        this.maxBuckets = maxBuckets;
+        this.clock = clock;
+        this.flushTimer = Timer.builder("dna.history.flush")
+                .description("Time spent sending the counts of the last minutes to MongoDB")
+                .register(meterRegistry);
+        this.compactionTimer = Timer.builder("dna.history.compaction")
+                .description("Time spent rolling minutes up into hours and hours into days")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMs, compactionIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the minutes still pending before the application goes down, compaction catches up on next start as
+     * long as it is within <tt>minute-retention-hours</tt>
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(flushIntervalMs * 2, TimeUnit.MILLISECONDS);
+        flushQuietly();
+    }
+
+    public void record(long mutants, long humans) {
+        Tally tally = minutes.computeIfAbsent(MINUTE.truncate(clock.millis()), minute -> new Tally());
+        tally.mutants.add(mutants);
+        tally.humans.add(humans);
+    }
+
+    /**
+     * @return the buckets of the given granularity starting in <tt>[from, to)</tt>, oldest first. Buckets
+     * without any dna are missing.
+     * @throws BadInputException if the range is empty or spans more than <tt>max-buckets</tt> buckets
+     */
+    public List<StatisticsBucket> find(Granularity granularity, long from, long to) {
+        if (from >= to) {
+            throw new BadInputException("The start of the range must be before its end");
+        }
+        long start = granularity.truncate(from);
+        if ((to - start - 1) / granularity.millis() >= maxBuckets) {
+            throw new BadInputException("The range spans more than " + maxBuckets + " buckets, use a wider granularity");
+        }
+        return mongoOperations.find(query(where("granularity").is(granularity.name())
+                .and("start").gte(new Date(start)).lt(new Date(to))).with(Sort.by("start")), StatisticsBucket.class);
+    }
+
+    int pendingMinutes() {
+        return minutes.size();
+    }
+
+    synchronized void flush() {
+        long currentMinute = MINUTE.truncate(clock.millis());
+        for (Iterator<Map.Entry<Long, Tally>> it = minutes.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Tally> entry = it.next();
+            entry.getValue().flush(entry.getKey());
+            // a recording thread holding an older minute had a whole minute to add to it
+            if (entry.getKey() < currentMinute - MINUTE.millis()) {
+                it.remove();
+            }
+        }
+    }
+
+    void compact() {
+        long now = clock.millis();
+        compactionTimer.record(() -> {
+            rollUp(MINUTE, HOUR, now, minuteRetentionMs, hourRetentionMs);
+            rollUp(HOUR, DAY, now, hourRetentionMs, 0L);
+        });
+    }
+
+    /**
+     * Replaces every bucket of the target granularity from the one the last run left open on with the sum of its
+     * source buckets, then leaves the previous target bucket open, as late flushes may still add to it. The first
+     * run ever only rebuilds the last two target buckets.
+     *
+     * @param sourceRetentionMs how long the source buckets are kept
+     * @param retentionMs how long the target buckets are kept, 0 to keep them forever
+     */
+    private void rollUp(Granularity source, Granularity target, long now, long sourceRetentionMs, long retentionMs) {
+        long open = target.truncate(now) - target.millis();
+        // a target bucket whose first sources expired would be replaced with only a part of its counts
+        long oldest = target.truncate(now - sourceRetentionMs) + target.millis();
+        StatisticsBucket compacted = mongoOperations.findById(compactedId(target), StatisticsBucket.class);
+        long since = compacted != null ? Math.max(Math.min(compacted.getStart().getTime(), open), oldest) : open;
+        List<StatisticsBucket> buckets = mongoOperations.find(query(where("granularity").is(source.name())
+                .and("start").gte(new Date(since))), StatisticsBucket.class);
+        Map<Long, long[]> totals = new TreeMap<>();
+        for (StatisticsBucket bucket : buckets) {
+            long[] total = totals.computeIfAbsent(target.truncate(bucket.getStart().getTime()), start -> new long[2]);
+            total[0] += bucket.getMutants();
+            total[1] += bucket.getHumans();
+        }
+        for (Map.Entry<Long, long[]> entry : totals.entrySet()) {
+            long start = entry.getKey();
+            Update update = new Update()
+                    .set("granularity", target.name())
+                    .set("start", new Date(start))
+                    .set("mutants", entry.getValue()[0])
+                    .set("humans", entry.getValue()[1]);
+            if (retentionMs > 0L) {
+                update.set("expireAt", new Date(start + retentionMs));
+            }
+            mongoOperations.upsert(query(where("_id").is(StatisticsBucket.id(target, start))), update,
+                    StatisticsBucket.class);
+        }
+        // the marker has no granularity, no query for buckets ever reads it
+        mongoOperations.upsert(query(where("_id").is(compactedId(target))),
+                new Update().max("start", new Date(open)), StatisticsBucket.class);
+    }
+
+    private static String compactedId(Granularity target) {
+        return "COMPACTED:" + target.name();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // minutes stay pending and are retried on the next run
+            LOGGER.warn("Could not flush statistics history", e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not compact statistics history", e);
+        }
+    }
+
+    /**
+     * Counts of one minute. Like the statistics counters, the adders are never reset and what was already
+     * sent is tracked apart from them.
+     */
+    private class Tally {
+        private final LongAdder mutants = new LongAdder();
+        private final LongAdder humans = new LongAdder();
+        private long flushedMutants;
+        private long flushedHumans;
+
+        void flush(long minute) {
+            long mutantCount = mutants.sum();
+            long humanCount = humans.sum();
+            if (mutantCount == flushedMutants && humanCount == flushedHumans) {
+                return;
+            }
+            flushTimer.record(() -> mongoOperations.upsert(query(where("_id").is(StatisticsBucket.id(MINUTE, minute))),
+                    new Update()
+                            .inc("mutants", mutantCount - flushedMutants)
+                            .inc("humans", humanCount - flushedHumans)
+                            .setOnInsert("granularity", MINUTE.name())
+                            .setOnInsert("start", new Date(minute))
+                            .setOnInsert("expireAt", new Date(minute + minuteRetentionMs)),
+                    StatisticsBucket.class));
+            flushedMutants = mutantCount;
+            flushedHumans = humanCount;
+        }
+    }
+}
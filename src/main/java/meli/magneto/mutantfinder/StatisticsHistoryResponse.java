@@ -0,0 +1,76 @@
+package meli.magneto.mutantfinder;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Buckets of one granularity over a range, only those with any dna in them
+ */
+public final class StatisticsHistoryResponse {
+
+    private final String granularity;
+    private final Date from;
+    private final Date to;
+    private final List<Bucket> buckets;
+
+    public StatisticsHistoryResponse(Granularity granularity, Date from, Date to, List<StatisticsBucket> buckets) {
+        this.granularity = granularity.name().toLowerCase();
+        this.from = from;
+        this.to = to;
+        this.buckets = buckets.stream().map(Bucket::new).collect(Collectors.toList());
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    public static final class Bucket {
+        private final Date start;
+
+        @JsonProperty("count_mutant_dna")
+        private final long countMutantDna;
+
+        @JsonProperty("count_human_dna")
+        private final long countHumanDna;
+
+        private final Double ratio;
+
+        Bucket(StatisticsBucket bucket) {
+            this.start = bucket.getStart();
+            this.countMutantDna = bucket.getMutants();
+            this.countHumanDna = bucket.getHumans();
+            this.ratio = StatisticsResponse.ratio(countMutantDna, countHumanDna);
+        }
+
+        public Date getStart() {
+            return start;
+        }
+
+        public long getCountMutantDna() {
+            return countMutantDna;
+        }
+
+        public long getCountHumanDna() {
+            return countHumanDna;
+        }
+
+        public Double getRatio() {
+            return ratio;
+        }
+    }
+}
@@ -1,38 +1,60 @@
 package meli.magneto.mutantfinder;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-public class StatisticsResponse {
+/**
+ * Immutable snapshot of the statistics, replaced as a whole every time a count changes
+ */
+public final class StatisticsResponse {
+
+    @JsonIgnore
+    private final long version;
 
     @JsonProperty("count_mutant_dna")
-    private Long countMutantDna;
+    private final Long countMutantDna;
 
     @JsonProperty("count_human_dna")
-    private Long countHumanDna;
+    private final Long countHumanDna;
 
-    private Double ratio;
+    private final Double ratio;
 
-    public Long getCountMutantDna() {
-        return countMutantDna;
+    /**
+     * @param version number of snapshots taken before this one by this instance
+     */
+    public StatisticsResponse(long version, long countMutantDna, long countHumanDna) {
+        this.version = version;
+        this.countMutantDna = countMutantDna;
+        this.countHumanDna = countHumanDna;
+        this.ratio = ratio(countMutantDna, countHumanDna);
     }
 
-    public void setCountMutantDna(Long countMutantDna) {
-        this.countMutantDna = countMutantDna;
+    static Double ratio(long countMutantDna, long countHumanDna) {
+        // ratio only make sense when both numbers are non-zero
+        return countMutantDna > 0L && countHumanDna > 0L ? (double) countMutantDna / countHumanDna : null;
     }
 
-    public Long getCountHumanDna() {
-        return countHumanDna;
+    public long getVersion() {
+        return version;
     }
 
-    public void setCountHumanDna(Long countHumanDna) {
-        this.countHumanDna = countHumanDna;
+    /**
+     * @return strong entity tag made of the counts, so it matches across instances and restarts
+     */
+    @JsonIgnore
+    public String getETag() {
+        return "\"" + countMutantDna + "-" + countHumanDna + "\"";
     }
 
-    public Double getRatio() {
-        return ratio;
+    public Long getCountMutantDna() {
+        return countMutantDna;
     }
 
-    public void setRatio(Double ratio) {
-        this.ratio = ratio;
+    public Long getCountHumanDna() {
+        return countHumanDna;
+    }
+
+    public Double getRatio() {
+        return ratio;
     }
 }
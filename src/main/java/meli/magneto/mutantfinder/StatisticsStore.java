@@ -0,0 +1,50 @@
+package meli.magneto.mutantfinder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Where the statistics live: the distinct dna already counted and the counters themselves. It is only called
+ * from the background writers, {@link DnaRecordWriter} and {@link StatisticsAggregator}, never from a request.
+ * <p>
+ * The one in use is picked with <tt>mutant-finder.stats.store</tt>: <tt>mongo</tt> (the default, shared by
+ * every instance), <tt>memory</tt> (lost on restart) or <tt>file</tt> (a memory-mapped log on local disk).
+ */
+public interface StatisticsStore {
+
+    /**
+     * Runs once on the statistics flusher before anything else, for work that must not hold the start of the
+     * application
+     */
+    default void prepare() {
+    }
+
+    /**
+     * Stores the given dna, skipping the ones already stored by anyone sharing the store
+     *
+     * @param records hash and verdict of each dna, all distinct
+     * @param retry   gets the records that could not be stored while the rest of them were
+     * @return the records that were not stored before, to be counted
+     * @throws RuntimeException if none could be stored, all of them are to be retried then
+     */
+    List<Map.Entry<DnaHash, Boolean>> insert(List<Map.Entry<DnaHash, Boolean>> records,
+                                             Consumer<Map.Entry<DnaHash, Boolean>> retry);
+
+    /**
+     * Adds to the share of a counter written by this instance
+     */
+    void increment(String name, long amount);
+
+    /**
+     * Makes the increments written so far survive a crash, called once after the counters of a flush were
+     * incremented
+     */
+    default void sync() {
+    }
+
+    /**
+     * @return the amount of every counter over everyone sharing the store, by name
+     */
+    Map<String, Long> totals();
+}
@@ -0,0 +1,136 @@
+package meli.magneto.mutantfinder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verdicts of already classified DNAs, keyed by their {@link DnaHash}. The first tier is a bounded
+ * in-memory cache; the optional second tier reads the {@link DnaRecord} collection, shared by every
+ * instance and kept across restarts. A verdict never changes, so second tier entries don't expire.
+ */
+@Component
+public class VerdictCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VerdictCache.class);
+
+    private final Cache<DnaHash, Boolean> cache;
+    private final DnaRecordRepository dnaRecordRepository;
+    private final ReactiveDnaRecordRepository reactiveDnaRecordRepository;
+    private final boolean mongoEnabled;
+    private final LongAdder mongoHits = new LongAdder();
+    private final LongAdder mongoMisses = new LongAdder();
+
+    /**
+     * The repositories are only resolved once the second tier is first read, so they don't hold up startup
+     */
+    public VerdictCache(@Lazy DnaRecordRepository dnaRecordRepository,
+                        @Lazy ReactiveDnaRecordRepository reactiveDnaRecordRepository,
+                        @Value("${mutant-finder.cache.maximum-size:100000}") long maximumSize,
+                        @Value("${mutant-finder.cache.expire-after-ms:3600000}") long expireAfterMs,
+                        @Value("${mutant-finder.cache.mongo.enabled:false}") boolean mongoEnabled,
+                        MeterRegistry meterRegistry) {
+        this.dnaRecordRepository = dnaRecordRepository;
+        this.reactiveDnaRecordRepository = reactiveDnaRecordRepository;
+        this.mongoEnabled = mongoEnabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "verdicts");
+        // same meter as the first tier, told apart by the cache tag
+        FunctionCounter.builder("cache.gets", mongoHits, LongAdder::sum)
+                .tags("cache", "verdicts-mongo", "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", mongoMisses, LongAdder::sum)
+                .tags("cache", "verdicts-mongo", "result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the verdict or <tt>null</tt> when the dna was not classified yet
+     */
+    public Boolean get(DnaHash hash) {
+        Boolean verdict = cache.getIfPresent(hash);
+        if (verdict != null || !mongoEnabled) {
+            return verdict;
+        }
+        try {
+            Optional<DnaRecord> stored = dnaRecordRepository.findById(hash.toString());
+            if (stored.isPresent()) {
+                mongoHits.increment();
+                verdict = stored.get().isMutant();
+                cache.put(hash, verdict);
+                return verdict;
+            }
+            mongoMisses.increment();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not read cached verdict", e);
+        }
+        return null;
+    }
+
+    /**
+     * Non-blocking {@link #get(DnaHash)}, the second tier is read with the reactive driver
+     * @return the verdict, or empty when the dna was not classified yet
+     */
+    public Mono<Boolean> find(DnaHash hash) {
+        Boolean verdict = cache.getIfPresent(hash);
+        if (verdict != null) {
+            return Mono.just(verdict);
+        }
+        if (!mongoEnabled) {
+            return Mono.empty();
+        }
+        return reactiveDnaRecordRepository.findById(hash.toString())
+                .map(stored -> {
+                    mongoHits.increment();
+                    cache.put(hash, stored.isMutant());
+                    return stored.isMutant();
+                })
+                .switchIfEmpty(Mono.fromRunnable(mongoMisses::increment))
+                .onErrorResume(e -> {
+                    LOGGER.warn("Could not read cached verdict", e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Only the in-memory tier is written, the second tier is filled by the {@link DnaRecordWriter}
+     */
+    public void put(DnaHash hash, boolean isMutant) {
+        cache.put(hash, isMutant);
+    }
+
+    /**
+     * @return hit/miss counters of the in-memory tier
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long getMongoHitCount() {
+        return mongoHits.sum();
+    }
+
+    public long getMongoMissCount() {
+        return mongoMisses.sum();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+}
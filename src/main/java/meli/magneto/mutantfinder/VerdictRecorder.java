@@ -0,0 +1,72 @@
+package meli.magneto.mutantfinder;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * What both services do with a verdict around its detection, none of which blocks: a dna classified before is
+ * answered from the {@link VerdictCache} and published as cached, a dna just detected is cached, published and
+ * recorded once per distinct dna by the {@link DnaRecordWriter}.
+ */
+@Component
+public class VerdictRecorder {
+    private final VerdictCache verdictCache;
+    private final ClassificationEventLog classificationEvents;
+    private final DnaRecordWriter dnaRecordWriter;
+
+    public VerdictRecorder(VerdictCache verdictCache, ClassificationEventLog classificationEvents,
+                           DnaRecordWriter dnaRecordWriter) {
+        this.verdictCache = verdictCache;
+        this.classificationEvents = classificationEvents;
+        this.dnaRecordWriter = dnaRecordWriter;
+    }
+
+    /**
+     * @return the verdict of a dna classified before, published as such, or <tt>null</tt>
+     */
+    public Boolean cached(DnaHash hash) {
+        Boolean cached = hash != null ? verdictCache.get(hash) : null;
+        if (cached != null) {
+            classificationEvents.publishCached(hash, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Like {@link #cached(DnaHash)}, reading the second tier with the reactive driver
+     *
+     * @return the verdict of a dna classified before, published as such, or empty
+     */
+    public Mono<Boolean> find(DnaHash hash) {
+        return verdictCache.find(hash).doOnNext(cached -> classificationEvents.publishCached(hash, cached));
+    }
+
+    /**
+     * Caches and publishes the verdict of a dna just detected, it is left to the caller to record it
+     */
+    public boolean classified(DnaHash hash, Direction direction) {
+        boolean isMutant = direction != null;
+        verdictCache.put(hash, isMutant);
+        classificationEvents.publish(hash, direction);
+        return isMutant;
+    }
+
+    /**
+     * Caches, publishes and records the verdict of a dna just detected
+     */
+    public boolean recorded(DnaHash hash, Direction direction) {
+        boolean isMutant = classified(hash, direction);
+        // one record per distinct dna, written in the background and counted once inserted
+        dnaRecordWriter.record(hash, isMutant);
+        return isMutant;
+    }
+
+    /**
+     * Records the verdicts of a batch of dna classified with {@link #classified(DnaHash, Direction)}
+     */
+    public void recordAll(Map<DnaHash, Boolean> verdicts) {
+        dnaRecordWriter.recordAll(verdicts);
+    }
+}
@@ -0,0 +1,63 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static meli.magneto.mutantfinder.RunLengthDetectorTest.noRunMatrix;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AdaptiveDetectorTest {
+
+    private final AdaptiveDetector fixture = new AdaptiveDetector(4, 1, 64, 1000, 256, 1);
+
+    @After
+    public void stop() {
+        fixture.stop();
+    }
+
+    @Test
+    public void givenSizeWhenPickingEngineThenItDependsOnTheThresholds() {
+        assertSame(fixture.getScanner(), fixture.engineFor(6));
+        assertSame(fixture.getScanner(), fixture.engineFor(63));
+        assertSame(fixture.getBitboard(), fixture.engineFor(64));
+        assertSame(fixture.getBitboard(), fixture.engineFor(999));
+        assertSame(fixture.getParallel(), fixture.engineFor(1000));
+    }
+
+    @Test
+    public void givenNewThresholdsWhenPickingEngineThenTheyApply() {
+        fixture.setThresholds(Integer.MAX_VALUE, 32);
+
+        assertSame(fixture.getScanner(), fixture.engineFor(31));
+        assertSame(fixture.getParallel(), fixture.engineFor(32));
+        assertEquals(Integer.MAX_VALUE, fixture.getBitboardThreshold());
+        assertEquals(32, fixture.getParallelThreshold());
+    }
+
+    @Test
+    public void givenSequenceLongerThanAWordWhenPickingEngineThenBitboardIsSkipped() {
+        AdaptiveDetector longSequences = new AdaptiveDetector(65, 1, 64, 1000, 256, 1);
+        try {
+            assertNull(longSequences.getBitboard());
+            assertSame(longSequences.getScanner(), longSequences.engineFor(100));
+            assertEquals(2, longSequences.engines().size());
+        } finally {
+            longSequences.stop();
+        }
+    }
+
+    @Test
+    public void givenAnySizeWhenDetectingThenEveryEngineAgrees() {
+        String[] dna = noRunMatrix(80);
+        assertFalse(fixture.isMutant(DnaMatrix.of(dna)));
+        dna[70] = "cccc" + dna[70].substring(4);
+        DnaMatrix matrix = DnaMatrix.of(dna);
+        for (DnaDetector engine : fixture.engines()) {
+            assertEquals(engine.getClass().getSimpleName(), Direction.HORIZONTAL, engine.find(matrix));
+        }
+        assertEquals(Direction.HORIZONTAL, fixture.find(matrix));
+    }
+}
@@ -0,0 +1,186 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionControlTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // one permit and one waiting slot per lane, matrices from 100 on are large, 1 KB of buffers being read
+    private final AdmissionControl fixture = new AdmissionControl(1000, 1, 1, 200L, 100, 1, 1, 1024L, meterRegistry);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final Scheduler scheduler = Schedulers.newSingle("detection");
+
+    @After
+    public void stop() {
+        release.countDown();
+        executor.shutdownNow();
+        scheduler.dispose();
+    }
+
+    @Test(expected = PayloadTooLargeException.class)
+    public void givenDnaOverMaxSizeWhenCheckingSizeThenExceptionIsThrown() {
+        fixture.checkSize(1001);
+    }
+
+    @Test
+    public void givenBufferBudgetHeldWhenReservingThenDnaIsTurnedAwayUntilItIsGivenBack() {
+        // alone, a dna goes through whatever its size
+        long large = fixture.reserve(100);
+        assertEquals(2504L, large);
+        try {
+            fixture.reserve(10);
+            fail();
+        } catch (ResponseStatusException e) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+        }
+        fixture.release(large);
+        assertEquals(32L, fixture.reserve(10));
+        assertEquals(32L, fixture.getBufferedBytes());
+        assertEquals(1.0d, meterRegistry.get("dna.admission.rejects").tag("lane", "read")
+                .tag("reason", "buffer_full").counter().count(), 0d);
+    }
+
+    @Test
+    public void givenFreePermitWhenDetectingThenDetectionRuns() {
+        fixture.checkSize(1000);
+        assertEquals("done", fixture.detect(10, () -> "done"));
+        assertEquals("done", fixture.detect(10, () -> "done"));
+    }
+
+    @Test
+    public void givenBusyLaneWhenDetectingThenWaitingTimesOutAndFullQueueIsShed() throws Exception {
+        hold(10);
+        CountDownLatch waiting = new CountDownLatch(1);
+        executor.submit(() -> {
+            waiting.countDown();
+            return fixture.detect(10, () -> "late");
+        });
+        waiting.await();
+        // the only waiting slot is taken
+        Thread.sleep(50L);
+        assertRejected(10, HttpStatus.TOO_MANY_REQUESTS);
+        Thread.sleep(250L);
+        assertRejected(10, HttpStatus.SERVICE_UNAVAILABLE);
+        assertEquals(1.0d, meterRegistry.get("dna.admission.rejects").tag("lane", "normal")
+                .tag("reason", "queue_full").counter().count(), 0d);
+    }
+
+    @Test
+    public void givenBusyLargeLaneWhenDetectingNormalDnaThenItIsNotHeldBack() throws Exception {
+        hold(100);
+        assertEquals("normal", fixture.detect(99, () -> "normal"));
+        assertRejected(100, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    public void givenBusyLaneWhenDetectingWithoutBlockingThenTheSchedulerIsFreeWhileWaiting() throws Exception {
+        hold(10);
+        Mono<String> waiting = fixture.detect(10, () -> "late", scheduler);
+        CountDownLatch rejected = new CountDownLatch(1);
+        waiting.subscribe(result -> fail(), e -> {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) e).getStatus());
+            rejected.countDown();
+        });
+
+        // the only thread of the scheduler runs other work meanwhile
+        assertEquals("other", Mono.fromSupplier(() -> "other").subscribeOn(scheduler).block());
+        assertRejected(10, HttpStatus.TOO_MANY_REQUESTS);
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givenPermitFreedWhileWaitingWhenDetectingWithoutBlockingThenDetectionRuns() throws Exception {
+        hold(100);
+        Mono<String> waiting = fixture.detect(100, () -> "admitted", scheduler);
+        executor.submit(() -> {
+            Thread.sleep(50L);
+            release.countDown();
+            return null;
+        });
+
+        assertEquals("admitted", waiting.block());
+    }
+
+    @Test
+    public void givenBusyLaneWhenAcquiringWithoutBlockingThenThePermitIsTakenOnceFreed() throws Exception {
+        Runnable release = fixture.acquire(100, scheduler).block();
+        Mono<Runnable> waiting = fixture.acquire(100, scheduler);
+        executor.submit(() -> {
+            Thread.sleep(50L);
+            release.run();
+            return null;
+        });
+
+        waiting.block().run();
+        assertEquals("admitted", fixture.detect(100, () -> "admitted"));
+    }
+
+    @Test
+    public void givenSeveralWaitingWhenPermitIsFreedThenTheyAreAdmittedInOrder() throws Exception {
+        AdmissionControl fixture = new AdmissionControl(1000, 1, 3, 5000L, 100, 1, 1, 1024L, meterRegistry);
+        Runnable release = fixture.acquire(10, scheduler).block();
+        List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        for (String name : new String[]{"first", "second", "third"}) {
+            fixture.detect(10, () -> admitted.add(name), scheduler).subscribe(added -> done.countDown());
+            // queued once the scheduler ran its subscription
+            Mono.empty().subscribeOn(scheduler).block();
+        }
+        assertTrue(admitted.isEmpty());
+
+        release.run();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("first", "second", "third"), admitted);
+    }
+
+    /**
+     * Takes the permit of the lane of the given size until the test ends
+     */
+    private void hold(int size) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> fixture.detect(size, () -> {
+            started.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private void assertRejected(int size, HttpStatus status) {
+        try {
+            fixture.detect(size, () -> "admitted");
+            fail("expected " + status);
+        } catch (ResponseStatusException e) {
+            assertEquals(status, e.getStatus());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static meli.magneto.mutantfinder.RunLengthDetectorTest.noRunMatrix;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class BitboardDetectorTest {
+
+    private final BitboardDetector fixture = new BitboardDetector(4, 1);
+
+    @Test
+    public void givenRowsAcrossWordsWhenTakingBitplanesThenEveryColumnHasTheBitsOfItsBase() {
+        // odd sizes make rows start anywhere in a packed byte
+        for (int size : new int[]{63, 67, 130}) {
+            DnaMatrix matrix = DnaMatrix.of(randomMatrix(new Random(size), size));
+            for (int row = 0; row < size; row++) {
+                int words = (size + 63) / 64;
+                long[] planes = new long[1 + 2 * words];
+                matrix.rowBitplanes(row, planes, 1, words);
+                for (int col = 0; col < size; col++) {
+                    long low = planes[1 + col / 64] >>> col & 1;
+                    long high = planes[1 + words + col / 64] >>> col & 1;
+                    assertEquals(row + "," + col, matrix.get(row, col), high << 1 | low);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void givenRunInEachDirectionWhenFindingThenItsDirectionIsReturned() {
+        assertEquals(Direction.HORIZONTAL, fixture.find(DnaMatrix.of(new String[]{"cgtc", "gtcg", "tcgt", "aaaa"})));
+        assertEquals(Direction.VERTICAL, fixture.find(DnaMatrix.of(new String[]{"acgt", "atgc", "agtc", "acga"})));
+        assertEquals(Direction.DIAGONAL, fixture.find(DnaMatrix.of(new String[]{"acgt", "gatc", "tgac", "ctga"})));
+        assertEquals(Direction.ANTI_DIAGONAL, fixture.find(DnaMatrix.of(new String[]{"ctga", "tgac", "gatc", "acgt"})));
+        assertNull(fixture.find(DnaMatrix.of(noRunMatrix(6))));
+    }
+
+    @Test
+    public void givenRunCrossingWordsWhenFindingThenItIsFound() {
+        int size = 130;
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int d = 0; d < directions.length; d++) {
+            for (int col : new int[]{0, 61, 62, 63, 64, 126}) {
+                String[] dna = noRunMatrix(size);
+                int startCol = directions[d][1] < 0 ? col + 3 : col;
+                char base = dna[70].charAt(startCol);
+                for (int i = 1; i < 4; i++) {
+                    char[] chars = dna[70 + directions[d][0] * i].toCharArray();
+                    chars[startCol + directions[d][1] * i] = base;
+                    dna[70 + directions[d][0] * i] = new String(chars);
+                }
+                assertEquals("from column " + startCol, Direction.values()[d], fixture.find(DnaMatrix.of(dna)));
+            }
+        }
+        assertFalse(fixture.isMutant(DnaMatrix.of(noRunMatrix(size))));
+    }
+
+    @Test
+    public void givenRandomMatricesWhenDetectingThenResultMatchesRunLengthDetector() {
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            int size = 4 + random.nextInt(140);
+            int sequenceSize = 2 + random.nextInt(5);
+            DnaMatrix matrix = DnaMatrix.of(sparseRunMatrix(random, size, sequenceSize));
+            for (int minimum = 1; minimum <= 4; minimum++) {
+                assertEquals("size " + size + ", sequence " + sequenceSize + ", minimum " + minimum,
+                        new RunLengthDetector(sequenceSize, minimum).isMutant(matrix),
+                        new BitboardDetector(sequenceSize, minimum).isMutant(matrix));
+            }
+        }
+    }
+
+    @Test
+    public void givenSeveralSequencesRequiredWhenDetectingThenOverlappingOnesAreNotCounted() {
+        BitboardDetector twoSequences = new BitboardDetector(4, 2);
+        String[] sevenBases = noRunMatrix(70);
+        char[] row = sevenBases[5].toCharArray();
+        for (int col = 60; col < 67; col++) {
+            row[col] = 'c';
+        }
+        sevenBases[5] = new String(row);
+        assertFalse(twoSequences.isMutant(DnaMatrix.of(sevenBases)));
+        String[] eightBases = noRunMatrix(8);
+        eightBases[5] = "cccccccc";
+        assertEquals(Direction.HORIZONTAL, twoSequences.find(DnaMatrix.of(eightBases)));
+        DnaMatrix twoDirections = DnaMatrix.of(new String[]{"aaaa", "cgta", "gtca", "tcga"});
+        assertEquals(Direction.VERTICAL, twoSequences.find(twoDirections));
+        assertNull(new BitboardDetector(4, 3).find(twoDirections));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenSequenceLongerThanAWordWhenCreatingThenExceptionIsThrown() {
+        new BitboardDetector(65, 1);
+    }
+
+    static String[] randomMatrix(Random random, int size) {
+        String[] dna = new String[size];
+        char[] row = new char[size];
+        for (int r = 0; r < size; r++) {
+            for (int col = 0; col < size; col++) {
+                row[col] = "acgt".charAt(random.nextInt(4));
+            }
+            dna[r] = new String(row);
+        }
+        return dna;
+    }
+
+    /**
+     * A few random bases over a run free matrix, which gives anything from no sequence to several of them
+     */
+    private static String[] sparseRunMatrix(Random random, int size, int sequenceSize) {
+        String[] dna = noRunMatrix(size);
+        char[][] chars = new char[size][];
+        for (int row = 0; row < size; row++) {
+            chars[row] = dna[row].toCharArray();
+        }
+        for (int j = 0; j < size * sequenceSize / 2; j++) {
+            chars[random.nextInt(size)][random.nextInt(size)] = "acgt".charAt(random.nextInt(4));
+        }
+        for (int row = 0; row < size; row++) {
+            dna[row] = new String(chars[row]);
+        }
+        return dna;
+    }
+}
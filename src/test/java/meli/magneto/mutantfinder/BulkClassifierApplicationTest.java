@@ -0,0 +1,75 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static meli.magneto.mutantfinder.Statistics.HUMAN_DNA;
+import static meli.magneto.mutantfinder.Statistics.MUTANT_DNA;
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkClassifierApplicationTest {
+
+    private final Map.Entry<DnaHash, Boolean> mutant =
+            new AbstractMap.SimpleImmutableEntry<>(DnaHash.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"}), true);
+    private final Map.Entry<DnaHash, Boolean> human =
+            new AbstractMap.SimpleImmutableEntry<>(DnaHash.of(new String[]{"acgt", "gtac", "acgt", "gtac"}), false);
+
+    @Mock
+    private StatisticsStore store;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void givenDnaRecordedBeforeWhenRecordingThenOnlyTheInsertedOnesAreCounted() {
+        when(store.insert(eq(Arrays.asList(mutant, human)), any())).thenReturn(Collections.singletonList(human));
+
+        assertArrayEquals(new long[]{0L, 1L}, BulkClassifierApplication.record(store, Arrays.asList(mutant, human)));
+
+        verify(store).increment(HUMAN_DNA, 1L);
+        verify(store, never()).increment(eq(MUTANT_DNA), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void givenRecordsThatFailedWhenRecordingThenTheyAreInsertedAgain() {
+        List<Map.Entry<DnaHash, Boolean>> both = Arrays.asList(mutant, human);
+        when(store.insert(eq(both), any())).thenAnswer(invocation -> {
+            ((Consumer<Map.Entry<DnaHash, Boolean>>) invocation.getArgument(1)).accept(mutant);
+            return Collections.singletonList(human);
+        });
+        when(store.insert(eq(Collections.singletonList(mutant)), any()))
+                .thenThrow(new IllegalStateException("down"))
+                .thenReturn(Collections.singletonList(mutant));
+
+        assertArrayEquals(new long[]{1L, 1L}, BulkClassifierApplication.record(store, both));
+
+        verify(store, times(2)).increment(anyString(), eq(1L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void givenStoreDownWhenRecordingThenItGivesUpAfterAFewAttempts() {
+        when(store.insert(any(), any())).thenThrow(new IllegalStateException("down"));
+
+        BulkClassifierApplication.record(store, Collections.singletonList(mutant));
+    }
+}
@@ -0,0 +1,127 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BulkClassifierTest {
+
+    private static final String[] MUTANT = {"aaaa", "cgtc", "gtcg", "tcgt"};
+    private static final String[] HUMAN = {"acgt", "gtac", "acgt", "gtac"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AdaptiveDetector detector = new AdaptiveDetector(4, 1, 64, 1000, 256, 1);
+
+    // windows of 629 bytes, the size of a 50 x 50 dna, and chunks of 3 small dna
+    private final BulkClassifier fixture = new BulkClassifier(detector, 2, 20, 50, 0);
+
+    @After
+    public void stop() {
+        detector.stop();
+    }
+
+    @Test
+    public void givenFileSpanningSeveralWindowsWhenClassifyingThenVerdictsAreWrittenInOrder() throws Exception {
+        List<DnaMatrix> dna = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        long mutants = 0L;
+        for (int i = 0; i < 300; i++) {
+            DnaMatrix matrix = i % 50 == 7 ? large(i % 3 == 0) : DnaMatrix.of(i % 3 == 0 ? MUTANT : HUMAN);
+            dna.add(matrix);
+            expected.append("{\"index\":").append(i).append(",\"mutant\":").append(i % 3 == 0).append("}\n");
+            mutants += i % 3 == 0 ? 1 : 0;
+        }
+        Path output = folder.getRoot().toPath().resolve("verdicts.ndjson");
+
+        BulkClassifier.Result result = fixture.classify(write(dna, dna.size()), output);
+
+        assertEquals(expected.toString(), new String(Files.readAllBytes(output), StandardCharsets.US_ASCII));
+        assertEquals(mutants, result.getMutants());
+        assertEquals(300L - mutants, result.getHumans());
+    }
+
+    @Test
+    public void givenFileEndingInTheMiddleOfADnaWhenClassifyingThenTheDnaBeforeItAreWritten() throws Exception {
+        List<DnaMatrix> dna = Arrays.asList(DnaMatrix.of(MUTANT), DnaMatrix.of(HUMAN));
+        Path input = write(dna, 2);
+        byte[] content = Files.readAllBytes(input);
+        Files.write(input, Arrays.copyOf(content, content.length - 1));
+        Path output = folder.getRoot().toPath().resolve("verdicts.ndjson");
+        try {
+            fixture.classify(input, output);
+            fail();
+        } catch (BadInputException e) {
+            assertEquals("File ends in the middle of the dna at byte 8", e.getMessage());
+        }
+        assertEquals("{\"index\":0,\"mutant\":true}\n", new String(Files.readAllBytes(output), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void givenRepeatedDnaWhenRecordingThenEachChunkHasItsDistinctDnaOnce() throws Exception {
+        List<DnaMatrix> dna = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            dna.add(DnaMatrix.of(i % 3 == 0 ? MUTANT : HUMAN));
+        }
+        List<List<Map.Entry<DnaHash, Boolean>>> records = new ArrayList<>();
+
+        fixture.classify(write(dna, dna.size()), folder.getRoot().toPath().resolve("verdicts.ndjson"),
+                records::add);
+
+        // chunks of 3 dna, each holding both
+        assertEquals(10, records.size());
+        for (List<Map.Entry<DnaHash, Boolean>> chunk : records) {
+            assertEquals(Arrays.asList(new AbstractMap.SimpleImmutableEntry<>(DnaHash.of(MUTANT), true),
+                    new AbstractMap.SimpleImmutableEntry<>(DnaHash.of(HUMAN), false)), chunk);
+        }
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenDnaOverMaxSizeWhenClassifyingThenExceptionIsThrown() throws Exception {
+        Path input = folder.newFile("large.dna").toPath();
+        Files.write(input, ByteBuffer.allocate(8).putInt(51).array());
+        fixture.classify(input, folder.getRoot().toPath().resolve("verdicts.ndjson"));
+    }
+
+    private static DnaMatrix large(boolean mutant) {
+        String[] rows = new String[40];
+        for (int row = 0; row < rows.length; row++) {
+            StringBuilder bases = new StringBuilder();
+            for (int col = 0; col < rows.length; col++) {
+                bases.append("acgt".charAt((row * 2 + col) & 3));
+            }
+            rows[row] = bases.toString();
+        }
+        if (mutant) {
+            rows[39] = "tttt" + rows[39].substring(4);
+        }
+        return DnaMatrix.of(rows);
+    }
+
+    private Path write(List<DnaMatrix> dna, int count) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (DnaMatrix matrix : dna.subList(0, count)) {
+            content.write(PackedDnaFormat.write(matrix));
+        }
+        Path input = folder.newFile("archive.dna").toPath();
+        Files.write(input, content.toByteArray());
+        return input;
+    }
+}
@@ -0,0 +1,178 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClassificationEventLogTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ClassificationEvent> written = new CopyOnWriteArrayList<>();
+    private final List<Integer> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final DnaHash mutant = DnaHash.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"});
+    private final DnaHash human = DnaHash.of(new String[]{"acgt", "gtac", "acgt", "gtac"});
+
+    private ClassificationEventLog fixture;
+
+    @After
+    public void stop() throws InterruptedException {
+        release.countDown();
+        fixture.stop();
+    }
+
+    @Test
+    public void givenPublishedEventsWhenConsumedThenTheyAreWrittenInOrder() throws InterruptedException {
+        fixture = start(events -> {
+            batches.add(events.size());
+            written.addAll(events);
+        }, 16, "drop");
+
+        fixture.publish(mutant, Direction.VERTICAL);
+        fixture.publish(human, null);
+        await(() -> written.size() == 2);
+
+        assertEquals(mutant.toString(), written.get(0).getHash());
+        assertTrue(written.get(0).isMutant());
+        assertEquals(Direction.VERTICAL, written.get(0).getDirection());
+        assertEquals(human.toString(), written.get(1).getHash());
+        assertFalse(written.get(1).isMutant());
+        assertNull(written.get(1).getDirection());
+        // the consumer moves past a batch once the sink returned
+        await(() -> fixture.pendingCount() == 0L);
+    }
+
+    @Test
+    public void givenCachedVerdictWhenPublishingThenTheEventIsMarkedCached() throws InterruptedException {
+        fixture = start(written::addAll, 16, "drop");
+
+        fixture.publishCached(mutant, true);
+        await(() -> written.size() == 1);
+
+        assertTrue(written.get(0).isMutant());
+        assertTrue(written.get(0).isCached());
+        assertNull(written.get(0).getDirection());
+    }
+
+    @Test
+    public void givenSlowSinkWhenPublishingThenEventsAreCommittedInBatches() throws InterruptedException {
+        fixture = start(events -> {
+            awaitRelease();
+            batches.add(events.size());
+            written.addAll(events);
+        }, 64, "drop");
+
+        fixture.publish(mutant, Direction.HORIZONTAL);
+        await(() -> fixture.pendingCount() == 1L);
+        for (int i = 0; i < 20; i++) {
+            fixture.publish(human, null);
+        }
+        release.countDown();
+        await(() -> written.size() == 21);
+
+        assertTrue(batches.toString(), batches.size() < 21);
+    }
+
+    @Test
+    public void givenFullBufferWhenDroppingThenEventsOverCapacityAreCounted() throws InterruptedException {
+        fixture = start(events -> {
+            awaitRelease();
+            written.addAll(events);
+        }, 4, "drop");
+
+        for (int i = 0; i < 10; i++) {
+            fixture.publish(human, null);
+        }
+        assertEquals(6.0d, meterRegistry.get("dna.events.dropped").counter().count(), 0d);
+        release.countDown();
+        await(() -> written.size() == 4);
+    }
+
+    @Test
+    public void givenFullBufferWhenBlockingThenPublisherWaitsForRoom() throws InterruptedException {
+        fixture = start(events -> {
+            awaitRelease();
+            written.addAll(events);
+        }, 4, "block");
+        for (int i = 0; i < 4; i++) {
+            fixture.publish(human, null);
+        }
+
+        Thread publisher = new Thread(() -> fixture.publish(mutant, Direction.DIAGONAL));
+        publisher.start();
+        publisher.join(200L);
+        assertTrue(publisher.isAlive());
+        release.countDown();
+        publisher.join();
+
+        await(() -> written.size() == 5);
+        assertEquals(0.0d, meterRegistry.get("dna.events.dropped").counter().count(), 0d);
+    }
+
+    @Test
+    public void givenFailingSinkWhenConsumingThenTheBatchIsWrittenAgain() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        fixture = start(events -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw new IllegalStateException("down");
+            }
+            written.addAll(events);
+        }, 16, "drop");
+
+        fixture.publish(mutant, Direction.HORIZONTAL);
+        await(() -> written.size() == 1);
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void givenPendingEventsWhenStoppingThenTheyAreWritten() throws InterruptedException {
+        fixture = start(written::addAll, 16, "drop");
+        for (int i = 0; i < 10; i++) {
+            fixture.publish(human, null);
+        }
+
+        fixture.stop();
+
+        assertEquals(10, written.size());
+    }
+
+    private ClassificationEventLog start(ClassificationEventSink sink, int bufferSize, String backpressure) {
+        ClassificationEventLog log = new ClassificationEventLog(sink, bufferSize, 1000, backpressure, 5000L, 10L,
+                meterRegistry);
+        log.start();
+        return log;
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            Thread.sleep(1L);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static meli.magneto.mutantfinder.BitboardDetectorTest.randomMatrix;
+import static meli.magneto.mutantfinder.RunLengthDetectorTest.noRunMatrix;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DetectionSessionTest {
+
+    @Test
+    public void givenRandomDnaWhenAddingRowsThenSequencesAndHashAreTheOnesOfTheWholeMatrix() {
+        for (int minimumSequences : new int[]{1, 3, 20}) {
+            RunLengthDetector detector = new RunLengthDetector(4, minimumSequences);
+            for (int size : new int[]{1, 4, 7, 33, 100}) {
+                String[] dna = randomMatrix(new Random(size * minimumSequences), size);
+                DetectionSession session = detector.newSession();
+                for (String row : dna) {
+                    session.addRow(row.toUpperCase());
+                }
+                assertEquals(size + "/" + minimumSequences, detector.find(DnaMatrix.of(dna)), session.getDirection());
+                assertEquals(DnaHash.of(dna), session.finish());
+            }
+        }
+    }
+
+    @Test
+    public void givenRunInFirstRowWhenAddingRowsThenVerdictComesWithThatRow() {
+        DetectionSession session = new RunLengthDetector(4, 1).newSession();
+        String[] dna = noRunMatrix(6);
+        dna[0] = "ccccta";
+
+        assertEquals(Direction.HORIZONTAL, session.addRow(dna[0]));
+        assertTrue(session.isMutant());
+        for (int row = 1; row < dna.length; row++) {
+            assertNull(session.addRow(dna[row]));
+        }
+        assertEquals(DnaHash.of(dna), session.finish());
+    }
+
+    @Test
+    public void givenNoRunsWhenAddingRowsThenDnaIsHuman() {
+        DetectionSession session = new RunLengthDetector(4, 1).newSession();
+        for (String row : noRunMatrix(8)) {
+            assertNull(session.addRow(row));
+        }
+        session.finish();
+        assertFalse(session.isMutant());
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenRowOfAnotherLengthWhenAddingRowsThenExceptionIsThrown() {
+        DetectionSession session = new RunLengthDetector(4, 1).newSession();
+        session.addRow("acgt");
+        session.addRow("acg");
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenInvalidBaseAfterVerdictWhenAddingRowsThenExceptionIsThrown() {
+        DetectionSession session = new RunLengthDetector(4, 1).newSession();
+        session.addRow("aaaa");
+        session.addRow("acgx");
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenTooManyRowsWhenAddingRowsThenExceptionIsThrown() {
+        DetectionSession session = new RunLengthDetector(4, 1).newSession();
+        session.addRow("ac");
+        session.addRow("gt");
+        session.addRow("ac");
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenMissingRowsWhenFinishingThenExceptionIsThrown() {
+        DetectionSession session = new RunLengthDetector(4, 1).newSession();
+        session.addRow("aaaa");
+        session.finish();
+    }
+}
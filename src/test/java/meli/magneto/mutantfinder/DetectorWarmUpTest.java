@@ -0,0 +1,58 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DetectorWarmUpTest {
+
+    private static final int[] SIZES = {16, 32, 64, 128};
+
+    private final AdaptiveDetector detector = new AdaptiveDetector(4, 1, 64, 1000, 256, 1);
+
+    @After
+    public void stop() {
+        detector.stop();
+    }
+
+    @Test
+    public void givenWarmUpNotDoneWhenCheckingHealthThenOutOfService() {
+        DetectorWarmUp fixture = new DetectorWarmUp(detector, 10, true, false);
+
+        assertEquals(Status.OUT_OF_SERVICE, fixture.health().getStatus());
+        fixture.run();
+        assertEquals(Status.UP, fixture.health().getStatus());
+        assertEquals(1000, fixture.health().getDetails().get("parallelThreshold"));
+    }
+
+    @Test
+    public void givenCalibrationWhenWarmingUpThenThresholdsAreMeasured() {
+        DetectorWarmUp fixture = new DetectorWarmUp(detector, 10, false, true);
+
+        fixture.start();
+
+        assertEquals(Status.UP, fixture.health().getStatus());
+        // sizes measured, or never
+        assertTrue(detector.getBitboardThreshold() >= 16);
+        assertTrue(detector.getParallelThreshold() >= 16);
+    }
+
+    @Test
+    public void givenCandidateFasterFromSomeSizeOnWhenPickingThresholdThenItIsThatSize() {
+        assertEquals(64, DetectorWarmUp.threshold(SIZES, new long[]{5, 5, 3, 3}, new long[]{4, 4, 4, 4}));
+    }
+
+    @Test
+    public void givenCandidateFasterOnlyInBetweenWhenPickingThresholdThenTheLargerSizesWin() {
+        assertEquals(128, DetectorWarmUp.threshold(SIZES, new long[]{1, 3, 5, 3}, new long[]{4, 4, 4, 4}));
+    }
+
+    @Test
+    public void givenCandidateSlowerAtTheLargestSizeWhenPickingThresholdThenItIsNeverPicked() {
+        assertEquals(Integer.MAX_VALUE, DetectorWarmUp.threshold(SIZES, new long[]{1, 1, 1, 5},
+                new long[]{4, 4, 4, 4}));
+    }
+}
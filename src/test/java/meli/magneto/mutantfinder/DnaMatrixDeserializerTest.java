@@ -0,0 +1,104 @@
+package meli.magneto.mutantfinder;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DnaMatrixDeserializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void givenDnaArrayWhenParsingThenItIsPackedLikeItsRows() throws IOException {
+        String[] dna = {"aCgTa", "cgtac", "GTACG", "tacgt", "acgtA"};
+        PackedDnaRequest request = read("{\"dna\":[\"aCgTa\",\"cgtac\",\"GTACG\",\"tacgt\",\"acgtA\"]}");
+        assertEquals(DnaMatrix.of(dna), request.getDna());
+        assertEquals(DnaHash.of(dna), DnaHash.of(request.getDna()));
+    }
+
+    @Test
+    public void givenMissingOrNullDnaWhenParsingThenItIsNull() throws IOException {
+        assertNull(read("{}").getDna());
+        assertNull(read("{\"dna\":null}").getDna());
+    }
+
+    @Test
+    public void givenInvalidDnaWhenParsingThenTheFailingPositionIsReported() throws IOException {
+        assertRejected("{\"dna\":[\"acgt\",\"gtac\",\"acxt\",\"gtac\"]}", "Dna row 2 has an invalid base 'x' at column 2");
+        assertRejected("{\"dna\":[\"acgt\",\"gta\",\"acgt\",\"gtac\"]}", "Dna row 1 has 3 bases, expected 4");
+        assertRejected("{\"dna\":[\"acgt\",\"gtac\",\"acgt\"]}", "Dna has 3 rows, expected 4");
+        assertRejected("{\"dna\":[\"acg\",\"gta\",\"acg\",\"gta\"]}", "Dna has more than 3 rows");
+        assertRejected("{\"dna\":[\"acgt\",null]}", "Dna row 1 cannot be null");
+        assertRejected("{\"dna\":[]}", "Dna cannot be empty");
+    }
+
+    @Test
+    public void givenDnaWiderThanMaxSizeWhenParsingThenItIsRejectedAtTheFirstRow() throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser("[\"acgt\",\"gtac\",\"acgt\",\"gtac\"]");
+        parser.nextToken();
+        try {
+            new DnaMatrixDeserializer(3).deserialize(parser, objectMapper.getDeserializationContext());
+            fail();
+        } catch (PayloadTooLargeException e) {
+            assertEquals("Dna cannot be larger than 3 x 3", e.getMessage());
+            assertEquals(JsonToken.VALUE_STRING, parser.getCurrentToken());
+        }
+    }
+
+    @Test
+    public void givenBufferBudgetHeldWhenParsingThenDnaIsRejectedAtTheFirstRowAndTheBudgetGivenBack()
+            throws IOException {
+        AdmissionControl admissionControl = new AdmissionControl(10, 1, 1, 200L, 8, 1, 1, 8L,
+                new SimpleMeterRegistry());
+        DnaMatrixDeserializer fixture = new DnaMatrixDeserializer(10, admissionControl);
+        long held = admissionControl.reserve(4);
+        try {
+            fixture.deserialize(parser("[\"acgt\",\"gtac\",\"acgt\",\"gtac\"]"), objectMapper.getDeserializationContext());
+            fail();
+        } catch (ResponseStatusException e) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+        }
+        admissionControl.release(held);
+
+        assertEquals(4, fixture.deserialize(parser("[\"acgt\",\"gtac\",\"acgt\",\"gtac\"]"),
+                objectMapper.getDeserializationContext()).size());
+        try {
+            fixture.deserialize(parser("[\"acgt\",\"gtac\",\"acxt\",\"gtac\"]"), objectMapper.getDeserializationContext());
+            fail();
+        } catch (BadInputException e) {
+            assertEquals(0L, admissionControl.getBufferedBytes());
+        }
+    }
+
+    private JsonParser parser(String json) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(json);
+        parser.nextToken();
+        return parser;
+    }
+
+    private PackedDnaRequest read(String json) throws IOException {
+        return objectMapper.readValue(json, PackedDnaRequest.class);
+    }
+
+    private void assertRejected(String json, String message) throws IOException {
+        try {
+            read(json);
+            fail(json);
+        } catch (JsonMappingException e) {
+            assertTrue(e.getCause() instanceof BadInputException);
+            assertEquals(message, e.getCause().getMessage());
+        }
+    }
+}
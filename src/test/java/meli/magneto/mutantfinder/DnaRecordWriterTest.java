@@ -0,0 +1,128 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DnaRecordWriterTest {
+
+    private DnaRecordWriter fixture;
+
+    @Mock
+    private StatisticsStore statisticsStore;
+
+    @Mock
+    private StatisticsAggregator statisticsAggregator;
+
+    @Mock
+    private StatisticsHistory statisticsHistory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final DnaHash mutant = DnaHash.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"});
+    private final DnaHash human = DnaHash.of(new String[]{"acgt", "gtac", "acgt", "gtac"});
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        fixture = new DnaRecordWriter(statisticsStore, statisticsAggregator, statisticsHistory, 500L, 1000, 1000,
+                meterRegistry);
+    }
+
+    @Test
+    public void givenRepeatedDnaWhenRecordingThenItIsBufferedOnce() {
+        fixture.record(mutant, true);
+        fixture.record(DnaHash.of(new String[]{"AAAA", "CGTC", "GTCG", "TCGT"}), true);
+        fixture.record(human, false);
+        assertEquals(2, fixture.pendingCount());
+        assertEquals(2.0d, meterRegistry.get("dna.records.pending").gauge().value(), 0d);
+    }
+
+    @Test
+    public void givenFullBufferWhenRecordingNewDnaThenItIsDroppedAndCounted() {
+        fixture = new DnaRecordWriter(statisticsStore, statisticsAggregator, statisticsHistory, 500L, 1000, 1,
+                meterRegistry);
+        fixture.record(mutant, true);
+        fixture.record(human, false);
+        fixture.recordAll(Collections.singletonMap(human, false));
+        // already pending, nothing is lost
+        fixture.record(mutant, true);
+
+        assertEquals(1, fixture.pendingCount());
+        assertEquals(2.0d, meterRegistry.get("dna.records.dropped").counter().count(), 0d);
+    }
+
+    @Test
+    public void givenNewDnaWhenFlushingThenOnlyInsertedRecordsAreCounted() {
+        List<Map.Entry<DnaHash, Boolean>> records = Collections.singletonList(
+                new AbstractMap.SimpleImmutableEntry<>(mutant, true));
+        when(statisticsStore.insert(eq(records), any())).thenReturn(records);
+        fixture.record(mutant, true);
+        fixture.flush();
+
+        verify(statisticsAggregator).record(true, 1L);
+        verify(statisticsAggregator, never()).record(eq(false), anyLong());
+        verify(statisticsHistory).record(1L, 0L);
+        assertEquals(0, fixture.pendingCount());
+    }
+
+    @Test
+    public void givenAlreadyStoredDnaWhenFlushingThenNothingIsCounted() {
+        when(statisticsStore.insert(anyList(), any())).thenReturn(Collections.emptyList());
+        fixture.record(mutant, true);
+        fixture.record(human, false);
+        fixture.flush();
+
+        verify(statisticsAggregator, never()).record(anyBoolean(), anyLong());
+        verify(statisticsHistory, never()).record(anyLong(), anyLong());
+    }
+
+    @Test
+    public void givenFailingBulkWhenFlushingThenRecordsArePendingAgain() {
+        when(statisticsStore.insert(anyList(), any())).thenThrow(new IllegalStateException("down"));
+        fixture.record(mutant, true);
+        fixture.record(human, false);
+        try {
+            fixture.flush();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(2, fixture.pendingCount());
+        verify(statisticsAggregator, never()).record(anyBoolean(), anyLong());
+    }
+
+    @Test
+    public void givenRecordsTheStoreCouldNotWriteWhenFlushingThenOnlyThoseArePendingAgain() {
+        when(statisticsStore.insert(anyList(), any())).thenAnswer(invocation -> {
+            List<Map.Entry<DnaHash, Boolean>> records = invocation.getArgument(0);
+            Consumer<Map.Entry<DnaHash, Boolean>> retry = invocation.getArgument(1);
+            retry.accept(records.get(0));
+            return records.subList(1, records.size());
+        });
+        fixture.record(mutant, true);
+        fixture.record(human, false);
+        fixture.flush();
+
+        assertEquals(1, fixture.pendingCount());
+        verify(statisticsAggregator).record(anyBoolean(), eq(1L));
+    }
+}
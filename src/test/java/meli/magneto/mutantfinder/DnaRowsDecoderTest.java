@@ -0,0 +1,49 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DnaRowsDecoderTest {
+
+    private static final ResolvableType STRING = ResolvableType.forClass(String.class);
+
+    private final DnaRowsDecoder fixture = new DnaRowsDecoder(4);
+
+    @Test
+    public void givenRowsCutAnywhereWhenDecodingThenEachRowIsEmittedWithoutItsLineEnd() {
+        assertEquals(Arrays.asList("aaaa", "cgtc", "gtcg", "tcgt"),
+                fixture.decode(body("aa", "aa\r\ncg", "tc\ngtcg\n", "tcgt"), STRING, null, Collections.emptyMap())
+                        .collectList().block());
+    }
+
+    @Test
+    public void givenRowLongerThanMaxSizeWhenDecodingThenItIsRejectedBeforeItEnds() {
+        try {
+            fixture.decode(body("aaaa\r\n", "cgtcgt"), STRING, null, Collections.emptyMap()).collectList().block();
+            fail();
+        } catch (PayloadTooLargeException e) {
+            assertEquals("Dna cannot be larger than 4 x 4", e.getMessage());
+        }
+    }
+
+    @Test
+    public void givenRowsWhenDecodingToMonoThenTheyAreJoinedByLineFeeds() {
+        assertEquals("aaaa\ncgtc", fixture.decodeToMono(body("aaaa\r\ncgtc\n"), STRING, null, Collections.emptyMap())
+                .block());
+    }
+
+    private static Flux<DataBuffer> body(String... chunks) {
+        DefaultDataBufferFactory factory = new DefaultDataBufferFactory();
+        return Flux.fromArray(chunks).map(chunk -> factory.wrap(chunk.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+}
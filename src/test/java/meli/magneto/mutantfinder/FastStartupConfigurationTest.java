@@ -0,0 +1,44 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.AnnotatedGenericBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FastStartupConfigurationTest {
+
+    private final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+
+    @Test
+    public void givenApplicationBeanWhenPostProcessingThenItIsLazy() {
+        beanFactory.registerBeanDefinition("detector", new AnnotatedGenericBeanDefinition(AdaptiveDetector.class));
+
+        FastStartupConfiguration.lazyInitialization().postProcessBeanFactory(beanFactory);
+
+        assertTrue(beanFactory.getBeanDefinition("detector").isLazyInit());
+    }
+
+    @Test
+    public void givenBeanAnnotatedLazyFalseWhenPostProcessingThenItIsEager() {
+        beanFactory.registerBeanDefinition("warmUp", new AnnotatedGenericBeanDefinition(DetectorWarmUp.class));
+
+        FastStartupConfiguration.lazyInitialization().postProcessBeanFactory(beanFactory);
+
+        assertFalse(beanFactory.getBeanDefinition("warmUp").isLazyInit());
+    }
+
+    @Test
+    public void givenInfrastructureBeanWhenPostProcessingThenItIsEager() {
+        RootBeanDefinition definition = new RootBeanDefinition(Object.class);
+        definition.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+        beanFactory.registerBeanDefinition("infrastructure", definition);
+
+        FastStartupConfiguration.lazyInitialization().postProcessBeanFactory(beanFactory);
+
+        assertFalse(beanFactory.getBeanDefinition("infrastructure").isLazyInit());
+    }
+}
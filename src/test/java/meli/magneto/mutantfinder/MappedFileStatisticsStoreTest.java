@@ -0,0 +1,155 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static meli.magneto.mutantfinder.Statistics.HUMAN_DNA;
+import static meli.magneto.mutantfinder.Statistics.MUTANT_DNA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileStatisticsStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map.Entry<DnaHash, Boolean> mutant = new AbstractMap.SimpleImmutableEntry<>(
+            DnaHash.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"}), true);
+    private final Map.Entry<DnaHash, Boolean> human = new AbstractMap.SimpleImmutableEntry<>(
+            DnaHash.of(new String[]{"acgt", "gtac", "acgt", "gtac"}), false);
+
+    @Test
+    public void givenStoredDnaWhenInsertingAgainThenOnlyNewOnesAreReturned() throws IOException {
+        MappedFileStatisticsStore fixture = open(4096);
+
+        assertEquals(Collections.singletonList(mutant), insert(fixture, mutant));
+        assertEquals(Collections.singletonList(human), insert(fixture, mutant, human));
+        assertTrue(insert(fixture, human).isEmpty());
+        fixture.close();
+    }
+
+    @Test
+    public void givenLoggedChangesWhenReopeningThenTheLogIsReplayed() throws IOException {
+        MappedFileStatisticsStore fixture = open(4096);
+        insert(fixture, mutant);
+        fixture.increment(MUTANT_DNA, 1L);
+        fixture.increment(HUMAN_DNA, 2L);
+        fixture.increment(MUTANT_DNA, 3L);
+        // as if the process died, without a checkpoint
+        MappedFileStatisticsStore reopened = open(4096);
+
+        assertEquals(4L, reopened.totals().get(MUTANT_DNA).longValue());
+        assertEquals(2L, reopened.totals().get(HUMAN_DNA).longValue());
+        assertTrue(insert(reopened, mutant).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void givenCheckpointWhenReopeningThenChangesAfterItAreAddedOnce() throws IOException {
+        MappedFileStatisticsStore fixture = open(4096);
+        insert(fixture, mutant);
+        fixture.increment(MUTANT_DNA, 1L);
+        fixture.checkpoint();
+        insert(fixture, human);
+        fixture.increment(HUMAN_DNA, 1L);
+        MappedFileStatisticsStore reopened = open(4096);
+
+        assertEquals(1L, reopened.totals().get(MUTANT_DNA).longValue());
+        assertEquals(1L, reopened.totals().get(HUMAN_DNA).longValue());
+        assertTrue(insert(reopened, mutant, human).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void givenLogOlderThanCheckpointWhenReopeningThenItIsNotReplayed() throws IOException {
+        MappedFileStatisticsStore fixture = open(4096);
+        fixture.increment(MUTANT_DNA, 1L);
+        Files.copy(folder.getRoot().toPath().resolve(MappedFileStatisticsStore.LOG_FILE),
+                folder.getRoot().toPath().resolve("old.log"));
+        fixture.checkpoint();
+        // a crash right after the checkpoint was moved, before the log started over
+        Files.move(folder.getRoot().toPath().resolve("old.log"),
+                folder.getRoot().toPath().resolve(MappedFileStatisticsStore.LOG_FILE),
+                StandardCopyOption.REPLACE_EXISTING);
+        MappedFileStatisticsStore reopened = open(4096);
+
+        assertEquals(1L, reopened.totals().get(MUTANT_DNA).longValue());
+        reopened.close();
+    }
+
+    @Test
+    public void givenFullLogWhenAppendingThenItIsCheckpointedAndStartsOver() throws IOException {
+        // room for a few increments only
+        MappedFileStatisticsStore fixture = open(128);
+        for (int i = 0; i < 100; i++) {
+            fixture.increment(MUTANT_DNA, 1L);
+        }
+        insert(fixture, mutant);
+        MappedFileStatisticsStore reopened = open(128);
+
+        assertEquals(100L, reopened.totals().get(MUTANT_DNA).longValue());
+        assertTrue(insert(reopened, mutant).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void givenSeveralCheckpointsWhenReopeningThenEveryDnaIsWrittenOnce() throws IOException {
+        MappedFileStatisticsStore fixture = open(4096);
+        insert(fixture, mutant);
+        fixture.checkpoint();
+        insert(fixture, human);
+        fixture.checkpoint();
+        fixture.close();
+        MappedFileStatisticsStore reopened = open(4096);
+
+        assertEquals(2 * 16L, Files.size(folder.getRoot().toPath().resolve(MappedFileStatisticsStore.RECORDS_FILE)));
+        assertTrue(insert(reopened, mutant, human).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void givenRecordsLeftPastTheCheckpointWhenCheckpointingThenTheyAreWrittenOver() throws IOException {
+        MappedFileStatisticsStore fixture = open(4096);
+        insert(fixture, mutant);
+        fixture.checkpoint();
+        // a crash after the records were appended, before the checkpoint was moved
+        Files.write(folder.getRoot().toPath().resolve(MappedFileStatisticsStore.RECORDS_FILE), new byte[16],
+                StandardOpenOption.APPEND);
+        MappedFileStatisticsStore reopened = open(4096);
+        insert(reopened, human);
+        reopened.checkpoint();
+        reopened.close();
+
+        assertEquals(2 * 16L, Files.size(folder.getRoot().toPath().resolve(MappedFileStatisticsStore.RECORDS_FILE)));
+        MappedFileStatisticsStore checked = open(4096);
+        assertTrue(insert(checked, mutant, human).isEmpty());
+        checked.close();
+    }
+
+    private MappedFileStatisticsStore open(int logBytes) throws IOException {
+        MappedFileStatisticsStore store = new MappedFileStatisticsStore(folder.getRoot().getPath(), logBytes,
+                60000L, true, new SimpleMeterRegistry());
+        store.open();
+        return store;
+    }
+
+    @SafeVarargs
+    private static List<Map.Entry<DnaHash, Boolean>> insert(MappedFileStatisticsStore store,
+                                                            Map.Entry<DnaHash, Boolean>... records) {
+        return store.insert(Arrays.asList(records), retried -> {
+            throw new AssertionError("Nothing should be retried");
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package meli.magneto.mutantfinder;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.bulk.WriteRequest;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static meli.magneto.mutantfinder.Statistics.HUMAN_DNA;
+import static meli.magneto.mutantfinder.Statistics.MUTANT_DNA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MongoStatisticsStoreTest {
+
+    private MongoStatisticsStore fixture;
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private final Map.Entry<DnaHash, Boolean> mutant = new AbstractMap.SimpleImmutableEntry<>(
+            DnaHash.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"}), true);
+    private final Map.Entry<DnaHash, Boolean> human = new AbstractMap.SimpleImmutableEntry<>(
+            DnaHash.of(new String[]{"acgt", "gtac", "acgt", "gtac"}), false);
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(mongoOperations.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(DnaRecord.class)))
+                .thenReturn(bulkOperations);
+        fixture = new MongoStatisticsStore(mongoOperations, 16, "mutant-finder-1");
+    }
+
+    @Test
+    public void givenNewDnaWhenInsertingThenOnlyUpsertedRecordsAreReturned() {
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(WriteRequest.Type.UPDATE, 2,
+                Collections.singletonList(new BulkWriteUpsert(1, new BsonString(human.getKey().toString())))));
+
+        List<Map.Entry<DnaHash, Boolean>> inserted = fixture.insert(Arrays.asList(mutant, human), retried -> {
+        });
+
+        verify(bulkOperations, times(2)).upsert(any(Query.class), any(Update.class));
+        assertEquals(Collections.singletonList(human), inserted);
+    }
+
+    @Test
+    public void givenDuplicateKeyAndOtherErrorsWhenInsertingThenOnlyTheOthersAreRetried() {
+        com.mongodb.BulkWriteResult result = mock(com.mongodb.BulkWriteResult.class);
+        when(result.getUpserts()).thenReturn(Collections.emptyList());
+        List<BulkWriteError> errors = Arrays.asList(
+                new BulkWriteError(11000, "duplicate key", new BasicDBObject(), 0),
+                new BulkWriteError(50, "exceeded time limit", new BasicDBObject(), 1));
+        BulkOperationException partial = mock(BulkOperationException.class);
+        when(partial.getResult()).thenReturn(result);
+        when(partial.getErrors()).thenReturn(errors);
+        when(bulkOperations.execute()).thenThrow(partial);
+        List<Map.Entry<DnaHash, Boolean>> retried = new ArrayList<>();
+
+        List<Map.Entry<DnaHash, Boolean>> inserted = fixture.insert(Arrays.asList(mutant, human), retried::add);
+
+        assertTrue(inserted.isEmpty());
+        assertEquals(Collections.singletonList(human), retried);
+    }
+
+    @Test
+    public void givenAmountWhenIncrementingThenOnlyTheOwnShardIsIncremented() {
+        fixture.increment(MUTANT_DNA, 2L);
+
+        verify(mongoOperations).upsert(argThat(shardOf(MUTANT_DNA)), argThat(incrementsBy(2L)), eq(Statistics.class));
+    }
+
+    @Test
+    public void givenRestartedInstanceWhenIncrementingThenItKeepsItsShard() {
+        assertEquals(fixture.getShard(), new MongoStatisticsStore(mongoOperations, 16, "mutant-finder-1").getShard());
+    }
+
+    @Test
+    public void givenNumberedInstancesWhenIncrementingThenEachHasItsOwnShard() {
+        assertEquals(0, MongoStatisticsStore.shard("0", 16));
+        assertNotEquals(MongoStatisticsStore.shard("3", 16), MongoStatisticsStore.shard("4", 16));
+        assertEquals(15, MongoStatisticsStore.shard("15", 16));
+        assertEquals(MongoStatisticsStore.shard("16", 16), MongoStatisticsStore.shard("0", 16));
+    }
+
+    @Test
+    public void givenAnyInstanceIdWhenIncrementingThenTheShardIsWithinTheShards() {
+        for (String instanceId : new String[]{"mutant-finder-7d9f-x2", "", "-1", "host.example.com"}) {
+            int shard = MongoStatisticsStore.shard(instanceId, 16);
+            assertTrue(shard >= 0 && shard < 16);
+        }
+    }
+
+    @Test
+    public void givenShardsWhenGetTotalsThenTheyAreSummedByName() {
+        when(mongoOperations.aggregate(any(Aggregation.class), eq(Statistics.class),
+                eq(MongoStatisticsStore.CounterTotal.class)))
+                .thenReturn(new AggregationResults<>(Arrays.asList(new MongoStatisticsStore.CounterTotal(MUTANT_DNA, 40L),
+                        new MongoStatisticsStore.CounterTotal(HUMAN_DNA, 100L)), new Document()));
+
+        Map<String, Long> totals = fixture.totals();
+
+        assertEquals(40L, totals.get(MUTANT_DNA).longValue());
+        assertEquals(100L, totals.get(HUMAN_DNA).longValue());
+    }
+
+    private ArgumentMatcher<Query> shardOf(String name) {
+        return query -> query != null && name.equals(query.getQueryObject().get("name"))
+                && Integer.valueOf(fixture.getShard()).equals(query.getQueryObject().get("shard"));
+    }
+
+    private static ArgumentMatcher<Update> incrementsBy(long delta) {
+        return update -> update != null
+                && Long.valueOf(delta).equals(((Document) update.getUpdateObject().get("$inc")).get("amount"));
+    }
+}
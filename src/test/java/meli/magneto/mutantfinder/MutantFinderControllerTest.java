@@ -12,14 +12,41 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_DNA_ROWS_VALUE;
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_NDJSON_VALUE;
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_PACKED_DNA_VALUE;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -32,6 +59,12 @@ public class MutantFinderControllerTest {
 	@MockBean
     private MutantFinderService mutantFinderService;
 
+    @MockBean
+    private DetectionMetrics detectionMetrics;
+
+    @MockBean
+    private AdmissionControl admissionControl;
+
 	private HttpHeaders httpHeaders;
 
 	private static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
@@ -46,7 +79,7 @@ public class MutantFinderControllerTest {
 	public void testBadRequestDueToNullInput() throws Exception {
 		DnaRequest dnaRequest = new DnaRequest();
 		String jsonContent = writeValueAsString(dnaRequest);
-		when(mutantFinderService.isMutant(eq(null))).thenThrow(new BadInputException("any"));
+		when(mutantFinderService.isMutant((DnaMatrix) isNull())).thenThrow(new BadInputException("any"));
 		this.mockMvc.perform(post("/mutant/").headers(httpHeaders).content(jsonContent))
                 .andDo(print()).andExpect(status().isBadRequest());
 	}
@@ -61,7 +94,7 @@ public class MutantFinderControllerTest {
                 "cgtaga",
                 "gtcgaa",
                 "accgca"});
-        when(mutantFinderService.isMutant(eq(dnaRequest.getDna()))).thenReturn(Boolean.FALSE);
+        when(mutantFinderService.isMutant(eq(DnaMatrix.of(dnaRequest.getDna())))).thenReturn(Boolean.FALSE);
         String jsonContent = writeValueAsString(dnaRequest);
         this.mockMvc.perform(post("/mutant/").headers(httpHeaders).content(jsonContent))
                 .andDo(print()).andExpect(status().isForbidden());
@@ -77,29 +110,204 @@ public class MutantFinderControllerTest {
                 "cgtaca",
                 "gtcgac",
                 "accgca"});
-        when(mutantFinderService.isMutant(eq(dnaRequest.getDna()))).thenReturn(Boolean.TRUE);
+        when(mutantFinderService.isMutant(eq(DnaMatrix.of(dnaRequest.getDna())))).thenReturn(Boolean.TRUE);
         String jsonContent = writeValueAsString(dnaRequest);
         this.mockMvc.perform(post("/mutant/").headers(httpHeaders).content(jsonContent))
                 .andDo(print()).andExpect(status().isOk());
     }
 
+    @Test
+    public void testBadRequestDueToInvalidBaseIsRejectedWhileParsing() throws Exception {
+        String jsonContent = "{\"dna\":[\"acgt\",\"gtac\",\"acxt\",\"gtac\"]}";
+        this.mockMvc.perform(post("/mutant/").headers(httpHeaders).content(jsonContent))
+                .andDo(print()).andExpect(status().isBadRequest());
+        verify(mutantFinderService, never()).isMutant(any(DnaMatrix.class));
+        verify(detectionMetrics).recordReject();
+    }
+
     @Test
     public void testStatisticsResponseOnGettingStats() throws Exception {
-	    StatisticsResponse response = new StatisticsResponse();
-	    response.setCountMutantDna(40L);
-	    response.setCountHumanDna(100L);
-	    response.setRatio(0.4d);
-        when(mutantFinderService.getRequestsStatistics()).thenReturn(response);
+        when(mutantFinderService.getRequestsStatistics()).thenReturn(new StatisticsResponse(1L, 40L, 100L));
         this.mockMvc.perform(get("/stats/").headers(httpHeaders))
                 .andDo(print())
                 .andExpect(jsonPath("$.count_mutant_dna", is(40)))
                 .andExpect(jsonPath("$.count_human_dna", is(100)))
                 .andExpect(jsonPath("$.ratio", is(0.4)))
+                .andExpect(jsonPath("$.version").doesNotExist())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"40-100\""))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void testNotModifiedResponseOnGettingUnchangedStats() throws Exception {
+        when(mutantFinderService.getRequestsStatistics()).thenReturn(new StatisticsResponse(1L, 40L, 100L));
+        this.mockMvc.perform(get("/stats/").headers(httpHeaders).header(HttpHeaders.IF_NONE_MATCH, "\"40-100\""))
+                .andDo(print())
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        this.mockMvc.perform(get("/stats/").headers(httpHeaders).header(HttpHeaders.IF_NONE_MATCH, "\"39-100\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testServerSentEventsOnStatsStream() throws Exception {
+        when(mutantFinderService.getRequestsStatisticsUpdates()).thenReturn(Flux.just(
+                new StatisticsResponse(1L, 40L, 100L), new StatisticsResponse(2L, 41L, 100L)));
+        MvcResult result = this.mockMvc.perform(get("/stats/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("id:2\nevent:stats\ndata:{\"ratio\":0.41,")));
+    }
+
+    @Test
+    public void testStatisticsHistoryOnGettingStatsHistory() throws Exception {
+        Instant from = Instant.parse("2018-10-01T10:00:00Z");
+        Instant to = Instant.parse("2018-10-01T11:00:00Z");
+        when(mutantFinderService.getRequestsStatisticsHistory(eq(from), eq(to), eq("minute"))).thenReturn(
+                new StatisticsHistoryResponse(Granularity.MINUTE, Date.from(from), Date.from(to),
+                        Collections.singletonList(new StatisticsBucket(Granularity.MINUTE, from.toEpochMilli(), 2L, 8L))));
+        this.mockMvc.perform(get("/stats/history")
+                .param("from", "2018-10-01T10:00:00Z")
+                .param("to", "2018-10-01T11:00:00Z")
+                .param("granularity", "minute"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity", is("minute")))
+                .andExpect(jsonPath("$.buckets[0].count_mutant_dna", is(2)))
+                .andExpect(jsonPath("$.buckets[0].count_human_dna", is(8)))
+                .andExpect(jsonPath("$.buckets[0].ratio", is(0.25)));
+    }
+
+    @Test
+    public void testNdjsonVerdictsOnBatch() throws Exception {
+        answerBatchWithFirstRowVerdict();
+        String body = "{\"dna\":[\"aaaa\",\"cgtc\",\"gtcg\",\"tcgt\"]}\n"
+                + "{\"dna\":[\"acgt\",\"gtac\",\"acgt\",\"gtac\"]}\n"
+                + "{}\n";
+        this.mockMvc.perform(post("/mutant/batch").contentType(APPLICATION_NDJSON_VALUE).content(body))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string("{\"index\":0,\"mutant\":true}\n"
+                        + "{\"index\":1,\"mutant\":false}\n"
+                        + "{\"index\":2,\"error\":\"Dna cannot be null\"}\n"));
+    }
+
+    @Test
+    public void testBatchStopsOnMalformedLine() throws Exception {
+        answerBatchWithFirstRowVerdict();
+        String body = "{\"dna\":[\"aaaa\",\"cgtc\",\"gtcg\",\"tcgt\"]}\n{\"dna\":[\n";
+        this.mockMvc.perform(post("/mutant/batch").contentType(APPLICATION_NDJSON_VALUE).content(body))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(startsWith("{\"index\":0,\"mutant\":true}\n{\"index\":-1,\"error\":")));
+    }
+
+    @Test
+    public void testOkAndForbiddenResponsesOnPackedDna() throws Exception {
+        DnaMatrix mutant = DnaMatrix.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"});
+        DnaMatrix human = DnaMatrix.of(new String[]{"acgt", "gtac", "acgt", "gtac"});
+        when(mutantFinderService.isMutant(eq(mutant))).thenReturn(true);
+        when(mutantFinderService.isMutant(eq(human))).thenReturn(false);
+        this.mockMvc.perform(post("/mutant").contentType(APPLICATION_PACKED_DNA_VALUE)
+                .content(PackedDnaFormat.write(mutant)))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(post("/mutant").contentType(APPLICATION_PACKED_DNA_VALUE)
+                .content(PackedDnaFormat.write(human)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void testPayloadTooLargeDueToPackedDnaOverMaxSize() throws Exception {
+        this.mockMvc.perform(post("/mutant").contentType(APPLICATION_PACKED_DNA_VALUE)
+                .content(new byte[]{0, 0, 0x27, 0x11}))
+                .andDo(print())
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(status().reason("Dna cannot be larger than 10000 x 10000"));
+        verify(mutantFinderService, never()).isMutant(any(DnaMatrix.class));
+        verify(detectionMetrics).recordReject();
+    }
+
+    @Test
+    public void testNdjsonVerdictsOnPackedBatchEndingInTheMiddleOfADna() throws Exception {
+        doAnswer(invocation -> {
+            Iterator<DnaMatrix> batch = invocation.getArgument(0);
+            Consumer<DnaVerdict> verdicts = invocation.getArgument(1);
+            for (long index = 0; batch.hasNext(); index++) {
+                verdicts.accept(DnaVerdict.of(index, batch.next().get(0, 1) == DnaMatrix.A));
+            }
+            return null;
+        }).when(mutantFinderService).classifyPackedBatch(any(), any());
+        byte[] mutant = PackedDnaFormat.write(DnaMatrix.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"}));
+        byte[] human = PackedDnaFormat.write(DnaMatrix.of(new String[]{"acgt", "gtac", "acgt", "gtac"}));
+        byte[] body = ByteBuffer.allocate(mutant.length * 3 - 1).put(mutant).put(human).put(mutant, 0, mutant.length - 1)
+                .array();
+        this.mockMvc.perform(post("/mutant/batch").contentType(APPLICATION_PACKED_DNA_VALUE).content(body))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string("{\"index\":0,\"mutant\":true}\n"
+                        + "{\"index\":1,\"mutant\":false}\n"
+                        + "{\"index\":-1,\"error\":\"Packed dna ends in the middle of a dna\"}\n"));
+    }
+
+    private void answerBatchWithFirstRowVerdict() {
+        doAnswer(invocation -> {
+            Iterator<String[]> batch = invocation.getArgument(0);
+            Consumer<DnaVerdict> verdicts = invocation.getArgument(1);
+            for (long index = 0; batch.hasNext(); index++) {
+                String[] dna = batch.next();
+                verdicts.accept(dna == null
+                        ? DnaVerdict.rejected(index, "Dna cannot be null")
+                        : DnaVerdict.of(index, dna[0].equals("aaaa")));
+            }
+            return null;
+        }).when(mutantFinderService).classifyBatch(any(), any());
+    }
+
 	public static String writeValueAsString(Object value) throws JsonProcessingException {
 		return DEFAULT_MAPPER.writeValueAsString(value);
 	}
 
+
+    @Test
+    public void testOkResponseOnStreamedRowsEvenWhenARowAfterTheVerdictIsInvalid() throws Exception {
+        List<String> rowsRead = new ArrayList<>();
+        doAnswer(invocation -> {
+            Iterator<String> rows = invocation.getArgument(0);
+            Consumer<Boolean> verdict = invocation.getArgument(1);
+            verdict.accept(true);
+            rows.forEachRemaining(rowsRead::add);
+            throw new BadInputException("Dna row 3 has an invalid base 'x' at column 3");
+        }).when(mutantFinderService).classifyRows(any(), any());
+        this.mockMvc.perform(post("/mutant").contentType(APPLICATION_DNA_ROWS_VALUE)
+                .content("aaaa\r\ncgtc\ngtcg\ntcgx\n"))
+                .andExpect(status().isOk());
+        assertEquals(Arrays.asList("aaaa", "cgtc", "gtcg", "tcgx"), rowsRead);
+    }
+
+    @Test
+    public void testPayloadTooLargeOnStreamedRowLongerThanMaxSize() throws Exception {
+        doAnswer(invocation -> {
+            Iterator<String> rows = invocation.getArgument(0);
+            rows.forEachRemaining(row -> { });
+            return null;
+        }).when(mutantFinderService).classifyRows(any(), any());
+        char[] row = new char[10002];
+        Arrays.fill(row, 'a');
+        this.mockMvc.perform(post("/mutant").contentType(APPLICATION_DNA_ROWS_VALUE).content(new String(row)))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    public void testBadRequestOnStreamedRowsRejectedBeforeTheVerdict() throws Exception {
+        doAnswer(invocation -> {
+            throw new BadInputException("Dna has 1 rows, expected 4");
+        }).when(mutantFinderService).classifyRows(any(), any());
+        this.mockMvc.perform(post("/mutant").contentType(APPLICATION_DNA_ROWS_VALUE).content("acgt\n"))
+                .andExpect(status().isBadRequest());
+    }
 }
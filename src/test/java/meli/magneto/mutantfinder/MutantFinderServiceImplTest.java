@@ -1,19 +1,39 @@
 package meli.magneto.mutantfinder;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static junit.framework.TestCase.assertTrue;
-import static meli.magneto.mutantfinder.Statistics.HUMAN_DNA;
-import static meli.magneto.mutantfinder.Statistics.MUTANT_DNA;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class MutantFinderServiceImplTest {
@@ -21,17 +41,41 @@ public class MutantFinderServiceImplTest {
     @InjectMocks
     private MutantFinderServiceImpl fixture;
 
+    @Spy
+    private AdaptiveDetector detector = new AdaptiveDetector(4, 1, 64, 1000, 256, 1);
+
     @Mock
-    private StatisticsRepository statisticsRepository;
+    private StatisticsAggregator statisticsAggregator;
+
+    @Mock
+    private StatisticsHistory statisticsHistory;
+
+    private final VerdictCache verdictCache = mock(VerdictCache.class);
+
+    private final DnaRecordWriter dnaRecordWriter = mock(DnaRecordWriter.class);
+
+    private final ClassificationEventLog classificationEvents = mock(ClassificationEventLog.class);
+
+    @Spy
+    private VerdictRecorder verdictRecorder = new VerdictRecorder(verdictCache, classificationEvents, dnaRecordWriter);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private DetectionMetrics detectionMetrics = new DetectionMetrics(meterRegistry);
+
+    @Spy
+    private AdmissionControl admissionControl = new AdmissionControl(100, 2, 4, 1000L, 50, 1, 1, 1024L, meterRegistry);
 
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
+        when(verdictCache.get(any(DnaHash.class))).thenReturn(null);
     }
 
     @Test(expected = BadInputException.class)
     public void givenNullDnaWhenCheckingMutantThenExceptionIsThrown() {
-        fixture.isMutant(null);
+        fixture.isMutant((String[]) null);
     }
 
     @Test(expected = BadInputException.class)
@@ -59,6 +103,104 @@ public class MutantFinderServiceImplTest {
         fixture.isMutant(new String[]{"atcg","gcta","agtc","agja"});
     }
 
+    @Test
+    public void givenDnaWithInvalidCharacterWhenCheckingMutantThenErrorNamesItsPosition() {
+        try {
+            fixture.isMutant(new String[]{"atcg","gcta","agtc","agja"});
+            fail();
+        } catch (BadInputException e) {
+            assertEquals("Dna row 3 has an invalid base 'j' at column 2", e.getMessage());
+        }
+        verify(detector, never()).find(any(DnaMatrix.class));
+    }
+
+    @Test
+    public void givenDnaWithNullRowWhenCheckingMutantThenErrorNamesTheRow() {
+        try {
+            fixture.isMutant(new String[]{"atcg",null,"agtc","agta"});
+            fail();
+        } catch (BadInputException e) {
+            assertEquals("Dna row 1 cannot be null", e.getMessage());
+        }
+    }
+
+    @Test
+    public void givenValidDnaWhenCheckingMutantThenResultIsRecorded() {
+        String[] mutant = {"aaaa","cgtc","gtcg","tcgt"};
+        String[] human = {"acgt","gtac","acgt","gtac"};
+        fixture.isMutant(mutant);
+        fixture.isMutant(human);
+        verify(dnaRecordWriter).record(eq(DnaHash.of(mutant)), eq(true));
+        verify(dnaRecordWriter).record(eq(DnaHash.of(human)), eq(false));
+    }
+
+    @Test
+    public void givenCachedDnaWhenCheckingMutantThenDetectionIsSkipped() {
+        String[] dna = {"acgt","gtac","acgt","gtac"};
+        when(verdictCache.get(eq(DnaHash.of(dna)))).thenReturn(Boolean.TRUE);
+        assertTrue(fixture.isMutant(dna));
+        verify(verdictCache, never()).put(any(DnaHash.class), anyBoolean());
+        verify(dnaRecordWriter, never()).record(any(DnaHash.class), anyBoolean());
+        verify(classificationEvents).publishCached(DnaHash.of(dna), true);
+    }
+
+    @Test
+    public void givenNewDnaWhenCheckingMutantThenVerdictIsCached() {
+        String[] dna = {"aaaa","cgtc","gtcg","tcgt"};
+        assertTrue(fixture.isMutant(dna));
+        verify(verdictCache).put(eq(DnaHash.of(new String[]{"AAAA","CGTC","GTCG","TCGT"})), eq(true));
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenNullPackedDnaWhenCheckingMutantThenExceptionIsThrown() {
+        fixture.isMutant((DnaMatrix) null);
+    }
+
+    @Test
+    public void givenPackedDnaWhenCheckingMutantThenItSharesTheVerdictOfItsRows() {
+        String[] dna = {"aaaa","cgtc","gtcg","tcgt"};
+        assertTrue(fixture.isMutant(DnaMatrix.of(dna)));
+        verify(verdictCache).put(eq(DnaHash.of(dna)), eq(true));
+        verify(dnaRecordWriter).record(eq(DnaHash.of(dna)), eq(true));
+        verify(classificationEvents).publish(DnaHash.of(dna), Direction.HORIZONTAL);
+    }
+
+    @Test
+    public void givenClassifiedDnaWhenCheckingMutantThenDetectionsAndRejectsAreMeasured() {
+        fixture.isMutant(new String[]{"aaaa","cgtc","gtcg","tcgt"});
+        fixture.isMutant(new String[]{"acgt","gtac","acgt","gtac"});
+        try {
+            fixture.isMutant(new String[]{"acgt","gtac","acgt","gtax"});
+        } catch (BadInputException e) {
+            // expected
+        }
+        assertEquals(2L, meterRegistry.get("dna.detection").tag("size", "1-10").timer().count());
+        assertEquals(1.0d, meterRegistry.get("dna.detection.hits").tag("direction", "horizontal").counter().count(), 0d);
+        assertEquals(1.0d, meterRegistry.get("dna.detection.hits").tag("direction", "none").counter().count(), 0d);
+        assertEquals(1.0d, meterRegistry.get("dna.validation.rejects").counter().count(), 0d);
+    }
+
+    @Test
+    public void givenBatchWhenClassifyingThenVerdictsAreReportedInOrderAndRecordedOnce() {
+        String[] mutant = {"aaaa","cgtc","gtcg","tcgt"};
+        String[] human = {"acgt","gtac","acgt","gtac"};
+        List<DnaVerdict> verdicts = new ArrayList<>();
+        fixture.classifyBatch(Arrays.asList(mutant, new String[]{"aaa","aa","aaa"}, human, mutant).iterator(),
+                verdicts::add);
+
+        assertEquals(4, verdicts.size());
+        assertEquals(Boolean.TRUE, verdicts.get(0).getMutant());
+        assertEquals("Dna row 1 has 2 bases, expected 3", verdicts.get(1).getError());
+        assertNull(verdicts.get(1).getMutant());
+        assertEquals(Boolean.FALSE, verdicts.get(2).getMutant());
+        assertEquals(3L, verdicts.get(3).getIndex());
+        Map<DnaHash, Boolean> expectedRecords = new HashMap<>();
+        expectedRecords.put(DnaHash.of(mutant), true);
+        expectedRecords.put(DnaHash.of(human), false);
+        verify(dnaRecordWriter).recordAll(eq(expectedRecords));
+        verify(dnaRecordWriter, never()).record(any(DnaHash.class), anyBoolean());
+    }
+
     @Test
     public void givenDnaWithHorizontalConsecutiveSeqWhenCheckingMutantThenReturnTrue() {
         assertTrue(fixture.isMutant(new String[]{"atcgaa","gctttt","agtcca","agtaga","atcgaa","accgca"}));
@@ -143,9 +285,8 @@ public class MutantFinderServiceImplTest {
     }
 
     @Test
-    public void givenNullMutantCountAndHumanCountWhenGetStatsThenReturnZeroedValues() {
-        when(statisticsRepository.findByName(eq(MUTANT_DNA))).thenReturn(null);
-        when(statisticsRepository.findByName(eq(HUMAN_DNA))).thenReturn(null);
+    public void givenNoRecordedDnaWhenGetStatsThenReturnZeroedValues() {
+        when(statisticsAggregator.getSnapshot()).thenReturn(new StatisticsResponse(0L, 0L, 0L));
         StatisticsResponse response = fixture.getRequestsStatistics();
         assertNotNull(response);
         assertEquals(0L, response.getCountMutantDna().longValue());
@@ -155,10 +296,7 @@ public class MutantFinderServiceImplTest {
 
     @Test
     public void givenNonNullMutantCountAndHumanCountWhenGetStatsThenReturnCountsAndRatio() {
-        when(statisticsRepository.findByName(eq(MUTANT_DNA)))
-                .thenReturn(new Statistics(MUTANT_DNA, 40L));
-        when(statisticsRepository.findByName(eq(HUMAN_DNA)))
-                .thenReturn(new Statistics(HUMAN_DNA, 100L));
+        when(statisticsAggregator.getSnapshot()).thenReturn(new StatisticsResponse(2L, 40L, 100L));
         StatisticsResponse response = fixture.getRequestsStatistics();
         assertNotNull(response);
         assertEquals(40L, response.getCountMutantDna().longValue());
@@ -166,4 +304,144 @@ public class MutantFinderServiceImplTest {
         assertEquals(0.4d, response.getRatio(), 0d);
     }
 
+    @Test
+    public void givenNoRangeWhenGetStatsHistoryThenLastDayIsReadByHour() {
+        when(statisticsHistory.find(eq(Granularity.HOUR), anyLong(), anyLong())).thenReturn(Collections.singletonList(
+                new StatisticsBucket(Granularity.HOUR, 0L, 1L, 4L)));
+        StatisticsHistoryResponse response = fixture.getRequestsStatisticsHistory(null, null, null);
+        assertEquals("hour", response.getGranularity());
+        assertEquals(TimeUnit.DAYS.toMillis(1), response.getTo().getTime() - response.getFrom().getTime());
+        assertEquals(1, response.getBuckets().size());
+        assertEquals(0.25d, response.getBuckets().get(0).getRatio(), 0d);
+        verify(statisticsHistory).find(Granularity.HOUR, response.getFrom().getTime(), response.getTo().getTime());
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenUnknownGranularityWhenGetStatsHistoryThenExceptionIsThrown() {
+        fixture.getRequestsStatisticsHistory(null, null, "week");
+    }
+
+    @Test
+    public void givenDnaOverMaxSizeWhenClassifyingBatchThenItIsRejectedBeforePacking() {
+        List<DnaVerdict> verdicts = new ArrayList<>();
+        String[] wide = new String[101];
+        Arrays.fill(wide, "a");
+        fixture.classifyBatch(Arrays.asList(wide, new String[]{"acgt", "gtac", "acgt", "gtac"}).iterator(),
+                verdicts::add);
+        assertEquals("Dna cannot be larger than 100 x 100", verdicts.get(0).getError());
+        assertEquals(Boolean.FALSE, verdicts.get(1).getMutant());
+    }
+
+    @Test
+    public void givenPackedBatchWhenClassifyingThenVerdictsAreReportedInOrderAndRecordedOnce() {
+        DnaMatrix mutant = DnaMatrix.of(new String[]{"aaaa","cgtc","gtcg","tcgt"});
+        DnaMatrix human = DnaMatrix.of(new String[]{"acgt","gtac","acgt","gtac"});
+        List<DnaVerdict> verdicts = new ArrayList<>();
+        fixture.classifyPackedBatch(Arrays.asList(mutant, human, mutant).iterator(), verdicts::add);
+
+        assertEquals(Arrays.asList(Boolean.TRUE, Boolean.FALSE, Boolean.TRUE),
+                verdicts.stream().map(DnaVerdict::getMutant).collect(Collectors.toList()));
+        Map<DnaHash, Boolean> expectedRecords = new HashMap<>();
+        expectedRecords.put(DnaHash.of(mutant), true);
+        expectedRecords.put(DnaHash.of(human), false);
+        verify(dnaRecordWriter).recordAll(eq(expectedRecords));
+    }
+
+    @Test
+    public void givenMutantRowsWhenClassifyingRowsThenVerdictComesBeforeTheLastRowAndDnaIsRecorded() {
+        String[] dna = {"aaaa", "cgtc", "gtcg", "tcgt"};
+        List<Integer> rowsReadAtVerdict = new ArrayList<>();
+        int[] rowsRead = {0};
+        Iterator<String> rows = Arrays.stream(dna).peek(row -> rowsRead[0]++).iterator();
+
+        fixture.classifyRows(rows, isMutant -> {
+            assertTrue(isMutant);
+            rowsReadAtVerdict.add(rowsRead[0]);
+        });
+
+        assertEquals(Collections.singletonList(1), rowsReadAtVerdict);
+        verify(verdictCache).put(DnaHash.of(dna), true);
+        verify(dnaRecordWriter).record(DnaHash.of(dna), true);
+    }
+
+    @Test
+    public void givenHumanRowsWhenClassifyingRowsThenVerdictComesOnceEveryRowIsRead() {
+        List<Boolean> verdicts = new ArrayList<>();
+        fixture.classifyRows(Arrays.asList("acgt", "gtac", "acgt", "gtac").iterator(), verdicts::add);
+
+        assertEquals(Collections.singletonList(false), verdicts);
+        verify(dnaRecordWriter).record(any(DnaHash.class), eq(false));
+    }
+
+    @Test
+    public void givenCachedRowsWhenClassifyingRowsThenEachRowIsAdmittedAndTheCachedVerdictPublished() {
+        String[] dna = {"acgt", "gtac", "acgt", "gtac"};
+        when(verdictCache.get(eq(DnaHash.of(dna)))).thenReturn(Boolean.FALSE);
+        List<Boolean> verdicts = new ArrayList<>();
+        fixture.classifyRows(Arrays.asList(dna).iterator(), verdicts::add);
+
+        assertEquals(Collections.singletonList(false), verdicts);
+        verify(admissionControl, times(4)).detect(eq(4), any());
+        verify(classificationEvents).publishCached(DnaHash.of(dna), false);
+        verify(verdictCache, never()).put(any(DnaHash.class), anyBoolean());
+        verify(dnaRecordWriter, never()).record(any(DnaHash.class), anyBoolean());
+    }
+
+    @Test
+    public void givenStalledRowUploadsWhenCheckingMutantThenTheRequestIsNotBlocked() throws Exception {
+        CountDownLatch resume = new CountDownLatch(1);
+        CountDownLatch stalled = new CountDownLatch(2);
+        List<Thread> uploads = new ArrayList<>();
+        // as many uploads as permits, each waiting for its second row
+        for (int i = 0; i < 2; i++) {
+            Iterator<String> rows = Arrays.asList("acgt", "gtac", "acgt", "gtac").iterator();
+            Iterator<String> stalledRows = new Iterator<String>() {
+                private boolean first = true;
+
+                @Override
+                public boolean hasNext() {
+                    if (!first) {
+                        stalled.countDown();
+                        await(resume);
+                    }
+                    return rows.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    first = false;
+                    return rows.next();
+                }
+            };
+            Thread upload = new Thread(() -> fixture.classifyRows(stalledRows, isMutant -> { }));
+            upload.start();
+            uploads.add(upload);
+        }
+        assertTrue(stalled.await(5, TimeUnit.SECONDS));
+
+        assertTrue(fixture.isMutant(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"}));
+        resume.countDown();
+        for (Thread upload : uploads) {
+            upload.join(5000L);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void givenMissingRowsWhenClassifyingRowsThenExceptionIsThrownAndNothingIsRecorded() {
+        try {
+            fixture.classifyRows(Arrays.asList("aaaa", "cgtc").iterator(), isMutant -> { });
+            fail();
+        } catch (BadInputException e) {
+            assertEquals("Dna has 2 rows, expected 4", e.getMessage());
+        }
+        verify(dnaRecordWriter, never()).record(any(DnaHash.class), anyBoolean());
+    }
 }
@@ -0,0 +1,108 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class PackedDnaFormatTest {
+
+    private static final String[] MUTANT = {"aaaa", "cgtc", "gtcg", "tcgt"};
+    // 81 bases, the last word and the last byte are both partly used
+    private static final String[] ODD = {"acgtacgta", "cgtacgtac", "gtacgtacg", "tacgtacgt", "acgtacgta",
+            "cgtacgtac", "gtacgtacg", "tacgtacgt", "acgtacgtt"};
+
+    @Test
+    public void givenPackedDnaCutInSingleBytesWhenReadingThenItEqualsTheSameDnaInJson() {
+        byte[] packed = PackedDnaFormat.write(DnaMatrix.of(ODD));
+        assertEquals(4 + 21, packed.length);
+        PackedDnaFormat fixture = new PackedDnaFormat(100);
+        DnaMatrix dna = null;
+        for (int i = 0; i < packed.length; i++) {
+            assertNull(dna);
+            dna = fixture.read(ByteBuffer.wrap(packed, i, 1));
+        }
+        assertEquals(DnaMatrix.of(ODD), dna);
+        assertFalse(fixture.isPending());
+    }
+
+    @Test
+    public void givenPaddingBitsSetWhenReadingThenTheyAreIgnored() {
+        byte[] packed = PackedDnaFormat.write(DnaMatrix.of(ODD));
+        packed[packed.length - 1] |= (byte) 0xFC;
+        assertEquals(DnaMatrix.of(ODD), new PackedDnaFormat(100).read(ByteBuffer.wrap(packed)));
+    }
+
+    @Test
+    public void givenConsecutiveDnaWhenReadingAllThenEachIsReadInOrder() {
+        byte[] mutant = PackedDnaFormat.write(DnaMatrix.of(MUTANT));
+        byte[] odd = PackedDnaFormat.write(DnaMatrix.of(ODD));
+        byte[] body = ByteBuffer.allocate(mutant.length + odd.length).put(mutant).put(odd).array();
+        Iterator<DnaMatrix> dna = PackedDnaFormat.readAll(new ByteArrayInputStream(body), 100);
+        assertEquals(DnaMatrix.of(MUTANT), dna.next());
+        assertEquals(DnaMatrix.of(ODD), dna.next());
+        assertFalse(dna.hasNext());
+    }
+
+    @Test
+    public void givenSizeOverMaxSizeWhenReadingThenItIsRejectedBeforeTheBases() {
+        ByteBuffer chunk = ByteBuffer.allocate(8).putInt(101);
+        chunk.flip();
+        try {
+            new PackedDnaFormat(100).read(chunk);
+            fail();
+        } catch (PayloadTooLargeException e) {
+            assertEquals("Dna cannot be larger than 100 x 100", e.getMessage());
+        }
+    }
+
+    @Test
+    public void givenBufferBudgetWhenReadingThenEachDnaIsChargedFromItsHeaderUntilItIsRead() {
+        // room for the 24 bytes of a 9 x 9 dna, a second one waits for it to be read
+        AdmissionControl admissionControl = new AdmissionControl(100, 1, 1, 200L, 50, 1, 1, 24L,
+                new SimpleMeterRegistry());
+        byte[] packed = PackedDnaFormat.write(DnaMatrix.of(ODD));
+        PackedDnaFormat fixture = new PackedDnaFormat(100, admissionControl);
+        PackedDnaFormat other = new PackedDnaFormat(100, admissionControl);
+
+        assertNull(fixture.read(ByteBuffer.wrap(packed, 0, 5)));
+        assertEquals(24L, admissionControl.getBufferedBytes());
+        try {
+            other.read(ByteBuffer.wrap(packed, 0, 4));
+            fail();
+        } catch (ResponseStatusException e) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+        }
+        assertEquals(DnaMatrix.of(ODD), fixture.read(ByteBuffer.wrap(packed, 5, packed.length - 5)));
+        assertEquals(0L, admissionControl.getBufferedBytes());
+    }
+
+    @Test
+    public void givenBodyEndingInTheMiddleOfADnaWhenReadingAllThenItsBudgetIsGivenBack() {
+        AdmissionControl admissionControl = new AdmissionControl(100, 1, 1, 200L, 50, 1, 1, 24L,
+                new SimpleMeterRegistry());
+        byte[] packed = PackedDnaFormat.write(DnaMatrix.of(ODD));
+        try {
+            PackedDnaFormat.readAll(new ByteArrayInputStream(packed, 0, packed.length - 1), 100, admissionControl)
+                    .hasNext();
+            fail();
+        } catch (BadInputException e) {
+            assertEquals(0L, admissionControl.getBufferedBytes());
+        }
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenBodyEndingInTheMiddleOfADnaWhenReadingAllThenExceptionIsThrown() {
+        byte[] packed = PackedDnaFormat.write(DnaMatrix.of(MUTANT));
+        PackedDnaFormat.readAll(new ByteArrayInputStream(packed, 0, packed.length - 1), 100).hasNext();
+    }
+}
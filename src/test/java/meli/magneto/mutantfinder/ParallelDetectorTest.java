@@ -0,0 +1,175 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static meli.magneto.mutantfinder.RunLengthDetectorTest.noRunMatrix;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelDetectorTest {
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    // every matrix is split in bands of 5 rows
+    private final ParallelDetector fixture = new ParallelDetector(4, 1, 5, 4);
+
+    @After
+    public void stop() {
+        fixture.stop();
+    }
+
+    @Test
+    public void givenMatrixWithoutRunsWhenDetectingInBandsThenReturnFalse() {
+        assertFalse(fixture.isMutant(DnaMatrix.of(noRunMatrix(23))));
+    }
+
+    @Test
+    public void givenRunAnywhereWhenDetectingInBandsThenReturnTrue() {
+        int size = 17;
+        for (int[] direction : DIRECTIONS) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    String[] dna = withRun(noRunMatrix(size), row, col, direction);
+                    if (dna != null) {
+                        assertTrue("run from " + row + "," + col, fixture.isMutant(DnaMatrix.of(dna)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void givenRandomMatricesWhenDetectingInBandsThenSequencesAreCountedOnce() {
+        Random random = new Random(42);
+        for (int sequenceSize = 3; sequenceSize <= 4; sequenceSize++) {
+            for (int i = 0; i < 100; i++) {
+                String[] dna = randomMatrix(random, 6 + random.nextInt(30), sequenceSize);
+                DnaMatrix matrix = DnaMatrix.of(dna);
+                int sequences = countSequences(dna, sequenceSize);
+                // the counts of the bands add up to exactly the count of the whole matrix
+                for (int minimum : new int[]{1, Math.max(1, sequences), sequences + 1}) {
+                    ParallelDetector tiled = new ParallelDetector(sequenceSize, minimum, 5, 4);
+                    try {
+                        assertEquals("minimum " + minimum, sequences >= minimum, tiled.isMutant(matrix));
+                        assertEquals(sequences >= minimum,
+                                new RunLengthDetector(sequenceSize, minimum).isMutant(matrix));
+                    } finally {
+                        tiled.stop();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void givenLongRunCrossingBandsWhenCountingThenItMakesOneSequencePerSequenceSize() {
+        // 9 equal bases from row 3 to 11 cross two band borders and make 2 sequences of 4
+        String[] dna = noRunMatrix(15);
+        for (int row = 3; row < 12; row++) {
+            char[] chars = dna[row].toCharArray();
+            chars[7] = 'g';
+            dna[row] = new String(chars);
+        }
+        assertEquals(2, countSequences(dna, 4));
+        ParallelDetector two = new ParallelDetector(4, 2, 5, 4);
+        ParallelDetector three = new ParallelDetector(4, 3, 5, 4);
+        try {
+            assertEquals(Direction.VERTICAL, two.find(DnaMatrix.of(dna)));
+            assertNull(three.find(DnaMatrix.of(dna)));
+        } finally {
+            two.stop();
+            three.stop();
+        }
+    }
+
+    @Test
+    public void givenSequenceLongerThanAWordWhenDetectingThenTilesAreScanned() {
+        String[] dna = noRunMatrix(70);
+        char[] row = dna[40].toCharArray();
+        for (int col = 2; col < 66; col++) {
+            row[col] = 'g';
+        }
+        dna[40] = new String(row);
+        ParallelDetector tiled = new ParallelDetector(65, 1, 16, 4);
+        try {
+            assertFalse(tiled.isMutant(DnaMatrix.of(dna)));
+            row[66] = 'g';
+            dna[40] = new String(row);
+            assertEquals(Direction.HORIZONTAL, tiled.find(DnaMatrix.of(dna)));
+        } finally {
+            tiled.stop();
+        }
+    }
+
+    /**
+     * A few random bases over a run free matrix, which gives anything from no sequence to several of them
+     */
+    private static String[] randomMatrix(Random random, int size, int sequenceSize) {
+        char[][] chars = new char[size][];
+        String[] dna = noRunMatrix(size);
+        for (int row = 0; row < size; row++) {
+            chars[row] = dna[row].toCharArray();
+        }
+        for (int j = 0; j < size * sequenceSize / 2; j++) {
+            chars[random.nextInt(size)][random.nextInt(size)] = "acgt".charAt(random.nextInt(4));
+        }
+        for (int row = 0; row < size; row++) {
+            dna[row] = new String(chars[row]);
+        }
+        return dna;
+    }
+
+    /**
+     * Naive count: every maximal run of equal bases in every direction makes <tt>length / sequenceSize</tt>
+     * sequences
+     */
+    private static int countSequences(String[] dna, int sequenceSize) {
+        int size = dna.length;
+        int sequences = 0;
+        for (int[] direction : DIRECTIONS) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int previousRow = row - direction[0];
+                    int previousCol = col - direction[1];
+                    boolean continuesRun = previousRow >= 0 && previousCol >= 0 && previousCol < size
+                            && dna[previousRow].charAt(previousCol) == dna[row].charAt(col);
+                    if (continuesRun) {
+                        continue;
+                    }
+                    int length = 0;
+                    for (int r = row, c = col; r < size && c >= 0 && c < size
+                            && dna[r].charAt(c) == dna[row].charAt(col); r += direction[0], c += direction[1]) {
+                        length++;
+                    }
+                    sequences += length / sequenceSize;
+                }
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * @return the dna with a run of 4 equal bases starting at the given cell, or <tt>null</tt> if it doesn't fit
+     */
+    private static String[] withRun(String[] dna, int row, int col, int[] direction) {
+        int size = dna.length;
+        int lastRow = row + direction[0] * 3;
+        int lastCol = col + direction[1] * 3;
+        if (lastRow >= size || lastCol < 0 || lastCol >= size) {
+            return null;
+        }
+        char base = dna[row].charAt(col);
+        for (int i = 1; i < 4; i++) {
+            int r = row + direction[0] * i;
+            char[] chars = dna[r].toCharArray();
+            chars[col + direction[1] * i] = base;
+            dna[r] = new String(chars);
+        }
+        return dna;
+    }
+}
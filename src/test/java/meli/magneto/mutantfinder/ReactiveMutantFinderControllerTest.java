@@ -0,0 +1,126 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_NDJSON_VALUE;
+import static meli.magneto.mutantfinder.MutantFinderController.APPLICATION_PACKED_DNA_VALUE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(SpringRunner.class)
+@WebFluxTest(ReactiveMutantFinderController.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@TestPropertySource(properties = "spring.main.web-application-type=reactive")
+public class ReactiveMutantFinderControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveMutantFinderService mutantFinderService;
+
+    @MockBean
+    private DetectionMetrics detectionMetrics;
+
+    @MockBean
+    private AdmissionControl admissionControl;
+
+    @Test
+    public void testOkAndForbiddenResponsesByVerdict() {
+        String[] mutant = {"aaaa", "cgtc", "gtcg", "tcgt"};
+        String[] human = {"acgt", "gtac", "acgt", "gtac"};
+        when(mutantFinderService.isMutant(eq(DnaMatrix.of(mutant)))).thenReturn(Mono.just(Boolean.TRUE));
+        when(mutantFinderService.isMutant(eq(DnaMatrix.of(human)))).thenReturn(Mono.just(Boolean.FALSE));
+        postDna("{\"dna\":[\"aaaa\",\"cgtc\",\"gtcg\",\"tcgt\"]}").expectStatus().isOk();
+        postDna("{\"dna\":[\"acgt\",\"gtac\",\"acgt\",\"gtac\"]}").expectStatus().isForbidden();
+    }
+
+    @Test
+    public void testBadRequestDueToInvalidBaseIsRejectedWhileParsing() {
+        postDna("{\"dna\":[\"acgt\",\"gtac\",\"acxt\",\"gtac\"]}").expectStatus().isBadRequest();
+        verify(mutantFinderService, never()).isMutant(any(DnaMatrix.class));
+        verify(detectionMetrics).recordReject();
+    }
+
+    @Test
+    public void testNdjsonVerdictsOnBatch() {
+        when(mutantFinderService.classifyBatch(any())).thenAnswer(invocation -> {
+            Flux<DnaRequest> batch = invocation.getArgument(0);
+            return batch.index().map(item -> DnaVerdict.of(item.getT1(), item.getT2().getDna()[0].equals("aaaa")));
+        });
+        String body = "{\"dna\":[\"aaaa\",\"cgtc\",\"gtcg\",\"tcgt\"]}\n"
+                + "{\"dna\":[\"acgt\",\"gtac\",\"acgt\",\"gtac\"]}\n";
+        webTestClient.post().uri("/mutant/batch")
+                .contentType(MediaType.valueOf(APPLICATION_NDJSON_VALUE))
+                .accept(MediaType.valueOf(APPLICATION_NDJSON_VALUE))
+                .syncBody(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("{\"index\":0,\"mutant\":true}\n{\"index\":1,\"mutant\":false}\n");
+    }
+
+    @Test
+    public void testOkResponseAndNdjsonVerdictsOnPackedDna() {
+        DnaMatrix mutant = DnaMatrix.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"});
+        DnaMatrix human = DnaMatrix.of(new String[]{"acgt", "gtac", "acgt", "gtac"});
+        when(mutantFinderService.isMutant(eq(mutant))).thenReturn(Mono.just(Boolean.TRUE));
+        webTestClient.post().uri("/mutant")
+                .contentType(MediaType.valueOf(APPLICATION_PACKED_DNA_VALUE))
+                .syncBody(PackedDnaFormat.write(mutant))
+                .exchange()
+                .expectStatus().isOk();
+
+        when(mutantFinderService.classifyPackedBatch(any())).thenAnswer(invocation -> {
+            Flux<DnaMatrix> batch = invocation.getArgument(0);
+            return batch.index().map(item -> DnaVerdict.of(item.getT1(), item.getT2().equals(mutant)));
+        });
+        byte[] first = PackedDnaFormat.write(mutant);
+        byte[] second = PackedDnaFormat.write(human);
+        webTestClient.post().uri("/mutant/batch")
+                .contentType(MediaType.valueOf(APPLICATION_PACKED_DNA_VALUE))
+                .accept(MediaType.valueOf(APPLICATION_NDJSON_VALUE))
+                .syncBody(ByteBuffer.allocate(first.length + second.length).put(first).put(second).array())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("{\"index\":0,\"mutant\":true}\n{\"index\":1,\"mutant\":false}\n");
+    }
+
+    @Test
+    public void testNotModifiedResponseOnGettingUnchangedStats() {
+        when(mutantFinderService.getRequestsStatistics()).thenReturn(Mono.just(new StatisticsResponse(1L, 40L, 100L)));
+        webTestClient.get().uri("/stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"40-100\"")
+                .expectBody().jsonPath("$.ratio").isEqualTo(0.4);
+        webTestClient.get().uri("/stats")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"40-100\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    private WebTestClient.ResponseSpec postDna(String body) {
+        return webTestClient.post().uri("/mutant")
+                .contentType(MediaType.APPLICATION_JSON)
+                .syncBody(body)
+                .exchange();
+    }
+}
@@ -0,0 +1,180 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.Disposable;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReactiveMutantFinderServiceImplTest {
+
+    private ReactiveMutantFinderServiceImpl fixture;
+
+    private final AdaptiveDetector detector = new AdaptiveDetector(4, 1, 64, 1000, 256, 1);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private VerdictCache verdictCache;
+
+    @Mock
+    private DnaRecordWriter dnaRecordWriter;
+
+    @Mock
+    private ClassificationEventLog classificationEvents;
+
+    @Mock
+    private MutantFinderService mutantFinderService;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(verdictCache.find(any(DnaHash.class))).thenReturn(Mono.empty());
+        fixture = new ReactiveMutantFinderServiceImpl(detector,
+                new VerdictRecorder(verdictCache, classificationEvents, dnaRecordWriter), new DetectionMetrics(meterRegistry),
+                new AdmissionControl(10, 2, 4, 1000L, 8, 1, 1, 1024L, meterRegistry), mutantFinderService, 2);
+    }
+
+    @After
+    public void stop() {
+        fixture.stop();
+        detector.stop();
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenNullDnaWhenCheckingMutantThenErrorIsSignalled() {
+        fixture.isMutant(null).block();
+    }
+
+    @Test
+    public void givenNewDnaWhenCheckingMutantThenVerdictIsCachedAndRecorded() {
+        String[] dna = {"aaaa","cgtc","gtcg","tcgt"};
+        assertTrue(fixture.isMutant(DnaMatrix.of(dna)).block());
+        verify(verdictCache).put(eq(DnaHash.of(dna)), eq(true));
+        verify(dnaRecordWriter).record(eq(DnaHash.of(dna)), eq(true));
+        verify(classificationEvents).publish(DnaHash.of(dna), Direction.HORIZONTAL);
+        assertEquals(1L, meterRegistry.get("dna.detection").timer().count());
+    }
+
+    @Test
+    public void givenCachedDnaWhenCheckingMutantThenDetectionIsSkipped() {
+        String[] dna = {"aaaa","cgtc","gtcg","tcgt"};
+        when(verdictCache.find(eq(DnaHash.of(dna)))).thenReturn(Mono.just(Boolean.FALSE));
+        assertFalse(fixture.isMutant(DnaMatrix.of(dna)).block());
+        verify(dnaRecordWriter, never()).record(any(DnaHash.class), anyBoolean());
+        verify(classificationEvents).publishCached(DnaHash.of(dna), false);
+        assertEquals(0L, meterRegistry.get("dna.detection").timer().count());
+    }
+
+    @Test
+    public void givenBatchWhenClassifyingThenVerdictsKeepTheirOrder() {
+        List<DnaVerdict> verdicts = fixture.classifyBatch(Flux.just(
+                request("aaaa","cgtc","gtcg","tcgt"),
+                request("aaa","aa","aaa"),
+                new DnaRequest(),
+                request("acgt","gtac","acgt","gtac")))
+                .collectList()
+                .block();
+
+        assertEquals(4, verdicts.size());
+        for (int i = 0; i < verdicts.size(); i++) {
+            assertEquals(i, verdicts.get(i).getIndex());
+        }
+        assertEquals(Boolean.TRUE, verdicts.get(0).getMutant());
+        assertEquals("Dna row 1 has 2 bases, expected 3", verdicts.get(1).getError());
+        assertNull(verdicts.get(2).getMutant());
+        assertEquals("Dna cannot be null", verdicts.get(2).getError());
+        assertEquals(Boolean.FALSE, verdicts.get(3).getMutant());
+        assertEquals(2.0d, meterRegistry.get("dna.validation.rejects").counter().count(), 0d);
+    }
+
+    @Test
+    public void givenMutantRowsWhenClassifyingRowsThenVerdictIsEmittedBeforeTheLastRow() {
+        DirectProcessor<String> rows = DirectProcessor.create();
+        List<Boolean> verdicts = new CopyOnWriteArrayList<>();
+        MonoProcessor<Void> completion = fixture.classifyRows(rows).doOnNext(verdicts::add).then().toProcessor();
+
+        rows.onNext("aaaa");
+        rows.onNext("cgtc");
+        await(() -> !verdicts.isEmpty());
+        assertEquals(Collections.singletonList(true), verdicts);
+        rows.onNext("gtcg");
+        rows.onNext("tcgt");
+        rows.onComplete();
+        completion.block();
+
+        verify(dnaRecordWriter).record(eq(DnaHash.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"})), eq(true));
+    }
+
+    @Test
+    public void givenHumanRowsWhenClassifyingRowsThenVerdictIsEmittedOnceEveryRowIsRead() {
+        assertEquals(Collections.singletonList(false),
+                fixture.classifyRows(Flux.just("acgt", "gtac", "acgt", "gtac")).collectList().block());
+    }
+
+    @Test
+    public void givenCachedRowsWhenClassifyingRowsThenTheCachedVerdictIsPublishedAndNotRecorded() {
+        String[] dna = {"acgt", "gtac", "acgt", "gtac"};
+        when(verdictCache.find(eq(DnaHash.of(dna)))).thenReturn(Mono.just(Boolean.FALSE));
+
+        assertEquals(Collections.singletonList(false), fixture.classifyRows(Flux.just(dna)).collectList().block());
+        verify(classificationEvents).publishCached(DnaHash.of(dna), false);
+        verify(dnaRecordWriter, never()).record(any(DnaHash.class), anyBoolean());
+    }
+
+    @Test
+    public void givenStalledRowUploadsWhenCheckingMutantThenTheRequestIsNotBlocked() {
+        List<Boolean> verdicts = new CopyOnWriteArrayList<>();
+        // as many uploads as permits, each answered on its first row and waiting for the next one
+        List<Disposable> uploads = Arrays.asList(
+                fixture.classifyRows(Flux.concat(Flux.just("aaaa"), Flux.never())).subscribe(verdicts::add),
+                fixture.classifyRows(Flux.concat(Flux.just("aaaa"), Flux.never())).subscribe(verdicts::add));
+        await(() -> verdicts.size() == 2);
+
+        assertTrue(fixture.isMutant(DnaMatrix.of(new String[]{"aaaa", "cgtc", "gtcg", "tcgt"}))
+                .block(Duration.ofSeconds(5)));
+        uploads.forEach(Disposable::dispose);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out");
+            }
+            Thread.yield();
+        }
+    }
+
+    private static DnaRequest request(String... dna) {
+        DnaRequest request = new DnaRequest();
+        request.setDna(dna);
+        return request;
+    }
+}
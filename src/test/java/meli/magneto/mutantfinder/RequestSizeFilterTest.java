@@ -0,0 +1,63 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class RequestSizeFilterTest {
+
+    private final RequestSizeFilter fixture = new RequestSizeFilter(16L);
+
+    @Test
+    public void givenDeclaredLengthOverMaxBytesWhenFilteringThenRequestIsRejectedUnread() throws Exception {
+        MockHttpServletRequest request = post("/mutant", new byte[17]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        fixture.doFilter(request, response, chain);
+        assertEquals(413, response.getStatus());
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    public void givenUndeclaredLengthOverMaxBytesWhenReadingThenReadingFails() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/mutant") {
+            @Override
+            public long getContentLengthLong() {
+                return -1L;
+            }
+        };
+        request.setServletPath("/mutant");
+        request.setContent(new byte[17]);
+        fixture.doFilter(request, new MockHttpServletResponse(), (filtered, response) -> {
+            try {
+                StreamUtils.copyToByteArray(filtered.getInputStream());
+                fail("read past the limit");
+            } catch (PayloadTooLargeException e) {
+                assertEquals("Dna requests cannot be larger than 16 bytes", e.getMessage());
+            }
+        });
+    }
+
+    @Test
+    public void givenOtherEndpointWhenFilteringThenBodyIsNotLimited() throws Exception {
+        MockHttpServletRequest request = post("/mutant/batch", new byte[17]);
+        MockFilterChain chain = new MockFilterChain();
+        fixture.doFilter(request, new MockHttpServletResponse(), chain);
+        assertEquals(17, StreamUtils.copyToByteArray(chain.getRequest().getInputStream()).length);
+    }
+
+    private static MockHttpServletRequest post(String path, byte[] content) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setContent(content);
+        return request;
+    }
+}
@@ -0,0 +1,140 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RunLengthDetectorTest {
+
+    private final RunLengthDetector fixture = new RunLengthDetector(4, 1);
+
+    @Test
+    public void givenMixedCaseDnaWhenPackingThenBasesAreCaseInsensitive() {
+        DnaMatrix matrix = DnaMatrix.of(new String[]{"aCgT", "AcGt", "tgca", "TGCA"});
+        assertEquals(4, matrix.size());
+        assertEquals(DnaMatrix.A, matrix.get(0, 0));
+        assertEquals(DnaMatrix.C, matrix.get(0, 1));
+        assertEquals(DnaMatrix.G, matrix.get(1, 2));
+        assertEquals(DnaMatrix.T, matrix.get(1, 3));
+        assertEquals(DnaMatrix.A, matrix.get(3, 3));
+    }
+
+    @Test
+    public void givenSizeNotMultipleOfFourWhenPackingThenLastBasesAreKept() {
+        DnaMatrix matrix = DnaMatrix.of(new String[]{"acgta", "cgtac", "gtacg", "tacgt", "acgtA"});
+        for (int row = 0; row < 5; row++) {
+            for (int col = 0; col < 5; col++) {
+                assertEquals((row + col) % 4, matrix.get(row, col));
+            }
+        }
+    }
+
+    @Test
+    public void givenRunInEachDirectionWhenFindingThenItsDirectionIsReturned() {
+        assertEquals(Direction.HORIZONTAL, fixture.find(DnaMatrix.of(new String[]{"cgtc", "gtcg", "tcgt", "aaaa"})));
+        assertEquals(Direction.VERTICAL, fixture.find(DnaMatrix.of(new String[]{"acgt", "atgc", "agtc", "acga"})));
+        assertEquals(Direction.DIAGONAL, fixture.find(DnaMatrix.of(new String[]{"acgt", "gatc", "tgac", "ctga"})));
+        assertEquals(Direction.ANTI_DIAGONAL, fixture.find(DnaMatrix.of(new String[]{"ctga", "tgac", "gatc", "acgt"})));
+        assertNull(fixture.find(DnaMatrix.of(noRunMatrix(6))));
+    }
+
+    @Test
+    public void givenSeveralSequencesRequiredWhenDetectingThenOverlappingOnesAreNotCounted() {
+        RunLengthDetector twoSequences = new RunLengthDetector(4, 2);
+        String[] sevenBases = noRunMatrix(8);
+        sevenBases[5] = "ccccccct";
+        assertFalse(twoSequences.isMutant(DnaMatrix.of(sevenBases)));
+        String[] eightBases = noRunMatrix(8);
+        eightBases[5] = "cccccccc";
+        assertEquals(Direction.HORIZONTAL, twoSequences.find(DnaMatrix.of(eightBases)));
+    }
+
+    @Test
+    public void givenSequencesInDifferentDirectionsWhenSeveralAreRequiredThenAllAreCounted() {
+        DnaMatrix matrix = DnaMatrix.of(new String[]{"aaaa", "cgta", "gtca", "tcga"});
+        assertEquals(Direction.VERTICAL, new RunLengthDetector(4, 2).find(matrix));
+        assertNull(new RunLengthDetector(4, 3).find(matrix));
+        assertEquals(Direction.VERTICAL, new RunLengthDetector(3, 3).find(DnaMatrix.of(new String[]{
+                "aaac", "aggt", "atgt", "ctgc"})));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenNoMinimumSequencesWhenCreatingThenExceptionIsThrown() {
+        new RunLengthDetector(4, 0);
+    }
+
+    @Test
+    public void givenMatrixSmallerThanSequenceWhenDetectingThenReturnFalse() {
+        assertFalse(fixture.isMutant(DnaMatrix.of(new String[]{"aaa", "aaa", "aaa"})));
+    }
+
+    @Test
+    public void givenMixedCaseRunWhenDetectingThenReturnTrue() {
+        assertTrue(fixture.isMutant(DnaMatrix.of(new String[]{"aAaA", "cgtc", "gtcg", "tcgt"})));
+    }
+
+    @Test
+    public void givenUpperRightDiagonalsWhenDetectingThenReturnTrue() {
+        assertTrue(fixture.isMutant(DnaMatrix.of(new String[]{
+                "taaccc",
+                "caagct",
+                "atcaat",
+                "actgaa",
+                "taggct",
+                "acatat"})));
+        assertTrue(fixture.isMutant(DnaMatrix.of(new String[]{
+                "tcgaat",
+                "gatgag",
+                "taaaga",
+                "cttgtg",
+                "ataatt",
+                "caatcc"})));
+    }
+
+    @Test
+    public void givenRunsCrossingRowBoundariesWhenDetectingThenReturnFalse() {
+        // "aa" at the end of a row followed by "aa" at the start of the next one is not a run
+        assertFalse(fixture.isMutant(DnaMatrix.of(new String[]{
+                "ctgaa",
+                "aacgt",
+                "gtcag",
+                "cagtc",
+                "tcgat"})));
+    }
+
+    @Test
+    public void givenLargeMatrixWithoutRunsWhenDetectingThenReturnFalse() {
+        assertFalse(fixture.isMutant(DnaMatrix.of(noRunMatrix(257))));
+    }
+
+    @Test
+    public void givenLargeMatrixWithRunInLastCellWhenDetectingThenReturnTrue() {
+        String[] dna = noRunMatrix(257);
+        char[] last = dna[256].toCharArray();
+        for (int i = 253; i < 257; i++) {
+            last[i] = 'a';
+        }
+        dna[256] = new String(last);
+        assertTrue(fixture.isMutant(DnaMatrix.of(dna)));
+    }
+
+    /**
+     * Builds a matrix with no runs longer than two in any direction
+     */
+    static String[] noRunMatrix(int size) {
+        String[] pattern = {"aacc", "ggtt"};
+        String[] dna = new String[size];
+        for (int row = 0; row < size; row++) {
+            char[] chars = new char[size];
+            String line = pattern[(row / 2) % 2];
+            for (int col = 0; col < size; col++) {
+                chars[col] = line.charAt((col + (row % 2) * 2) % 4);
+            }
+            dna[row] = new String(chars);
+        }
+        return dna;
+    }
+}
@@ -0,0 +1,66 @@
+package meli.magneto.mutantfinder;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class SegmentFileClassificationEventSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Date time = Date.from(Instant.parse("2018-10-01T10:00:00Z"));
+
+    @Test
+    public void givenEventsWhenWritingThenOneLineOfJsonIsAppendedPerEvent() throws IOException {
+        SegmentFileClassificationEventSink fixture = new SegmentFileClassificationEventSink(
+                folder.getRoot().getPath(), 1 << 20);
+
+        fixture.write(Arrays.asList(new ClassificationEvent("abc", Direction.HORIZONTAL, time),
+                new ClassificationEvent("def", null, time)));
+        fixture.write(Collections.singletonList(new ClassificationEvent("abc", true, Direction.ANTI_DIAGONAL, true, time)));
+        fixture.close();
+
+        assertEquals(Arrays.asList(
+                "{\"hash\":\"abc\",\"mutant\":true,\"direction\":\"HORIZONTAL\",\"cached\":false,\"createdAt\":\"2018-10-01T10:00:00Z\"}",
+                "{\"hash\":\"def\",\"mutant\":false,\"direction\":null,\"cached\":false,\"createdAt\":\"2018-10-01T10:00:00Z\"}",
+                "{\"hash\":\"abc\",\"mutant\":true,\"direction\":\"ANTI_DIAGONAL\",\"cached\":true,\"createdAt\":\"2018-10-01T10:00:00Z\"}"),
+                Files.readAllLines(segments()[0].toPath(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void givenFullSegmentWhenWritingThenANewSegmentIsStarted() throws IOException, InterruptedException {
+        SegmentFileClassificationEventSink fixture = new SegmentFileClassificationEventSink(
+                folder.getRoot().getPath(), 10);
+        List<ClassificationEvent> events = Collections.singletonList(new ClassificationEvent("abc", null, time));
+
+        fixture.write(events);
+        // segments are named after the millisecond they are opened
+        Thread.sleep(2L);
+        fixture.write(events);
+        fixture.close();
+
+        assertEquals(2, segments().length);
+    }
+
+    private File[] segments() {
+        File[] segments = folder.getRoot().listFiles((dir, name) ->
+                name.startsWith(SegmentFileClassificationEventSink.SEGMENT_PREFIX)
+                        && name.endsWith(SegmentFileClassificationEventSink.SEGMENT_SUFFIX));
+        assertNotNull(segments);
+        return segments;
+    }
+}
@@ -0,0 +1,152 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static meli.magneto.mutantfinder.Statistics.HUMAN_DNA;
+import static meli.magneto.mutantfinder.Statistics.MUTANT_DNA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StatisticsAggregatorTest {
+
+    private StatisticsAggregator fixture;
+
+    @Mock
+    private StatisticsStore statisticsStore;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        // totals are read again on every flush
+        fixture = new StatisticsAggregator(statisticsStore, 1000L, 1000L, 0L, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void givenRecordedDnaWhenGetCountsThenStoreTotalsAndPendingAreMerged() {
+        totals(MUTANT_DNA, 40L);
+        fixture.flush();
+        fixture.record(true, 1L);
+        fixture.record(false, 1L);
+        fixture.record(false, 1L);
+        assertEquals(41L, fixture.getMutantCount());
+        assertEquals(2L, fixture.getHumanCount());
+        verify(statisticsStore, never()).increment(anyString(), anyLong());
+    }
+
+    @Test
+    public void givenPendingDeltasWhenFlushingThenOnlyDeltasAreIncremented() {
+        fixture.record(true, 1L);
+        fixture.record(true, 1L);
+        // another instance moved its share forward
+        totals(MUTANT_DNA, 12L);
+        fixture.flush();
+        verify(statisticsStore).increment(MUTANT_DNA, 2L);
+        assertEquals(0L, fixture.pendingCount());
+        assertEquals(12L, fixture.getMutantCount());
+
+        fixture.record(true, 1L);
+        assertEquals(13L, fixture.getMutantCount());
+        totals(MUTANT_DNA, 13L);
+        fixture.flush();
+        verify(statisticsStore).increment(MUTANT_DNA, 1L);
+        verify(statisticsStore, never()).increment(eq(HUMAN_DNA), anyLong());
+        assertEquals(13L, fixture.getMutantCount());
+    }
+
+    @Test
+    public void givenDeltasOfBothCountersWhenFlushingThenTheStoreIsSyncedOnce() {
+        fixture.flush();
+        verify(statisticsStore, never()).sync();
+
+        fixture.record(true, 1L);
+        fixture.record(false, 1L);
+        fixture.flush();
+        verify(statisticsStore).increment(MUTANT_DNA, 1L);
+        verify(statisticsStore).increment(HUMAN_DNA, 1L);
+        verify(statisticsStore).sync();
+    }
+
+    @Test
+    public void givenFailingFlushWhenFlushingAgainThenDeltasAreKept() {
+        doThrow(new IllegalStateException("down")).doNothing().when(statisticsStore).increment(HUMAN_DNA, 3L);
+        fixture.record(false, 1L);
+        fixture.record(false, 1L);
+        fixture.record(false, 1L);
+        try {
+            fixture.flush();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(3L, fixture.pendingCount());
+        totals(HUMAN_DNA, 3L);
+        fixture.flush();
+        assertEquals(0L, fixture.pendingCount());
+        assertEquals(3L, fixture.getHumanCount());
+    }
+
+    @Test
+    public void givenRecentTotalsWhenFlushingThenTotalsAreNotReadAgain() {
+        StatisticsAggregator cached = new StatisticsAggregator(statisticsStore, 1000L, 1000L, 60000L,
+                new SimpleMeterRegistry());
+        cached.flush();
+        cached.record(true, 1L);
+        cached.flush();
+        verify(statisticsStore, times(1)).totals();
+        assertEquals(1L, cached.getMutantCount());
+    }
+
+    @Test
+    public void givenCountsMovingWhenTakingSnapshotsThenVersionOnlyGoesUpOnChanges() {
+        StatisticsResponse empty = fixture.getSnapshot();
+        assertEquals(0L, empty.getVersion());
+        fixture.flush();
+        assertSame(empty, fixture.getSnapshot());
+
+        fixture.record(true, 1L);
+        fixture.record(false, 2L);
+        StatisticsResponse snapshot = fixture.getSnapshot();
+        assertEquals(2L, snapshot.getVersion());
+        assertEquals(1L, snapshot.getCountMutantDna().longValue());
+        assertEquals(2L, snapshot.getCountHumanDna().longValue());
+        assertEquals(0.5d, snapshot.getRatio(), 0d);
+        assertEquals("\"1-2\"", snapshot.getETag());
+    }
+
+    @Test
+    public void givenSubscriberWhenCountsChangeThenLatestSnapshotAndUpdatesAreEmitted() {
+        fixture.record(true, 1L);
+        List<StatisticsResponse> received = new ArrayList<>();
+        Disposable subscription = fixture.snapshots().subscribe(received::add);
+        fixture.record(false, 1L);
+        subscription.dispose();
+        fixture.record(false, 1L);
+        assertEquals(2, received.size());
+        assertEquals(1L, received.get(0).getVersion());
+        assertEquals(2L, received.get(1).getVersion());
+        assertEquals(3L, fixture.getSnapshot().getVersion());
+    }
+
+    private void totals(String name, long amount) {
+        Map<String, Long> totals = new HashMap<>();
+        totals.put(name, amount);
+        when(statisticsStore.totals()).thenReturn(totals);
+    }
+}
@@ -0,0 +1,191 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StatisticsHistoryTest {
+
+    // 2018-10-01T10:00:00Z
+    private static final long TEN_O_CLOCK = 1538388000000L;
+    private static final long MINUTE = Granularity.MINUTE.millis();
+
+    private StatisticsHistory fixture;
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    private final Clock clock = mock(Clock.class);
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        fixture = new StatisticsHistory(mongoOperations, 1000L, 60000L, 48, 400, 100, new SimpleMeterRegistry(),
+                clock);
+    }
+
+    @Test
+    public void givenRecordsInSeveralMinutesWhenFlushingThenEachMinuteIsIncrementedOnce() {
+        when(clock.millis()).thenReturn(TEN_O_CLOCK + 5000L, TEN_O_CLOCK + 59000L, TEN_O_CLOCK + MINUTE,
+                TEN_O_CLOCK + MINUTE);
+        fixture.record(1L, 0L);
+        fixture.record(2L, 3L);
+        fixture.record(0L, 1L);
+        fixture.flush();
+        verify(mongoOperations).upsert(argThat(idIs("MINUTE:" + TEN_O_CLOCK)), argThat(increments(3L, 3L)),
+                eq(StatisticsBucket.class));
+        verify(mongoOperations).upsert(argThat(idIs("MINUTE:" + (TEN_O_CLOCK + MINUTE))), argThat(increments(0L, 1L)),
+                eq(StatisticsBucket.class));
+
+        // nothing new, nothing sent
+        when(clock.millis()).thenReturn(TEN_O_CLOCK + 2 * MINUTE);
+        fixture.flush();
+        verify(mongoOperations, times(2)).upsert(any(Query.class), any(Update.class), eq(StatisticsBucket.class));
+        // minutes are dropped once nobody can add to them anymore
+        assertEquals(1, fixture.pendingMinutes());
+        when(clock.millis()).thenReturn(TEN_O_CLOCK + 3 * MINUTE);
+        fixture.flush();
+        assertEquals(0, fixture.pendingMinutes());
+    }
+
+    @Test
+    public void givenFailingUpsertWhenFlushingAgainThenTheMinuteIsSentAgain() {
+        when(clock.millis()).thenReturn(TEN_O_CLOCK);
+        when(mongoOperations.upsert(any(Query.class), any(Update.class), eq(StatisticsBucket.class)))
+                .thenThrow(new IllegalStateException("down"))
+                .thenReturn(null);
+        fixture.record(2L, 0L);
+        try {
+            fixture.flush();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        fixture.flush();
+        verify(mongoOperations, times(2)).upsert(argThat(idIs("MINUTE:" + TEN_O_CLOCK)), argThat(increments(2L, 0L)),
+                eq(StatisticsBucket.class));
+    }
+
+    @Test
+    public void givenMinuteBucketsWhenCompactingThenHoursAreReplacedWithTheirSum() {
+        when(clock.millis()).thenReturn(TEN_O_CLOCK + 30 * MINUTE);
+        when(mongoOperations.find(argThat(granularityIs(Granularity.MINUTE)), eq(StatisticsBucket.class)))
+                .thenReturn(Arrays.asList(
+                        new StatisticsBucket(Granularity.MINUTE, TEN_O_CLOCK - 2 * MINUTE, 1L, 2L),
+                        new StatisticsBucket(Granularity.MINUTE, TEN_O_CLOCK, 3L, 4L),
+                        new StatisticsBucket(Granularity.MINUTE, TEN_O_CLOCK + 29 * MINUTE, 5L, 6L)));
+        when(mongoOperations.find(argThat(granularityIs(Granularity.HOUR)), eq(StatisticsBucket.class)))
+                .thenReturn(Collections.singletonList(new StatisticsBucket(Granularity.HOUR, TEN_O_CLOCK, 8L, 10L)));
+        fixture.compact();
+
+        verify(mongoOperations).upsert(argThat(idIs("HOUR:" + (TEN_O_CLOCK - 60 * MINUTE))), argThat(sets(1L, 2L)),
+                eq(StatisticsBucket.class));
+        verify(mongoOperations).upsert(argThat(idIs("HOUR:" + TEN_O_CLOCK)), argThat(sets(8L, 10L)),
+                eq(StatisticsBucket.class));
+        verify(mongoOperations).upsert(argThat(idIs("DAY:" + Granularity.DAY.truncate(TEN_O_CLOCK))),
+                argThat(sets(8L, 10L)), eq(StatisticsBucket.class));
+    }
+
+    @Test
+    public void givenCompactionLeftOpenBeforeADowntimeWhenCompactingThenItCatchesUpFromThere() {
+        when(clock.millis()).thenReturn(TEN_O_CLOCK + 30 * MINUTE);
+        StatisticsBucket compacted = new StatisticsBucket();
+        compacted.setStart(new Date(TEN_O_CLOCK - 5 * 60 * MINUTE));
+        when(mongoOperations.findById("COMPACTED:HOUR", StatisticsBucket.class)).thenReturn(compacted);
+        when(mongoOperations.find(argThat(granularityIs(Granularity.MINUTE)), eq(StatisticsBucket.class)))
+                .thenReturn(Collections.singletonList(
+                        new StatisticsBucket(Granularity.MINUTE, TEN_O_CLOCK - 4 * 60 * MINUTE, 1L, 2L)));
+        fixture.compact();
+
+        verify(mongoOperations).find(argThat(query -> granularityIs(Granularity.MINUTE).matches(query)
+                && new Date(TEN_O_CLOCK - 5 * 60 * MINUTE).equals(
+                        ((Document) query.getQueryObject().get("start")).get("$gte"))), eq(StatisticsBucket.class));
+        verify(mongoOperations).upsert(argThat(idIs("HOUR:" + (TEN_O_CLOCK - 4 * 60 * MINUTE))), argThat(sets(1L, 2L)),
+                eq(StatisticsBucket.class));
+        // the hour before the current one is left open for the next run
+        verify(mongoOperations).upsert(argThat(idIs("COMPACTED:HOUR")), argThat(update -> new Date(TEN_O_CLOCK
+                - 60 * MINUTE).equals(((Document) update.getUpdateObject().get("$max")).get("start"))),
+                eq(StatisticsBucket.class));
+    }
+
+    @Test
+    public void givenCompactionLeftOpenBeforeItsMinutesExpiredWhenCompactingThenOnlyWholeHoursAreRebuilt() {
+        when(clock.millis()).thenReturn(TEN_O_CLOCK + 30 * MINUTE);
+        StatisticsBucket compacted = new StatisticsBucket();
+        compacted.setStart(new Date(TEN_O_CLOCK - 72 * 60 * MINUTE));
+        when(mongoOperations.findById("COMPACTED:HOUR", StatisticsBucket.class)).thenReturn(compacted);
+        fixture.compact();
+
+        // minutes are kept 48 hours, the hour started 48 hours ago already lost some
+        verify(mongoOperations).find(argThat(query -> granularityIs(Granularity.MINUTE).matches(query)
+                && new Date(TEN_O_CLOCK - 47 * 60 * MINUTE).equals(
+                        ((Document) query.getQueryObject().get("start")).get("$gte"))), eq(StatisticsBucket.class));
+    }
+
+    @Test
+    public void givenRangeWhenFindingThenOnlyBucketsOfTheGranularityAreRead() {
+        fixture.find(Granularity.HOUR, TEN_O_CLOCK + 30 * MINUTE, TEN_O_CLOCK + 100 * 60 * MINUTE);
+        verify(mongoOperations).find(argThat(query -> {
+            Document start = (Document) query.getQueryObject().get("start");
+            return "HOUR".equals(query.getQueryObject().get("granularity"))
+                    && new Date(TEN_O_CLOCK).equals(start.get("$gte"))
+                    && new Date(TEN_O_CLOCK + 100 * 60 * MINUTE).equals(start.get("$lt"));
+        }), eq(StatisticsBucket.class));
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenRangeOverMaxBucketsWhenFindingThenExceptionIsThrown() {
+        try {
+            fixture.find(Granularity.MINUTE, TEN_O_CLOCK, TEN_O_CLOCK + 101 * MINUTE);
+        } finally {
+            verify(mongoOperations, never()).find(any(Query.class), eq(StatisticsBucket.class));
+        }
+    }
+
+    @Test(expected = BadInputException.class)
+    public void givenEmptyRangeWhenFindingThenExceptionIsThrown() {
+        fixture.find(Granularity.DAY, TEN_O_CLOCK, TEN_O_CLOCK);
+    }
+
+    private static ArgumentMatcher<Query> idIs(String id) {
+        return query -> query != null && id.equals(query.getQueryObject().get("_id"));
+    }
+
+    private static ArgumentMatcher<Query> granularityIs(Granularity granularity) {
+        return query -> query != null && granularity.name().equals(query.getQueryObject().get("granularity"));
+    }
+
+    private static ArgumentMatcher<Update> increments(long mutants, long humans) {
+        return update -> update != null && counts((Document) update.getUpdateObject().get("$inc"), mutants, humans);
+    }
+
+    private static ArgumentMatcher<Update> sets(long mutants, long humans) {
+        return update -> update != null && counts((Document) update.getUpdateObject().get("$set"), mutants, humans);
+    }
+
+    private static boolean counts(Document document, long mutants, long humans) {
+        return document != null && Long.valueOf(mutants).equals(document.get("mutants"))
+                && Long.valueOf(humans).equals(document.get("humans"));
+    }
+}
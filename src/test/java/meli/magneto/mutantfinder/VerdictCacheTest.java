@@ -0,0 +1,143 @@
+package meli.magneto.mutantfinder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VerdictCacheTest {
+
+    @Mock
+    private DnaRecordRepository dnaRecordRepository;
+
+    @Mock
+    private ReactiveDnaRecordRepository reactiveDnaRecordRepository;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void givenSameDnaInDifferentCaseWhenHashingThenHashesAreEqual() {
+        DnaHash lower = DnaHash.of(new String[]{"acgt", "cgta", "gtac", "tacg"});
+        DnaHash mixed = DnaHash.of(new String[]{"AcGt", "cGTA", "gtac", "TACG"});
+        assertEquals(lower, mixed);
+        assertEquals(32, lower.toString().length());
+        assertEquals(lower.toString(), mixed.toString());
+    }
+
+    @Test
+    public void givenSameCodesInDifferentSizesWhenHashingThenHashesDiffer() {
+        // both pack into words of zeros
+        assertNotEquals(DnaHash.of(new String[]{"a"}), DnaHash.of(new String[]{"aa", "aa"}));
+    }
+
+    @Test
+    public void givenStoredDnaWhenHashingThenItKeepsTheHashItWasStoredWith() {
+        assertEquals("aa0a6b97f65dd49c3b34437beba20185",
+                DnaHash.of(new String[]{"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"}).toString());
+    }
+
+    @Test
+    public void givenDnaOfAnySizeWhenHashingRowsMatrixOrSessionThenHashesAreEqual() {
+        Random random = new Random(1L);
+        for (int size = 1; size <= 40; size++) {
+            String[] dna = new String[size];
+            for (int row = 0; row < size; row++) {
+                StringBuilder bases = new StringBuilder();
+                for (int col = 0; col < size; col++) {
+                    bases.append("ACGTacgt".charAt(random.nextInt(8)));
+                }
+                dna[row] = bases.toString();
+            }
+            DetectionSession session = new DetectionSession(4, 1);
+            for (String row : dna) {
+                session.addRow(row);
+            }
+            DnaHash hash = DnaHash.of(dna);
+            assertEquals(hash, DnaHash.of(DnaMatrix.of(dna)));
+            assertEquals(hash, session.finish());
+        }
+    }
+
+    @Test
+    public void givenUnhashableDnaWhenHashingThenReturnNull() {
+        assertNull(DnaHash.of((String[]) null));
+        assertNull(DnaHash.of(new String[]{}));
+        assertNull(DnaHash.of(new String[]{"ac", null}));
+        assertNull(DnaHash.of(new String[]{"acgt", "cgta"}));
+        assertNull(DnaHash.of(new String[]{"ac", ""}));
+        // in the 8 bases encoded at once and in the ones left
+        for (char invalid = 0; invalid < 0x200; invalid++) {
+            if ("ACGTacgt".indexOf(invalid) < 0) {
+                String row = "acgtacgtac".replace('g', invalid);
+                assertNull(DnaHash.of(new String[]{row, row, row, row, row, row, row, row, row, row}));
+            }
+        }
+    }
+
+    @Test
+    public void givenStoredVerdictWhenGettingThenMemoryIsCheckedFirst() {
+        VerdictCache fixture = new VerdictCache(dnaRecordRepository, reactiveDnaRecordRepository, 10L, 60_000L, true,
+                new SimpleMeterRegistry());
+        DnaHash hash = DnaHash.of(new String[]{"aaaa", "aaaa", "aaaa", "aaaa"});
+        when(dnaRecordRepository.findById(eq(hash.toString())))
+                .thenReturn(Optional.of(new DnaRecord(hash.toString(), true, new Date())));
+
+        assertTrue(fixture.get(hash));
+        assertTrue(fixture.get(hash));
+        verify(dnaRecordRepository, times(1)).findById(anyString());
+        assertEquals(1L, fixture.getMongoHitCount());
+        assertEquals(1L, fixture.getStats().hitCount());
+        assertEquals(1L, fixture.getStats().missCount());
+    }
+
+    @Test
+    public void givenMongoTierDisabledWhenMissingThenMongoIsNotQueried() {
+        VerdictCache fixture = new VerdictCache(dnaRecordRepository, reactiveDnaRecordRepository, 10L, 60_000L, false,
+                new SimpleMeterRegistry());
+        DnaHash hash = DnaHash.of(new String[]{"aaaa", "aaaa", "aaaa", "aaaa"});
+        assertNull(fixture.get(hash));
+        fixture.put(hash, false);
+        assertEquals(Boolean.FALSE, fixture.get(hash));
+        verify(dnaRecordRepository, never()).findById(anyString());
+        assertEquals(1L, fixture.getSize());
+    }
+
+    @Test
+    public void givenStoredVerdictWhenFindingThenItIsReadWithoutBlocking() {
+        VerdictCache fixture = new VerdictCache(dnaRecordRepository, reactiveDnaRecordRepository, 10L, 60_000L, true,
+                new SimpleMeterRegistry());
+        DnaHash stored = DnaHash.of(new String[]{"aaaa", "aaaa", "aaaa", "aaaa"});
+        DnaHash missing = DnaHash.of(new String[]{"cccc", "cccc", "cccc", "cccc"});
+        when(reactiveDnaRecordRepository.findById(eq(stored.toString())))
+                .thenReturn(Mono.just(new DnaRecord(stored.toString(), true, new Date())));
+        when(reactiveDnaRecordRepository.findById(eq(missing.toString()))).thenReturn(Mono.empty());
+
+        assertEquals(Boolean.TRUE, fixture.find(stored).block());
+        assertEquals(Boolean.TRUE, fixture.find(stored).block());
+        assertNull(fixture.find(missing).block());
+        verify(reactiveDnaRecordRepository, times(2)).findById(anyString());
+        verify(dnaRecordRepository, never()).findById(anyString());
+        assertEquals(1L, fixture.getMongoHitCount());
+        assertEquals(1L, fixture.getMongoMissCount());
+    }
+}